@@ -0,0 +1,307 @@
+package com.savanto.android.smsmorsify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Encodes large texts, such as message archives or documents, into one vibration
+ * pattern on a ForkJoinPool. The text is cut into segments at spaces, and each
+ * segment is tokenized on its own; once their lengths are known the segments are
+ * placed, and each is written into its place in the pattern. Every segment after
+ * the first starts with the space it was cut at, so a medium gap joins it to the
+ * letters before; the "Start transmission" and "End transmission" prosigns and the
+ * leading wait are added around the whole.
+ * The result is identical to MorseCode.toPattern() for the same text.
+ *
+ * ForkJoinPool is only available on Android from API 21, so this class is built
+ * into the JVM benchmark module rather than the app, which encodes one message at a time.
+ *
+ * An encoder is immutable, and may be used by several threads at once.
+ *
+ * @author savanto
+ */
+public final class BulkEncoder
+{
+	private final MorseAlphabet alphabet;
+	private final PatternTemplates templates;
+	private final long wait;
+	private final long short_gap;
+	private final long medium_gap;
+	private final int segmentLength;
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates a bulk encoder with default alphabet, gaps and pattern values.
+	 * @param pool - the pool on which segments are encoded.
+	 */
+	public BulkEncoder(ForkJoinPool pool)
+	{
+		this(MorseAlphabet.getInstance(true, true, true), MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP,
+				MorseCode.DEFAULT_WAIT, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP,
+				BulkEncoder.DEFAULT_SEGMENT_LENGTH, pool);
+	}
+
+	/**
+	 * @param alphabet - the alphabet used to look up plaintext characters.
+	 * @param short_gap - the gap length to set between Morse letters.
+	 * @param medium_gap - the gap length to set between Morse words.
+	 * @param wait - duration before the first signal.
+	 * @param dit - duration of a dot.
+	 * @param dah - duration of a dash.
+	 * @param gap - duration of the gap between signals; letter and word gaps are multiples of it.
+	 * @param segmentLength - number of characters after which a segment is cut at the next space.
+	 * @param pool - the pool on which segments are encoded.
+	 */
+	public BulkEncoder(MorseAlphabet alphabet, int short_gap, int medium_gap,
+			long wait, long dit, long dah, long gap, int segmentLength, ForkJoinPool pool)
+	{
+		this.alphabet = alphabet;
+		this.templates = new PatternTemplates(alphabet, dit, dah, gap);
+		this.wait = wait;
+		this.short_gap = gap * short_gap;
+		this.medium_gap = gap * medium_gap;
+		this.segmentLength = Math.max(1, segmentLength);
+		this.pool = pool;
+	}
+
+	/**
+	 * Converts a text into a vibration pattern.
+	 * @param plaintext - the text; leading and trailing whitespace is ignored.
+	 * @return alternating off/on durations, starting with the wait.
+	 */
+	public long[] toPattern(CharSequence plaintext)
+	{
+		// Trim as MorseCode does; a text of whitespace only transmits nothing, not even the prosigns.
+		int begin = 0;
+		int end = plaintext.length();
+		while (begin < end && plaintext.charAt(begin) <= BulkEncoder.SPACE)
+			begin++;
+		while (end > begin && plaintext.charAt(end - 1) <= BulkEncoder.SPACE)
+			end--;
+		if (begin == end)
+			return new long[0];
+
+		// Tokenize the segments in parallel.
+		final int[] bounds = this.cut(plaintext, begin, end);
+		final Segment[] segments = new Segment[bounds.length - 1];
+		this.pool.invoke(new SegmentTask(plaintext, bounds, segments, null, 0, segments.length));
+
+		// Place the segments between the prosigns, and work out the gaps that join them.
+		final Morse ct = this.alphabet.getProsign(MorseCode.PROSIGN_CT);
+		final Morse sk = this.alphabet.getProsign(MorseCode.PROSIGN_SK);
+		int length = 0;
+		boolean started = false;
+		boolean wordEnd = false;
+		if (ct != null)
+		{
+			// The prosign is a word of its own.
+			length += 2 * ct.length();
+			started = true;
+			wordEnd = true;
+		}
+		Segment segment;
+		for (int i = 0; i < segments.length; i++)
+		{
+			segment = segments[i];
+			// Every segment but the first starts with a word end, at the space it was cut at.
+			wordEnd |= i > 0 || segment.leadingWordEnd;
+			if (segment.count == 0)
+				continue;
+			segment.lead = this.gap(started, wordEnd);
+			segment.offset = length;
+			length += segment.length;
+			started = true;
+			wordEnd = false;
+		}
+		if (sk != null)
+			length += 2 * sk.length();
+
+		// Write the segments in parallel, then the prosigns.
+		final long[] pattern = new long[length];
+		this.pool.invoke(new SegmentTask(plaintext, bounds, segments, pattern, 0, segments.length));
+		if (ct != null)
+		{
+			pattern[0] = this.wait;
+			this.templates.write(ct, pattern, 1);
+		}
+		if (sk != null)
+		{
+			// The last word is closed, and the prosign sent as a word of its own.
+			final int p = length - 2 * sk.length();
+			pattern[p] = this.gap(started, true);
+			this.templates.write(sk, pattern, p + 1);
+		}
+		return pattern;
+	}
+
+	/**
+	 * @param started - true if any letter has been written.
+	 * @param wordEnd - true if a word ended since the last letter, or before the first.
+	 * @return the gap before a letter, or the lead before the first, as MorseCode.toPattern() writes it.
+	 */
+	private long gap(boolean started, boolean wordEnd)
+	{
+		if (wordEnd)
+			return this.medium_gap;
+		return started ? this.short_gap : this.wait;
+	}
+
+	/**
+	 * Cuts a text into segments at spaces, each at least segmentLength characters long but the last.
+	 * @return the start of each segment, followed by the end of the last.
+	 */
+	private int[] cut(CharSequence plaintext, int begin, int end)
+	{
+		final ArrayList<Integer> bounds = new ArrayList<Integer>();
+		bounds.add(begin);
+		int cut = begin;
+		while (end - cut > this.segmentLength)
+		{
+			cut += this.segmentLength;
+			while (cut < end && plaintext.charAt(cut) != BulkEncoder.SPACE)
+				cut++;
+			if (cut == end)
+				break;
+			bounds.add(cut);
+		}
+		bounds.add(end);
+
+		final int[] result = new int[bounds.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = bounds.get(i);
+		return result;
+	}
+
+	/**
+	 * The letters of one segment, each with whether a word ended before it, and where
+	 * the segment goes in the pattern.
+	 */
+	private static class Segment
+	{
+		Morse[] letters = new Morse[BulkEncoder.INITIAL_CAPACITY];
+		boolean[] wordEnds = new boolean[BulkEncoder.INITIAL_CAPACITY];
+		int count = 0;
+		/**
+		 * Number of pattern elements, including the gap before the first letter.
+		 */
+		int length = 0;
+		/**
+		 * True if a word ended before the first letter, or anywhere in a segment without letters.
+		 */
+		boolean leadingWordEnd = false;
+
+		// Set once all segments are tokenized.
+		long lead;
+		int offset;
+	}
+
+	/**
+	 * Collects the tokens of one segment.
+	 */
+	private static class SegmentCollector implements MorseTokenizer.Listener
+	{
+		final Segment segment = new Segment();
+		private boolean wordEnd = false;
+
+		@Override
+		public void onLetter(Morse morse)
+		{
+			final Segment segment = this.segment;
+			if (segment.count == segment.letters.length)
+			{
+				segment.letters = Arrays.copyOf(segment.letters, 2 * segment.count);
+				segment.wordEnds = Arrays.copyOf(segment.wordEnds, 2 * segment.count);
+			}
+			segment.wordEnds[segment.count] = this.wordEnd;
+			segment.letters[segment.count++] = morse;
+			// A letter of n signals takes n durations and n - 1 gaps, after the gap before it.
+			segment.length += 2 * morse.length();
+			this.wordEnd = false;
+		}
+
+		@Override
+		public void onWordEnd()
+		{
+			if (this.segment.count == 0)
+				this.segment.leadingWordEnd = true;
+			else
+				this.wordEnd = true;
+		}
+	}
+
+	/**
+	 * Tokenizes a range of segments or, once they are placed, writes them into the pattern,
+	 * splitting the range in halves until one segment is left.
+	 */
+	private class SegmentTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		private final CharSequence plaintext;
+		private final int[] bounds;
+		private final Segment[] segments;
+		private final long[] pattern;
+		private final int from;
+		private final int to;
+
+		/**
+		 * @param pattern - null to tokenize the segments, or the pattern to write them into.
+		 */
+		SegmentTask(CharSequence plaintext, int[] bounds, Segment[] segments, long[] pattern, int from, int to)
+		{
+			this.plaintext = plaintext;
+			this.bounds = bounds;
+			this.segments = segments;
+			this.pattern = pattern;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (this.to - this.from > 1)
+			{
+				final int middle = (this.from + this.to) >>> 1;
+				RecursiveAction.invokeAll(new SegmentTask(this.plaintext, this.bounds, this.segments, this.pattern, this.from, middle),
+						new SegmentTask(this.plaintext, this.bounds, this.segments, this.pattern, middle, this.to));
+			}
+			else if (this.pattern == null)
+				this.tokenize();
+			else
+				this.write();
+		}
+
+		private void tokenize()
+		{
+			final SegmentCollector writer = new SegmentCollector();
+			final MorseTokenizer tokenizer = new MorseTokenizer(BulkEncoder.this.alphabet, writer, false);
+			tokenizer.write(this.plaintext, this.bounds[this.from], this.bounds[this.from + 1]);
+			tokenizer.finish();
+			this.segments[this.from] = writer.segment;
+		}
+
+		private void write()
+		{
+			final Segment segment = this.segments[this.from];
+			if (segment.count == 0)
+				return;
+			final BulkEncoder encoder = BulkEncoder.this;
+			int p = segment.offset;
+			for (int i = 0; i < segment.count; i++)
+			{
+				if (i == 0)
+					this.pattern[p++] = segment.lead;
+				else
+					this.pattern[p++] = segment.wordEnds[i] ? encoder.medium_gap : encoder.short_gap;
+				p = encoder.templates.write(segment.letters[i], this.pattern, p);
+			}
+		}
+	}
+
+	private static final char SPACE					= ' ';
+	private static final int INITIAL_CAPACITY		= 1024;
+	private static final int DEFAULT_SEGMENT_LENGTH	= 64 * 1024;
+}
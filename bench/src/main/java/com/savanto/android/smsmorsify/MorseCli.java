@@ -0,0 +1,406 @@
+package com.savanto.android.smsmorsify;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Locale;
+
+/**
+ * Command-line encoder, for running the encoding core on the JVM outside Android,
+ * e.g. to regression-test or load-test it on a server. It is built into the benchmark jar:
+ *
+ *     java -cp target/benchmarks.jar com.savanto.android.smsmorsify.MorseCli [-m text|pattern|timing] [-e charset] [file]
+ *
+ * Files are read through a memory-mapped FileChannel, one window at a time, and
+ * standard input is read as a stream when no file, or "-", is given. Bytes are
+ * decoded with a CharsetDecoder into a fixed buffer and fed to a MorseTokenizer or
+ * MorseStreamEncoder, and output is written as it is produced, so memory use does
+ * not depend on the size of the input. Throughput is reported on standard error.
+ *
+ * Output modes:
+ *     text - the Morse letters of each word separated by spaces, one word per line, as MorseCode.toString();
+ *     pattern - the vibration pattern as comma-separated durations, as MorseCode.toPattern();
+ *     timing - one line per segment of the pattern: "on" or "off", then its duration.
+ *
+ * @author savanto
+ */
+public final class MorseCli
+{
+	/**
+	 * What is written for the encoded input.
+	 */
+	enum Mode
+	{
+		TEXT,
+		PATTERN,
+		TIMING,
+	}
+
+	/**
+	 * Consumes the decoded characters, whichever the output mode.
+	 */
+	private interface Encoder
+	{
+		public void write(char c);
+
+		public void write(CharSequence s, int start, int end);
+
+		public void finish();
+	}
+
+	private final Encoder encoder;
+	private final PrintWriter out;
+	private final Charset charset;
+	private final CharBuffer chars = CharBuffer.allocate(MorseCli.CHAR_BUFFER_SIZE);
+	private long charCount = 0;
+
+	/**
+	 * The run of whitespace last read, held back until more text follows, so that trailing
+	 * whitespace is ignored as MorseCode does. Only its first character and its spaces matter:
+	 * the first ends any prosign being matched, and after it each space ends a word.
+	 */
+	private char firstWhitespace;
+	private long whitespace = 0;
+	private long spaces = 0;
+
+	/**
+	 * @param mode - what to write.
+	 * @param charset - encoding of the input.
+	 * @param out - destination of the output; flushed by finish(), not closed.
+	 */
+	MorseCli(Mode mode, Charset charset, PrintWriter out)
+	{
+		this.out = out;
+		this.charset = charset;
+		final MorseAlphabet alphabet = MorseAlphabet.getInstance(true, true, true);
+		if (mode == Mode.TEXT)
+		{
+			final MorseTokenizer tokenizer = new MorseTokenizer(alphabet, new MorseTokenizer.Listener()
+			{
+				@Override
+				public void onLetter(Morse morse)
+				{
+					MorseCli.this.out.print(morse);
+					MorseCli.this.out.print(MorseCli.SPACE);
+				}
+
+				@Override
+				public void onWordEnd()
+				{
+					MorseCli.this.out.print(MorseCli.NEWLINE);
+				}
+			});
+			this.encoder = new Encoder()
+			{
+				@Override
+				public void write(char c)
+				{
+					tokenizer.write(c);
+				}
+
+				@Override
+				public void write(CharSequence s, int start, int end)
+				{
+					tokenizer.write(s, start, end);
+				}
+
+				@Override
+				public void finish()
+				{
+					tokenizer.finish();
+				}
+			};
+		}
+		else
+		{
+			final boolean timing = mode == Mode.TIMING;
+			final MorseStreamEncoder stream = new MorseStreamEncoder(new MorseStreamEncoder.SegmentListener()
+			{
+				private boolean first = true;
+
+				@Override
+				public void onSegment(long duration, boolean on)
+				{
+					final PrintWriter out = MorseCli.this.out;
+					if (timing)
+					{
+						out.print(on ? "on " : "off ");
+						out.print(duration);
+						out.print(MorseCli.NEWLINE);
+					}
+					else
+					{
+						if (!this.first)
+							out.print(MorseCli.SEPARATOR);
+						out.print(duration);
+					}
+					this.first = false;
+				}
+			});
+			this.encoder = new Encoder()
+			{
+				@Override
+				public void write(char c)
+				{
+					stream.write(c);
+				}
+
+				@Override
+				public void write(CharSequence s, int start, int end)
+				{
+					stream.write(s, start, end);
+				}
+
+				@Override
+				public void finish()
+				{
+					stream.finish();
+					if (!timing)
+						MorseCli.this.out.print(MorseCli.NEWLINE);
+				}
+			};
+		}
+	}
+
+	/**
+	 * Encodes a whole file, mapping it into memory one window at a time.
+	 * @throws IOException if the file cannot be read or decoded.
+	 */
+	void encode(File file) throws IOException
+	{
+		final FileInputStream in = new FileInputStream(file);
+		try
+		{
+			final FileChannel channel = in.getChannel();
+			final CharsetDecoder decoder = this.newDecoder();
+			final long size = channel.size();
+			long position = 0;
+			long length;
+			boolean last;
+			ByteBuffer window;
+			do
+			{
+				length = Math.min(MorseCli.MAP_SIZE, size - position);
+				last = position + length == size;
+				window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+				this.decode(decoder, window, last);
+				// Bytes of a character cut by the end of the window are mapped again with the next.
+				position += window.position();
+			}
+			while (!last);
+			this.flush(decoder);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Encodes a stream until its end, through a fixed buffer. The channel is not closed.
+	 * @throws IOException if the channel cannot be read or decoded.
+	 */
+	void encode(ReadableByteChannel channel) throws IOException
+	{
+		final CharsetDecoder decoder = this.newDecoder();
+		final ByteBuffer bytes = ByteBuffer.allocate(MorseCli.BYTE_BUFFER_SIZE);
+		while (channel.read(bytes) != -1)
+		{
+			bytes.flip();
+			this.decode(decoder, bytes, false);
+			// Keep the bytes of a character cut by the end of the buffer.
+			bytes.compact();
+		}
+		bytes.flip();
+		this.decode(decoder, bytes, true);
+		this.flush(decoder);
+	}
+
+	/**
+	 * Ends the input, and flushes the output.
+	 * @return false if the output could not be written.
+	 */
+	boolean finish()
+	{
+		this.encoder.finish();
+		this.out.flush();
+		return !this.out.checkError();
+	}
+
+	/**
+	 * @return the number of characters encoded.
+	 */
+	long getCharCount()
+	{
+		return this.charCount;
+	}
+
+	/**
+	 * @return a decoder that replaces malformed input, as Readers do.
+	 */
+	private CharsetDecoder newDecoder()
+	{
+		return this.charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	/**
+	 * Decodes as much of bytes as possible, encoding the characters as the buffer fills.
+	 */
+	private void decode(CharsetDecoder decoder, ByteBuffer bytes, boolean endOfInput) throws CharacterCodingException
+	{
+		CoderResult result;
+		do
+		{
+			result = decoder.decode(bytes, this.chars, endOfInput);
+			if (result.isError())
+				result.throwException();
+			this.drain();
+		}
+		while (result.isOverflow());
+	}
+
+	private void flush(CharsetDecoder decoder)
+	{
+		while (decoder.flush(this.chars).isOverflow())
+			this.drain();
+		this.drain();
+	}
+
+	/**
+	 * Encodes the characters decoded so far, and empties the buffer.
+	 */
+	private void drain()
+	{
+		this.chars.flip();
+		final int length = this.chars.length();
+		int start = 0;
+		char c;
+		for (int i = 0; i < length; i++)
+		{
+			c = this.chars.charAt(i);
+			if (c <= MorseCli.SPACE)
+			{
+				// Write the text before the whitespace, and hold the whitespace back.
+				if (start < i)
+					this.encoder.write(this.chars, start, i);
+				start = i + 1;
+				if (this.whitespace++ == 0)
+					this.firstWhitespace = c;
+				if (c == MorseCli.SPACE)
+					this.spaces++;
+			}
+			else if (this.whitespace > 0)
+				this.replayWhitespace();
+		}
+		if (start < length)
+			this.encoder.write(this.chars, start, length);
+		this.charCount += length;
+		this.chars.clear();
+	}
+
+	/**
+	 * Writes the whitespace held back, now that text follows it.
+	 */
+	private void replayWhitespace()
+	{
+		this.encoder.write(this.firstWhitespace);
+		if (this.firstWhitespace == MorseCli.SPACE)
+			this.spaces--;
+		for (; this.spaces > 0; this.spaces--)
+			this.encoder.write(MorseCli.SPACE);
+		this.whitespace = 0;
+	}
+
+	public static void main(String[] args)
+	{
+		Mode mode = Mode.TEXT;
+		Charset charset = Charset.forName(MorseCli.DEFAULT_CHARSET);
+		String path = null;
+		try
+		{
+			for (int i = 0; i < args.length; i++)
+			{
+				if ("-m".equals(args[i]) && i + 1 < args.length)
+					mode = Mode.valueOf(args[++i].toUpperCase(Locale.US));
+				else if ("-e".equals(args[i]) && i + 1 < args.length)
+					charset = Charset.forName(args[++i]);
+				else if (path == null && (!args[i].startsWith("-") || "-".equals(args[i])))
+					path = args[i];
+				else
+					throw new IllegalArgumentException(args[i]);
+			}
+		}
+		catch (IllegalArgumentException e)
+		{
+			// Also thrown for unknown modes and charsets.
+			System.err.println("Invalid argument: " + e.getMessage());
+			System.err.println(MorseCli.USAGE);
+			System.exit(MorseCli.EXIT_USAGE);
+			return;
+		}
+
+		final PrintWriter out = new PrintWriter(new BufferedWriter(
+				new OutputStreamWriter(System.out, Charset.forName(MorseCli.OUTPUT_CHARSET)), MorseCli.OUTPUT_BUFFER_SIZE));
+		final MorseCli cli = new MorseCli(mode, charset, out);
+		if ("-".equals(path))
+			path = null;
+		final long start = System.nanoTime();
+		try
+		{
+			if (path == null)
+				cli.encode(Channels.newChannel(System.in));
+			else
+				cli.encode(new File(path));
+		}
+		catch (IOException e)
+		{
+			out.flush();
+			System.err.println("Failed to read " + (path == null ? "standard input" : path) + ": " + e.getMessage());
+			System.exit(MorseCli.EXIT_FAILURE);
+			return;
+		}
+		if (!cli.finish())
+		{
+			System.err.println("Failed to write output");
+			System.exit(MorseCli.EXIT_FAILURE);
+			return;
+		}
+
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.printf(Locale.US, "%d chars in %.3f s: %.0f chars/s%n",
+				cli.getCharCount(), seconds, cli.getCharCount() / Math.max(seconds, 1e-9));
+	}
+
+	private static final char SPACE				= ' ';
+	private static final char NEWLINE				= '\n';
+	private static final char SEPARATOR				= ',';
+
+	/**
+	 * Largest part of a file mapped at once, so that files of any size can be mapped.
+	 */
+	private static final long MAP_SIZE				= 64L * 1024 * 1024;
+	private static final int BYTE_BUFFER_SIZE		= 64 * 1024;
+	private static final int CHAR_BUFFER_SIZE		= 64 * 1024;
+	private static final int OUTPUT_BUFFER_SIZE		= 64 * 1024;
+
+	private static final String DEFAULT_CHARSET		= "UTF-8";
+	private static final String OUTPUT_CHARSET		= "US-ASCII";
+	private static final String USAGE				= "Usage: MorseCli [-m text|pattern|timing] [-e charset] [file|-]";
+	private static final int EXIT_FAILURE			= 1;
+	private static final int EXIT_USAGE				= 2;
+}
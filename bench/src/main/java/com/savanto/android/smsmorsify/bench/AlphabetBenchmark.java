@@ -0,0 +1,71 @@
+package com.savanto.android.smsmorsify.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.savanto.android.smsmorsify.MorseAlphabet;
+import com.savanto.android.smsmorsify.MorseCode;
+
+/**
+ * Measures the setup each SMS pays before its text is encoded: building a HashMap
+ * alphabet and dictionary of new Morse letters, as every message used to, against
+ * fetching the shared MorseAlphabet. Also measures a whole 160-character message
+ * both ways.
+ *
+ * Run with the GC profiler, whose gc.alloc.rate.norm shows the bytes allocated per message:
+ *     java -jar target/benchmarks.jar AlphabetBenchmark -prof gc
+ *
+ * @author savanto
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlphabetBenchmark
+{
+	private String text;
+
+	@Setup
+	public void setUp()
+	{
+		this.text = Texts.generate(AlphabetBenchmark.SMS_LENGTH);
+	}
+
+	@Benchmark
+	public LegacyMorseCode legacySetup()
+	{
+		return new LegacyMorseCode("");
+	}
+
+	@Benchmark
+	public MorseAlphabet sharedSetup()
+	{
+		return MorseAlphabet.getInstance(true, true, true);
+	}
+
+	@Benchmark
+	public LegacyMorseCode legacyMessage()
+	{
+		return new LegacyMorseCode(this.text);
+	}
+
+	@Benchmark
+	public MorseCode sharedMessage()
+	{
+		return new MorseCode(this.text);
+	}
+
+	private static final int SMS_LENGTH	= 160;
+}
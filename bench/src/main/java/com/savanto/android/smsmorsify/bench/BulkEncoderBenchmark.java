@@ -0,0 +1,83 @@
+package com.savanto.android.smsmorsify.bench;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.savanto.android.smsmorsify.BulkEncoder;
+import com.savanto.android.smsmorsify.MorseCode;
+
+/**
+ * Measures how BulkEncoder scales with the number of cores, on texts of 1 MB and more,
+ * against a sequential MorseCode.toPattern() of the same text. Before measuring, the
+ * bulk output is checked to be identical to the sequential one.
+ *
+ * The parallelism runs from 1 to 8 by default; pass the cores of the machine, e.g.:
+ *     java -jar target/benchmarks.jar BulkEncoderBenchmark -p parallelism=1,2,4,8,16
+ *
+ * @author savanto
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx2g" })
+public class BulkEncoderBenchmark
+{
+	@Param({ "1048576", "8388608" })
+	public int size;
+
+	@Param({ "1", "2", "4", "8" })
+	public int parallelism;
+
+	private String text;
+	private ForkJoinPool pool;
+	private BulkEncoder encoder;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		this.text = Texts.generate(this.size);
+		this.pool = new ForkJoinPool(this.parallelism);
+		this.encoder = new BulkEncoder(this.pool);
+		if (!Arrays.equals(this.sequential(), this.bulk()))
+			throw new IllegalStateException("Bulk pattern differs from MorseCode.toPattern()");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		this.pool.shutdown();
+	}
+
+	@Benchmark
+	public long[] bulk()
+	{
+		return this.encoder.toPattern(this.text);
+	}
+
+	/**
+	 * The baseline: one thread, whatever the parallelism.
+	 */
+	@Benchmark
+	public long[] sequential()
+	{
+		return new MorseCode(this.text)
+				.toPattern(MorseCode.DEFAULT_WAIT, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP);
+	}
+}
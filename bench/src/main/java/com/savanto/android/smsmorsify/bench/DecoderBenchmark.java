@@ -0,0 +1,74 @@
+package com.savanto.android.smsmorsify.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.savanto.android.smsmorsify.AdaptiveMorseDecoder;
+import com.savanto.android.smsmorsify.MorseCode;
+import com.savanto.android.smsmorsify.MorseDecoder;
+
+/**
+ * Measures decoding throughput: Morse strings as MorseCode.toString() writes them,
+ * patterns of known timing, and patterns decoded with adaptive timing.
+ * Reported per operation; divide the text size by the time for characters per second.
+ *
+ *     java -jar target/benchmarks.jar DecoderBenchmark -prof gc
+ *
+ * @author savanto
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecoderBenchmark
+{
+	@Param({ "160", "1024", "8192", "65536" })
+	public int size;
+
+	private String morse;
+	private long[] pattern;
+	private MorseDecoder decoder;
+	private AdaptiveMorseDecoder adaptive;
+
+	@Setup
+	public void setUp()
+	{
+		final MorseCode code = new MorseCode(Texts.generate(this.size));
+		this.morse = code.toString();
+		this.pattern = code.toPattern(MorseCode.DEFAULT_WAIT, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP);
+		this.decoder = new MorseDecoder();
+		this.adaptive = new AdaptiveMorseDecoder();
+	}
+
+	@Benchmark
+	public String decodeString()
+	{
+		return this.decoder.decode(this.morse);
+	}
+
+	@Benchmark
+	public String decodePattern()
+	{
+		return this.decoder.decode(this.pattern, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP,
+				MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP);
+	}
+
+	@Benchmark
+	public String decodeAdaptive()
+	{
+		return this.adaptive.decode(this.pattern);
+	}
+}
@@ -0,0 +1,110 @@
+package com.savanto.android.smsmorsify.bench;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.savanto.android.smsmorsify.Ciphertext;
+import com.savanto.android.smsmorsify.Morse;
+import com.savanto.android.smsmorsify.MorseAlphabet;
+import com.savanto.android.smsmorsify.MorseCode;
+import com.savanto.android.smsmorsify.MorseEncoder;
+import com.savanto.android.smsmorsify.PatternTemplates;
+
+/**
+ * Measures each step of encoding a message, from a single SMS up to 64 KB of text:
+ * building Morse letters from their signals, building a MorseCode, parsing the
+ * plaintext into a Ciphertext, and writing the vibration pattern.
+ *
+ * Run with the GC profiler to see the allocation rate of each step:
+ *     java -jar target/benchmarks.jar EncodingBenchmark -prof gc
+ *
+ * @author savanto
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark
+{
+	@Param({ "160", "1024", "8192", "65536" })
+	public int size;
+
+	private String text;
+	private String[] signals;
+	private MorseEncoder encoder;
+	private PatternTemplates templates;
+	private Ciphertext ciphertext;
+	private long[] pattern;
+
+	@Setup
+	public void setUp()
+	{
+		final MorseAlphabet alphabet = MorseAlphabet.getInstance(true, true, true);
+		this.text = Texts.generate(this.size);
+
+		// The signals of every letter of the text, as they would be read from a dictionary.
+		final ArrayList<String> signals = new ArrayList<String>();
+		Morse morse;
+		for (int i = 0; i < this.text.length(); i++)
+		{
+			morse = alphabet.get(this.text.charAt(i));
+			if (morse != null)
+				signals.add(morse.toString());
+		}
+		this.signals = signals.toArray(new String[signals.size()]);
+
+		this.encoder = new MorseEncoder(alphabet, MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP);
+		this.templates = new PatternTemplates(alphabet, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP);
+		this.ciphertext = this.encoder.encode(this.text);
+		this.pattern = new long[this.ciphertext.patternLength()];
+	}
+
+	@Benchmark
+	public void morse(Blackhole blackhole)
+	{
+		for (String signal : this.signals)
+			blackhole.consume(new Morse(signal));
+	}
+
+	@Benchmark
+	public MorseCode morseCode()
+	{
+		return new MorseCode(this.text);
+	}
+
+	@Benchmark
+	public Ciphertext parse()
+	{
+		return this.encoder.encode(this.text);
+	}
+
+	@Benchmark
+	public long[] toPattern()
+	{
+		return this.ciphertext.toPattern(MorseCode.DEFAULT_WAIT, this.templates);
+	}
+
+	/**
+	 * Writes into a buffer allocated once, as the service does for its queued messages.
+	 */
+	@Benchmark
+	public int toPatternInPlace()
+	{
+		return this.ciphertext.toPattern(MorseCode.DEFAULT_WAIT, this.templates, this.pattern, 0);
+	}
+}
@@ -0,0 +1,159 @@
+package com.savanto.android.smsmorsify.bench;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.savanto.android.smsmorsify.MessageFilter;
+
+/**
+ * Measures the message filter with up to thousands of allowed senders, blocked
+ * senders and keywords: compiling the rules, checking a sender, and checking an SMS
+ * text with and without a keyword in it. The keyword check is also measured as a
+ * naive scan that tries every keyword with contains(), for comparison. Ignore
+ * patterns are matched one by one, so they are kept to a handful.
+ *
+ *     java -jar target/benchmarks.jar FilterBenchmark -prof gc
+ *
+ * @author savanto
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark
+{
+	@Param({ "10", "1000", "10000" })
+	public int rules;
+
+	private String allowed;
+	private String blocked;
+	private String keywords;
+	private String patterns;
+	private String[] keywordList;
+	private MessageFilter filter;
+	private String allowedSender;
+	private String unknownSender;
+	private String textWithout;
+	private String textWith;
+
+	@Setup
+	public void setUp()
+	{
+		final Random random = new Random(FilterBenchmark.SEED);
+		final String[] allowed = new String[this.rules];
+		final String[] blocked = new String[this.rules];
+		this.keywordList = new String[this.rules];
+		for (int i = 0; i < this.rules; i++)
+		{
+			allowed[i] = FilterBenchmark.randomNumber(random);
+			blocked[i] = FilterBenchmark.randomNumber(random);
+			this.keywordList[i] = FilterBenchmark.randomWord(random);
+		}
+		this.allowed = FilterBenchmark.join(allowed, ", ");
+		this.blocked = FilterBenchmark.join(blocked, ", ");
+		this.keywords = FilterBenchmark.join(this.keywordList, "\n");
+		this.patterns = FilterBenchmark.join(FilterBenchmark.PATTERNS, "\n");
+		this.filter = new MessageFilter(this.allowed, this.blocked, this.keywords, this.patterns);
+
+		this.allowedSender = allowed[random.nextInt(allowed.length)].replace(" ", "");
+		this.unknownSender = FilterBenchmark.randomNumber(random).replace(" ", "");
+		this.textWithout = Texts.generate(FilterBenchmark.SMS_LENGTH);
+		// The keyword comes last, so that the whole text is scanned.
+		this.textWith = this.textWithout.substring(0, FilterBenchmark.SMS_LENGTH - FilterBenchmark.MAX_WORD_LENGTH - 1)
+				+ ' ' + this.keywordList[random.nextInt(this.keywordList.length)];
+	}
+
+	@Benchmark
+	public MessageFilter compile()
+	{
+		return new MessageFilter(this.allowed, this.blocked, this.keywords, this.patterns);
+	}
+
+	@Benchmark
+	public boolean allowedSender()
+	{
+		return this.filter.acceptSender(this.allowedSender);
+	}
+
+	@Benchmark
+	public boolean unknownSender()
+	{
+		return this.filter.acceptSender(this.unknownSender);
+	}
+
+	@Benchmark
+	public boolean textWithoutKeyword()
+	{
+		return this.filter.acceptText(this.textWithout);
+	}
+
+	@Benchmark
+	public boolean textWithKeyword()
+	{
+		return this.filter.acceptText(this.textWith);
+	}
+
+	@Benchmark
+	public boolean naiveTextWithoutKeyword()
+	{
+		final String text = this.textWithout.toUpperCase(Locale.US);
+		for (String keyword : this.keywordList)
+			if (text.contains(keyword))
+				return true;
+		return false;
+	}
+
+	private static String randomNumber(Random random)
+	{
+		final StringBuilder number = new StringBuilder("+1 ");
+		for (int i = 0; i < FilterBenchmark.NUMBER_LENGTH; i++)
+			number.append((char) ('0' + random.nextInt(10)));
+		return number.toString();
+	}
+
+	/**
+	 * @return an upper-case word, as the naive scan compares against the text in upper case.
+	 */
+	private static String randomWord(Random random)
+	{
+		final char[] word = new char[FilterBenchmark.MIN_WORD_LENGTH
+				+ random.nextInt(FilterBenchmark.MAX_WORD_LENGTH - FilterBenchmark.MIN_WORD_LENGTH + 1)];
+		for (int i = 0; i < word.length; i++)
+			word[i] = (char) ('A' + random.nextInt(26));
+		return new String(word);
+	}
+
+	private static String join(String[] entries, String separator)
+	{
+		final StringBuilder s = new StringBuilder();
+		for (int i = 0; i < entries.length; i++)
+		{
+			if (i > 0)
+				s.append(separator);
+			s.append(entries[i]);
+		}
+		return s.toString();
+	}
+
+	private static final String[] PATTERNS	= { "^spam", "you have won", "\\bloan\\b", "click (here|now)", "[0-9]{6} is your code" };
+	private static final long SEED			= 21;
+	private static final int SMS_LENGTH		= 160;
+	private static final int NUMBER_LENGTH	= 10;
+	private static final int MIN_WORD_LENGTH	= 5;
+	private static final int MAX_WORD_LENGTH	= 10;
+}
@@ -0,0 +1,240 @@
+package com.savanto.android.smsmorsify.bench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+
+import com.savanto.android.smsmorsify.Morse;
+import com.savanto.android.smsmorsify.MorseCode;
+
+/**
+ * The encoder as it was before the shared alphabets, the array lookup table, the
+ * single-pass pattern and the letter templates, kept as the baseline the benchmarks
+ * compare against. Every instance builds its own HashMap alphabet and dictionary,
+ * parses through containsKey() and get() on boxed Characters, and offers both pattern
+ * builders that were replaced: the ArrayList of boxed Longs fed by a switch over each
+ * letter's signal chars, and the single pass into a long[] that read each signal.
+ *
+ * Letters are built with the current bit-packed Morse, so the baseline allocates
+ * somewhat less per letter than the original did.
+ *
+ * @author savanto
+ */
+public final class LegacyMorseCode
+{
+	private final ArrayList<ArrayList<Morse>> ciphertext = new ArrayList<ArrayList<Morse>>(0);
+	private final int short_gap;
+	private final int medium_gap;
+
+	/**
+	 * Builds the full alphabet and dictionary, then parses the plaintext, as every message used to.
+	 * @param plaintext - the plaintext message to be encoded into Morse.
+	 */
+	public LegacyMorseCode(String plaintext)
+	{
+		this(plaintext, LegacyMorseCode.newAlphabet(), LegacyMorseCode.newDictionary());
+	}
+
+	/**
+	 * Parses the plaintext with an alphabet and dictionary built beforehand.
+	 * @param plaintext - the plaintext message to be encoded into Morse.
+	 * @param alphabet - from newAlphabet().
+	 * @param dictionary - from newDictionary().
+	 */
+	public LegacyMorseCode(String plaintext, HashMap<Character, Morse> alphabet, HashMap<String, Morse> dictionary)
+	{
+		this.short_gap = MorseCode.DEFAULT_SHORT_GAP;
+		this.medium_gap = MorseCode.DEFAULT_MEDIUM_GAP;
+		this.parsePlaintext(plaintext, alphabet, dictionary);
+	}
+
+	private void parsePlaintext(String plaintext, HashMap<Character, Morse> alphabet, HashMap<String, Morse> dictionary)
+	{
+		plaintext = plaintext.trim();
+		plaintext = plaintext.toUpperCase(Locale.getDefault());
+		if (plaintext.length() < 1)
+			return;
+
+		ArrayList<Morse> word = new ArrayList<Morse>(0);
+		if (dictionary.containsKey(MorseCode.PROSIGN_CT))
+		{
+			word.add(dictionary.get(MorseCode.PROSIGN_CT));
+			this.ciphertext.add(word);
+			word = new ArrayList<Morse>(0);
+		}
+
+		char c;
+		for (int i = 0; i < plaintext.length(); i++)
+		{
+			c = plaintext.charAt(i);
+			if (c == LegacyMorseCode.SPACE)
+			{
+				this.ciphertext.add(word);
+				word = new ArrayList<Morse>(0);
+				continue;
+			}
+			// Boxes c twice, and hashes it twice.
+			if (alphabet.containsKey(c))
+				word.add(alphabet.get(c));
+		}
+		this.ciphertext.add(word);
+
+		if (dictionary.containsKey(MorseCode.PROSIGN_SK))
+		{
+			word = new ArrayList<Morse>(0);
+			word.add(dictionary.get(MorseCode.PROSIGN_SK));
+			this.ciphertext.add(word);
+		}
+	}
+
+	/**
+	 * The original pattern builder: boxes every duration into an ArrayList, removes
+	 * the trailing gaps, and copies the list into a long[].
+	 */
+	public long[] toPatternBoxed(long wait, long dit, long dah, long gap)
+	{
+		ArrayList<Long> patternList = new ArrayList<Long>(0);
+		patternList.add(wait);
+		ArrayList<Morse> word;
+		char[] signal;
+		for (int i = 0; i < this.ciphertext.size(); i++)
+		{
+			word = this.ciphertext.get(i);
+			for (int j = 0; j < word.size(); j++)
+			{
+				signal = word.get(j).toSignal();
+				for (int k = 0; k < signal.length; k++)
+				{
+					switch (signal[k])
+					{
+						case Morse.DIT:
+							patternList.add(dit);
+							break;
+						case Morse.DAH:
+							patternList.add(dah);
+							break;
+						case Morse.GAP:
+							patternList.add(gap);
+							break;
+					}
+				}
+				patternList.add(gap * this.short_gap);
+			}
+			patternList.remove(patternList.size() - 1);
+			patternList.add(gap * this.medium_gap);
+		}
+		patternList.remove(patternList.size() - 1);
+
+		long[] pattern = new long[patternList.size()];
+		for (int i = 0; i < pattern.length; i++)
+			pattern[i] = patternList.get(i);
+		return pattern;
+	}
+
+	/**
+	 * @return the exact number of elements toPattern() writes.
+	 */
+	public int patternLength()
+	{
+		int length = 0;
+		ArrayList<Morse> word;
+		for (int i = 0; i < this.ciphertext.size(); i++)
+		{
+			word = this.ciphertext.get(i);
+			for (int j = 0; j < word.size(); j++)
+				length += 2 * word.get(j).length();
+		}
+		return length;
+	}
+
+	/**
+	 * The single-pass pattern builder that letter templates replaced: writes into
+	 * a long[], choosing the duration of each signal as it goes.
+	 * @return the number of elements written, which equals patternLength().
+	 */
+	public int toPattern(long wait, long dit, long dah, long gap, long[] pattern, int offset)
+	{
+		final long short_gap = gap * this.short_gap;
+		final long medium_gap = gap * this.medium_gap;
+
+		int p = offset + 1;
+		long lead = wait;
+		boolean first = true;
+		ArrayList<Morse> word;
+		Morse morse;
+		for (int i = 0; i < this.ciphertext.size(); i++)
+		{
+			word = this.ciphertext.get(i);
+			if (word.isEmpty())
+			{
+				if (first)
+					lead = medium_gap;
+				continue;
+			}
+			for (int j = 0; j < word.size(); j++)
+			{
+				if (first)
+					pattern[offset] = lead;
+				else
+					pattern[p++] = (j == 0 ? medium_gap : short_gap);
+				first = false;
+
+				morse = word.get(j);
+				for (int k = 0; k < morse.length(); k++)
+				{
+					if (k > 0)
+						pattern[p++] = gap;
+					pattern[p++] = morse.isDah(k) ? dah : dit;
+				}
+			}
+		}
+
+		if (first)
+			return 0;
+		return p - offset;
+	}
+
+	/**
+	 * @return a new alphabet of letters, numbers and symbols, as each message used to build.
+	 */
+	public static HashMap<Character, Morse> newAlphabet()
+	{
+		final HashMap<Character, Morse> alphabet = new HashMap<Character, Morse>(LegacyMorseCode.ALPHABET_SIZE);
+		for (int i = 0; i < LegacyMorseCode.CHARACTERS.length(); i++)
+			alphabet.put(LegacyMorseCode.CHARACTERS.charAt(i), new Morse(LegacyMorseCode.SIGNALS[i]));
+		return alphabet;
+	}
+
+	/**
+	 * @return a new prosign dictionary, as each message used to build.
+	 */
+	public static HashMap<String, Morse> newDictionary()
+	{
+		final HashMap<String, Morse> dictionary = new HashMap<String, Morse>(LegacyMorseCode.PROSIGNS.length);
+		for (int i = 0; i < LegacyMorseCode.PROSIGNS.length; i++)
+			dictionary.put(LegacyMorseCode.PROSIGNS[i], new Morse(LegacyMorseCode.PROSIGN_SIGNALS[i]));
+		return dictionary;
+	}
+
+	private static final char SPACE					= ' ';
+
+	private static final String CHARACTERS			= "ABCDEFGHIJKLMNOPQRSTUVWXYZ" + "0123456789" + ".,?'!/()&:;=+-_\"$@";
+	private static final String[] SIGNALS			= {
+		".-", "-...", "-.-.", "-..", ".", "..-.", "--.", "....", "..", ".---", "-.-", ".-..", "--",
+		"-.", "---", ".--.", "--.-", ".-.", "...", "-", "..-", "...-", ".--", "-..-", "-.--", "--..",
+		"-----", ".----", "..---", "...--", "....-", ".....", "-....", "--...", "---..", "----.",
+		".-.-.-", "--..--", "..--..", ".----.", "-.-.--", "-..-.", "-.--.", "-.--.-", ".-...",
+		"---...", "-.-.-.", "-...-", ".-.-.", "-....-", "..--.-", ".-..-.", "...-..-", ".--.-.",
+	};
+	private static final int ALPHABET_SIZE			= 54;
+	private static final String[] PROSIGNS			= {
+		MorseCode.PROSIGN_AA, MorseCode.PROSIGN_AR, MorseCode.PROSIGN_AS, MorseCode.PROSIGN_BK,
+		MorseCode.PROSIGN_BT, MorseCode.PROSIGN_CL, MorseCode.PROSIGN_CT, MorseCode.PROSIGN_DO,
+		MorseCode.PROSIGN_K, MorseCode.PROSIGN_KN, MorseCode.PROSIGN_SK, MorseCode.PROSIGN_SN,
+		MorseCode.PROSIGN_SOS, MorseCode.PROSIGN_EEEEEE,
+	};
+	private static final String[] PROSIGN_SIGNALS	= {
+		".-.-", ".-.-.", ".-...", "-...-.-", "-...-", "-.-..-..", "-.-.-", "-..---", "-.-", "-.--.",
+		"...-.-", "...-.", "...---...", "......",
+	};
+}
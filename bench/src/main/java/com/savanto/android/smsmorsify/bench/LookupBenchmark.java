@@ -0,0 +1,102 @@
+package com.savanto.android.smsmorsify.bench;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.savanto.android.smsmorsify.Ciphertext;
+import com.savanto.android.smsmorsify.Morse;
+import com.savanto.android.smsmorsify.MorseAlphabet;
+import com.savanto.android.smsmorsify.MorseCode;
+import com.savanto.android.smsmorsify.MorseEncoder;
+
+/**
+ * Measures character lookup on multi-kilobyte messages: containsKey() then get() on a
+ * HashMap of boxed Characters, against one read of the MorseAlphabet's array table.
+ * Also measures parsing the whole message both ways, with the alphabets built beforehand.
+ *
+ *     java -jar target/benchmarks.jar LookupBenchmark -prof gc
+ *
+ * @author savanto
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark
+{
+	@Param({ "1024", "8192", "65536" })
+	public int size;
+
+	private String text;
+	private String upperText;
+	private HashMap<Character, Morse> map;
+	private HashMap<String, Morse> dictionary;
+	private MorseAlphabet alphabet;
+	private MorseEncoder encoder;
+
+	@Setup
+	public void setUp()
+	{
+		this.text = Texts.generate(this.size);
+		// The HashMap only holds upper case, so the text was converted before lookup.
+		this.upperText = this.text.toUpperCase(Locale.US);
+		this.map = LegacyMorseCode.newAlphabet();
+		this.dictionary = LegacyMorseCode.newDictionary();
+		this.alphabet = MorseAlphabet.getInstance(true, true, true);
+		this.encoder = new MorseEncoder(this.alphabet, MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP);
+	}
+
+	@Benchmark
+	public void hashMapLookup(Blackhole blackhole)
+	{
+		final String text = this.upperText;
+		char c;
+		for (int i = 0; i < text.length(); i++)
+		{
+			c = text.charAt(i);
+			if (this.map.containsKey(c))
+				blackhole.consume(this.map.get(c));
+		}
+	}
+
+	@Benchmark
+	public void arrayLookup(Blackhole blackhole)
+	{
+		final String text = this.text;
+		Morse morse;
+		for (int i = 0; i < text.length(); i++)
+		{
+			morse = this.alphabet.get(text.charAt(i));
+			if (morse != null)
+				blackhole.consume(morse);
+		}
+	}
+
+	@Benchmark
+	public LegacyMorseCode hashMapParse()
+	{
+		return new LegacyMorseCode(this.text, this.map, this.dictionary);
+	}
+
+	@Benchmark
+	public Ciphertext arrayParse()
+	{
+		return this.encoder.encode(this.text);
+	}
+}
@@ -0,0 +1,132 @@
+package com.savanto.android.smsmorsify.bench;
+
+import java.util.Locale;
+import java.util.Random;
+
+import com.savanto.android.smsmorsify.AdaptiveMorseDecoder;
+import com.savanto.android.smsmorsify.MorseCode;
+import com.savanto.android.smsmorsify.MorseDecoder;
+
+/**
+ * Measures how well durations are decoded as timing gets noisier. Generated messages are
+ * encoded, every duration of their patterns is scaled by a tempo and then jittered by a
+ * random factor, and the result is decoded by the AdaptiveMorseDecoder and, for comparison,
+ * by the fixed-timing MorseDecoder. Accuracy is the share of characters decoded correctly,
+ * from the edit distance between the decoded and the original text.
+ *
+ * Prints the accuracy curve, one line per jitter level and one column per tempo:
+ *     java -cp target/benchmarks.jar com.savanto.android.smsmorsify.bench.NoiseHarness [messages] [length]
+ *
+ * @author savanto
+ */
+public final class NoiseHarness
+{
+	private final MorseDecoder decoder = new MorseDecoder();
+	private final AdaptiveMorseDecoder adaptive = new AdaptiveMorseDecoder();
+	private final int messages;
+	private final int length;
+
+	/**
+	 * @param messages - number of messages decoded for each point of the curve.
+	 * @param length - number of characters in each message.
+	 */
+	public NoiseHarness(int messages, int length)
+	{
+		this.messages = messages;
+		this.length = length;
+	}
+
+	/**
+	 * @param jitter - largest relative error of each duration, e.g. 0.2 for up to 20% longer or shorter.
+	 * @param tempo - factor applied to every duration before the jitter, e.g. 2 for keying at half speed.
+	 * @param adaptive - true to decode with the AdaptiveMorseDecoder, false with fixed timing.
+	 * @return the share of characters decoded correctly, over all messages.
+	 */
+	public double accuracy(double jitter, double tempo, boolean adaptive)
+	{
+		long errors = 0;
+		long total = 0;
+		String text, expected, decoded;
+		long[] pattern;
+		for (int m = 0; m < this.messages; m++)
+		{
+			// Every point of the curve decodes the same messages, with the same noise.
+			text = Texts.generate(this.length, m);
+			final MorseCode code = new MorseCode(text);
+			pattern = NoiseHarness.distort(code.toPattern(MorseCode.DEFAULT_WAIT, MorseCode.DEFAULT_DIT,
+					MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP), jitter, tempo, new Random(m));
+			if (adaptive)
+				decoded = this.adaptive.decode(pattern);
+			else
+				decoded = this.decoder.decode(pattern, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP,
+						MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP);
+			// The framing prosigns are decoded too.
+			expected = MorseCode.PROSIGN_CT + ' ' + text.toUpperCase(Locale.US) + ' ' + MorseCode.PROSIGN_SK;
+			errors += NoiseHarness.distance(expected, decoded);
+			total += expected.length();
+		}
+		return Math.max(0, 1 - (double) errors / total);
+	}
+
+	/**
+	 * @return a copy of pattern, each duration but the leading wait scaled by tempo and by a random factor within 1 ± jitter.
+	 */
+	public static long[] distort(long[] pattern, double jitter, double tempo, Random random)
+	{
+		final long[] distorted = new long[pattern.length];
+		if (pattern.length > 0)
+			distorted[0] = pattern[0];
+		for (int i = 1; i < pattern.length; i++)
+			distorted[i] = Math.max(1, Math.round(pattern[i] * tempo * (1 + jitter * (2 * random.nextDouble() - 1))));
+		return distorted;
+	}
+
+	/**
+	 * @return the Levenshtein distance between a and b.
+	 */
+	public static int distance(String a, String b)
+	{
+		int[] previous = new int[b.length() + 1];
+		int[] current = new int[b.length() + 1];
+		int[] swap;
+		for (int j = 0; j <= b.length(); j++)
+			previous[j] = j;
+		for (int i = 1; i <= a.length(); i++)
+		{
+			current[0] = i;
+			for (int j = 1; j <= b.length(); j++)
+				current[j] = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1),
+						previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1));
+			swap = previous;
+			previous = current;
+			current = swap;
+		}
+		return previous[b.length()];
+	}
+
+	public static void main(String[] args)
+	{
+		final int messages = args.length > 0 ? Integer.parseInt(args[0]) : NoiseHarness.DEFAULT_MESSAGES;
+		final int length = args.length > 1 ? Integer.parseInt(args[1]) : NoiseHarness.DEFAULT_LENGTH;
+		final NoiseHarness harness = new NoiseHarness(messages, length);
+
+		System.out.printf(Locale.US, "Accuracy over %d messages of %d characters%n", messages, length);
+		System.out.printf(Locale.US, "%8s", "jitter");
+		for (double tempo : NoiseHarness.TEMPOS)
+			System.out.printf(Locale.US, "  fixed x%-4.2f adaptive x%-4.2f", tempo, tempo);
+		System.out.println();
+		for (double jitter : NoiseHarness.JITTERS)
+		{
+			System.out.printf(Locale.US, "%7.0f%%", 100 * jitter);
+			for (double tempo : NoiseHarness.TEMPOS)
+				System.out.printf(Locale.US, "  %12.4f %15.4f",
+						harness.accuracy(jitter, tempo, false), harness.accuracy(jitter, tempo, true));
+			System.out.println();
+		}
+	}
+
+	private static final int DEFAULT_MESSAGES	= 20;
+	private static final int DEFAULT_LENGTH		= 1000;
+	private static final double[] JITTERS		= { 0, 0.05, 0.1, 0.15, 0.2, 0.25, 0.3, 0.4, 0.5 };
+	private static final double[] TEMPOS		= { 1, 0.6, 1.8 };
+}
@@ -0,0 +1,100 @@
+package com.savanto.android.smsmorsify.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.savanto.android.smsmorsify.Ciphertext;
+import com.savanto.android.smsmorsify.MorseAlphabet;
+import com.savanto.android.smsmorsify.MorseCode;
+import com.savanto.android.smsmorsify.MorseEncoder;
+import com.savanto.android.smsmorsify.PatternTemplates;
+
+/**
+ * Measures building the vibration pattern of an already parsed message: the legacy
+ * ArrayList of boxed Longs, against the current single pass into a long[], either
+ * allocated for the message or reused. The single pass is measured both choosing the
+ * duration of every signal as it goes, and copying each letter from its template,
+ * including through MorseCode, which looks up the templates for the durations it is given.
+ *
+ *     java -jar target/benchmarks.jar PatternBenchmark -prof gc
+ *
+ * @author savanto
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatternBenchmark
+{
+	@Param({ "160", "1024", "8192", "65536" })
+	public int size;
+
+	private LegacyMorseCode legacy;
+	private Ciphertext ciphertext;
+	private MorseCode code;
+	private PatternTemplates templates;
+	private long[] pattern;
+
+	@Setup
+	public void setUp()
+	{
+		final String text = Texts.generate(this.size);
+		final MorseAlphabet alphabet = MorseAlphabet.getInstance(true, true, true);
+		this.legacy = new LegacyMorseCode(text);
+		this.ciphertext = new MorseEncoder(alphabet, MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP).encode(text);
+		this.code = new MorseCode(text);
+		this.templates = new PatternTemplates(alphabet, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP);
+		this.pattern = new long[this.ciphertext.patternLength()];
+	}
+
+	@Benchmark
+	public long[] boxedList()
+	{
+		return this.legacy.toPatternBoxed(MorseCode.DEFAULT_WAIT, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP);
+	}
+
+	@Benchmark
+	public long[] signalLoop()
+	{
+		final long[] pattern = new long[this.legacy.patternLength()];
+		this.legacy.toPattern(MorseCode.DEFAULT_WAIT, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP, pattern, 0);
+		return pattern;
+	}
+
+	@Benchmark
+	public int signalLoopInPlace()
+	{
+		return this.legacy.toPattern(MorseCode.DEFAULT_WAIT, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP, this.pattern, 0);
+	}
+
+	@Benchmark
+	public long[] array()
+	{
+		return this.ciphertext.toPattern(MorseCode.DEFAULT_WAIT, this.templates);
+	}
+
+	@Benchmark
+	public int arrayInPlace()
+	{
+		return this.ciphertext.toPattern(MorseCode.DEFAULT_WAIT, this.templates, this.pattern, 0);
+	}
+
+	@Benchmark
+	public int morseCodeInPlace()
+	{
+		return this.code.toPattern(MorseCode.DEFAULT_WAIT, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP, this.pattern, 0);
+	}
+}
@@ -0,0 +1,65 @@
+package com.savanto.android.smsmorsify.bench;
+
+import java.util.Random;
+
+/**
+ * Generates plaintext for the benchmarks: words of letters, digits and punctuation
+ * separated by single spaces. Texts are drawn from a fixed seed, so every run
+ * measures the same input.
+ *
+ * @author savanto
+ */
+public final class Texts
+{
+	private Texts()
+	{
+	}
+
+	/**
+	 * @param length - number of characters in the text.
+	 * @return a text of the given length, the same for every call with that length.
+	 */
+	public static String generate(int length)
+	{
+		return Texts.generate(length, Texts.SEED);
+	}
+
+	/**
+	 * @param length - number of characters in the text.
+	 * @param seed - seed of the random words.
+	 * @return a text of the given length, which neither starts nor ends with a space.
+	 */
+	public static String generate(int length, long seed)
+	{
+		final Random random = new Random(seed);
+		final StringBuilder text = new StringBuilder(length);
+		int word = 0;
+		int wordLength = Texts.nextWordLength(random);
+		while (text.length() < length)
+		{
+			// Never end the text on a space, which would be trimmed.
+			if (word == wordLength && text.length() < length - 1)
+			{
+				text.append(' ');
+				word = 0;
+				wordLength = Texts.nextWordLength(random);
+			}
+			else
+			{
+				text.append(Texts.CHARACTERS.charAt(random.nextInt(Texts.CHARACTERS.length())));
+				word++;
+			}
+		}
+		return text.toString();
+	}
+
+	private static int nextWordLength(Random random)
+	{
+		return 1 + random.nextInt(Texts.MAX_WORD_LENGTH);
+	}
+
+	private static final long SEED				= 0x5A5A5A5AL;
+	private static final int MAX_WORD_LENGTH	= 8;
+	private static final String CHARACTERS		=
+			"ETAOINSHRDLUCMFWYPVBGKJQXZ" + "etaoinshrdlucmfwypvbgkjqxz" + "0123456789" + ".,?'!/()&:;=+-_\"$@";
+}
@@ -0,0 +1,85 @@
+package com.savanto.android.smsmorsify.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.savanto.android.smsmorsify.WavRenderer;
+
+/**
+ * Measures WavRenderer writing messages to a file, in samples per second: the
+ * "samples" counter of each result is the rate, while the primary result counts
+ * whole messages. A 160-character message is about 3 million samples at the
+ * default timing and sample rate.
+ *
+ * Run with the GC profiler to check that memory use does not grow with the message:
+ *     java -jar target/benchmarks.jar WavBenchmark -prof gc
+ *
+ * @author savanto
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WavBenchmark
+{
+	/**
+	 * Samples written during the iteration, reported by JMH as a rate.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Samples
+	{
+		public long samples;
+
+		@Setup(Level.Iteration)
+		public void reset()
+		{
+			this.samples = 0;
+		}
+	}
+
+	@Param({ "160", "1024" })
+	public int size;
+
+	private String text;
+	private WavRenderer renderer;
+	private File file;
+
+	@Setup
+	public void setUp() throws IOException
+	{
+		this.text = Texts.generate(this.size);
+		this.renderer = new WavRenderer();
+		this.file = File.createTempFile("WavBenchmark", ".wav");
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		this.file.delete();
+	}
+
+	@Benchmark
+	public void render(Samples samples) throws IOException
+	{
+		samples.samples += this.renderer.render(this.text, this.file);
+	}
+}
@@ -0,0 +1,126 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Checks which words and phrases Abbreviator substitutes, and that the time it reports
+ * saved is the difference in duration of the encoded patterns.
+ *
+ * @author savanto
+ */
+public class AbbreviatorTest
+{
+	private final Abbreviator abbreviator = AbbreviatorTest.abbreviator(Abbreviator.DEFAULT_ABBREVIATIONS,
+			MorseAlphabet.getInstance(true, true, true));
+
+	@Test
+	public void substitutesWordsAndPhrases()
+	{
+		this.assertAbbreviated("please", "PSE");
+		this.assertAbbreviated("thank you for the message", "TU FER the MSG");
+		this.assertAbbreviated("good morning", "GM");
+		this.assertAbbreviated("good weather", "GD WX");
+	}
+
+	@Test
+	public void ignoresCase()
+	{
+		this.assertAbbreviated("Please", "PSE");
+		this.assertAbbreviated("THANK You", "TU");
+	}
+
+	@Test
+	public void choosesCheapestOverlap()
+	{
+		// "see you later" as a whole, rather than "see you" and "later", or "you" alone.
+		this.assertAbbreviated("see you later", "CUL");
+		this.assertAbbreviated("see you", "CU");
+		this.assertAbbreviated("see your", "see UR");
+	}
+
+	@Test
+	public void matchesWholeWordsOnly()
+	{
+		this.assertAbbreviated("youth yourself you", "youth yourself U");
+		this.assertAbbreviated("anderson", "anderson");
+		this.assertAbbreviated("thank yourself", "thank yourself");
+	}
+
+	@Test
+	public void keepsTrailingPunctuation()
+	{
+		this.assertAbbreviated("thanks!", "TNX!");
+		this.assertAbbreviated("thank you.", "TU.");
+		this.assertAbbreviated("you're", "UR");
+		// A phrase does not run on past punctuation.
+		this.assertAbbreviated("thank, you", "thank, U");
+		this.assertAbbreviated("see. you later", "see. U LTR");
+		// Punctuation alone is not a word to match.
+		this.assertAbbreviated("you ! you", "U ! U");
+	}
+
+	@Test
+	public void skipsWordsWithProsigns()
+	{
+		this.assertAbbreviated("<you>", "<you>");
+		this.assertAbbreviated("you<AR>", "you<AR>");
+		this.assertAbbreviated("<SOS> please", "<SOS> PSE");
+		this.assertAbbreviated("thank <you", "thank <you");
+	}
+
+	@Test
+	public void keepsSpacing()
+	{
+		this.assertAbbreviated("you  you", "U  U");
+		this.assertAbbreviated(" please ", " PSE ");
+		this.assertAbbreviated("", "");
+	}
+
+	@Test
+	public void dropsAbbreviationsThatDoNotShorten()
+	{
+		final HashMap<String, String> abbreviations = new HashMap<String, String>();
+		// Longer than the word.
+		abbreviations.put("e", "ABC");
+		// Cannot be sent without numbers.
+		abbreviations.put("best regards", "73");
+		abbreviations.put("regards", "RGDS");
+		final Abbreviator abbreviator = AbbreviatorTest.abbreviator(abbreviations, MorseAlphabet.getInstance(false, false, false));
+
+		final Abbreviator.Result result = abbreviator.abbreviate("e best regards");
+		assertEquals("e best RGDS", result.getText());
+
+		final Abbreviator.Result none = abbreviator.abbreviate("e e");
+		assertEquals("e e", none.getText());
+		assertEquals(0, none.getSavedTime());
+	}
+
+	/**
+	 * Abbreviates, and checks the time saved against the encoded patterns.
+	 */
+	private void assertAbbreviated(String plaintext, String expected)
+	{
+		final Abbreviator.Result result = this.abbreviator.abbreviate(plaintext);
+		assertEquals(plaintext, expected, result.getText());
+		assertEquals(plaintext, AbbreviatorTest.duration(plaintext) - AbbreviatorTest.duration(expected), result.getSavedTime());
+	}
+
+	private static Abbreviator abbreviator(Map<String, String> abbreviations, MorseAlphabet alphabet)
+	{
+		return new Abbreviator(abbreviations, alphabet, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP,
+				MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP);
+	}
+
+	private static long duration(String plaintext)
+	{
+		long duration = 0;
+		for (long d : new MorseCode(plaintext).toPattern(0, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP))
+			duration += d;
+		return duration;
+	}
+}
@@ -0,0 +1,51 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.savanto.android.smsmorsify.bench.NoiseHarness;
+
+/**
+ * Holds the AdaptiveMorseDecoder to points of the accuracy curve that NoiseHarness reports.
+ *
+ * @author savanto
+ */
+public class AdaptiveMorseDecoderTest
+{
+	private final NoiseHarness harness = new NoiseHarness(AdaptiveMorseDecoderTest.MESSAGES, AdaptiveMorseDecoderTest.LENGTH);
+
+	@Test
+	public void decodesExactTimingExactly()
+	{
+		for (double tempo : AdaptiveMorseDecoderTest.TEMPOS)
+			assertEquals(1.0, this.harness.accuracy(0, tempo, true), 0);
+	}
+
+	@Test
+	public void toleratesJitter()
+	{
+		double accuracy;
+		for (double tempo : AdaptiveMorseDecoderTest.TEMPOS)
+		{
+			accuracy = this.harness.accuracy(AdaptiveMorseDecoderTest.JITTER, tempo, true);
+			assertTrue("Accuracy " + accuracy + " at tempo " + tempo, accuracy >= AdaptiveMorseDecoderTest.MIN_ACCURACY);
+		}
+	}
+
+	@Test
+	public void measuresEditDistance()
+	{
+		assertEquals(0, NoiseHarness.distance("SOS", "SOS"));
+		assertEquals(1, NoiseHarness.distance("SOS", "SOT"));
+		assertEquals(3, NoiseHarness.distance("", "SOS"));
+		assertEquals(2, NoiseHarness.distance("KITTEN", "SITTN"));
+	}
+
+	private static final int MESSAGES			= 5;
+	private static final int LENGTH				= 500;
+	private static final double[] TEMPOS		= { 1, 0.6, 1.8 };
+	private static final double JITTER			= 0.2;
+	private static final double MIN_ACCURACY	= 0.995;
+}
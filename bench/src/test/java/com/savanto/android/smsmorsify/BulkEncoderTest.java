@@ -0,0 +1,81 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.savanto.android.smsmorsify.bench.Texts;
+
+/**
+ * Checks that BulkEncoder output is identical to MorseCode.toPattern(), however the text is cut.
+ *
+ * @author savanto
+ */
+public class BulkEncoderTest
+{
+	private static ForkJoinPool pool;
+
+	@BeforeClass
+	public static void setUpPool()
+	{
+		BulkEncoderTest.pool = new ForkJoinPool(BulkEncoderTest.PARALLELISM);
+	}
+
+	@AfterClass
+	public static void tearDownPool()
+	{
+		BulkEncoderTest.pool.shutdown();
+	}
+
+	@Test
+	public void matchesSequentialAtSmallSegments()
+	{
+		// Segments of a few characters, so that cuts fall next to prosigns, whitespace runs and word ends.
+		final Random random = new Random(BulkEncoderTest.SEED);
+		String text;
+		MorseAlphabet alphabet;
+		int short_gap, medium_gap;
+		long wait;
+		for (int n = 0; n < BulkEncoderTest.CASES; n++)
+		{
+			text = BulkEncoderTest.randomText(random);
+			alphabet = MorseAlphabet.getInstance(random.nextBoolean(), random.nextBoolean(), random.nextBoolean());
+			short_gap = 1 + random.nextInt(4);
+			medium_gap = short_gap + random.nextInt(6);
+			wait = random.nextInt(3) * 500;
+			final BulkEncoder encoder = new BulkEncoder(alphabet, short_gap, medium_gap, wait,
+					MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP, 1 + random.nextInt(12), BulkEncoderTest.pool);
+			assertArrayEquals(text, new MorseCode(text, short_gap, medium_gap, alphabet)
+					.toPattern(wait, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP),
+					encoder.toPattern(text));
+		}
+	}
+
+	@Test
+	public void matchesSequentialOnLargeText()
+	{
+		final String text = Texts.generate(BulkEncoderTest.LARGE);
+		final long[] expected = new MorseCode(text)
+				.toPattern(MorseCode.DEFAULT_WAIT, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP);
+		assertArrayEquals(expected, new BulkEncoder(BulkEncoderTest.pool).toPattern(text));
+	}
+
+	private static String randomText(Random random)
+	{
+		final StringBuilder text = new StringBuilder();
+		for (int i = random.nextInt(80); i > 0; i--)
+			text.append(BulkEncoderTest.CHARACTERS.charAt(random.nextInt(BulkEncoderTest.CHARACTERS.length())));
+		return text.toString();
+	}
+
+	private static final long SEED			= 24;
+	private static final int PARALLELISM	= 4;
+	private static final int CASES			= 20000;
+	private static final int LARGE			= 1024 * 1024;
+	private static final String CHARACTERS	= "abcXYZ 019.,?<>SOSAR  \t!é\n";
+}
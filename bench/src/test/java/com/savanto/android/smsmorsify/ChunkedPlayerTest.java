@@ -0,0 +1,211 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+import com.savanto.android.smsmorsify.bench.Texts;
+
+/**
+ * Plays patterns through a ChunkedPlayer on a clock that jumps ahead on every sleep,
+ * and checks the chunks that reach the sink.
+ *
+ * @author savanto
+ */
+public class ChunkedPlayerTest
+{
+	/**
+	 * Virtual clock: sleeping moves the time forward at once, plus a fixed lateness.
+	 */
+	private static class SteppingClock implements PlaybackClock
+	{
+		private final long lateness;
+		private long now = 0;
+
+		SteppingClock(long lateness)
+		{
+			this.lateness = lateness;
+		}
+
+		@Override
+		public long uptimeMillis()
+		{
+			return this.now;
+		}
+
+		@Override
+		public void sleep(long millis)
+		{
+			this.now += millis + this.lateness;
+		}
+	}
+
+	/**
+	 * Records the chunks played, and the clock time at which each was sent.
+	 */
+	private static class RecordingSink implements PatternSink
+	{
+		final ArrayList<long[]> chunks = new ArrayList<long[]>();
+		final ArrayList<Long> times = new ArrayList<Long>();
+		private final PlaybackClock clock;
+		ChunkedPlayer cancelAfterFirst;
+
+		RecordingSink(PlaybackClock clock)
+		{
+			this.clock = clock;
+		}
+
+		@Override
+		public void play(long[] pattern)
+		{
+			this.chunks.add(pattern);
+			this.times.add(this.clock.uptimeMillis());
+			if (this.cancelAfterFirst != null)
+				this.cancelAfterFirst.cancel();
+		}
+
+		@Override
+		public void cancel()
+		{
+		}
+	}
+
+	@Test
+	public void concatenatedChunksEqualPattern()
+	{
+		for (int length = 1; length <= ChunkedPlayerTest.MAX_LENGTH; length *= 4)
+		{
+			final long[] pattern = ChunkedPlayerTest.pattern(Texts.generate(length, length));
+			for (long chunkDuration : ChunkedPlayerTest.CHUNK_DURATIONS)
+			{
+				final RecordingSink sink = ChunkedPlayerTest.play(pattern, chunkDuration, 0);
+				assertArrayEquals("chunk duration " + chunkDuration, pattern, ChunkedPlayerTest.concatenate(sink.chunks));
+			}
+		}
+	}
+
+	@Test
+	public void splitsOnlyAtWordGaps()
+	{
+		final long[] pattern = ChunkedPlayerTest.pattern(Texts.generate(ChunkedPlayerTest.MAX_LENGTH));
+		for (long chunkDuration : ChunkedPlayerTest.CHUNK_DURATIONS)
+		{
+			final RecordingSink sink = ChunkedPlayerTest.play(pattern, chunkDuration, 0);
+			int start = 0;
+			long[] chunk;
+			for (int i = 0; i < sink.chunks.size(); i++)
+			{
+				chunk = sink.chunks.get(i);
+				// Each chunk begins at an off duration, after the first at a word gap.
+				assertEquals(0, start % 2);
+				if (i > 0)
+					assertTrue(chunk[0] >= ChunkedPlayerTest.SPLIT_GAP);
+				// Only the last chunk may be shorter than the chunk duration.
+				if (i < sink.chunks.size() - 1)
+					assertTrue(ChunkedPlayer.duration(chunk, 0, chunk.length) >= chunkDuration);
+				start += chunk.length;
+			}
+		}
+	}
+
+	@Test
+	public void splitsEveryWordWithoutChunkDuration()
+	{
+		final RecordingSink sink = ChunkedPlayerTest.play(ChunkedPlayerTest.pattern("SOS HELP NOW"), 0, 0);
+		assertEquals(3, sink.chunks.size());
+	}
+
+	@Test
+	public void sendsChunksBackToBack()
+	{
+		final long[] pattern = ChunkedPlayerTest.pattern(Texts.generate(ChunkedPlayerTest.MAX_LENGTH));
+		final RecordingSink sink = ChunkedPlayerTest.play(pattern, ChunkedPlayerTest.CHUNK_DURATION, 0);
+		long expected = 0;
+		for (int i = 0; i < sink.chunks.size(); i++)
+		{
+			assertEquals(expected, sink.times.get(i).longValue());
+			expected += ChunkedPlayer.duration(sink.chunks.get(i), 0, sink.chunks.get(i).length);
+		}
+	}
+
+	@Test
+	public void shortensLeadingGapAfterLateWakeUp()
+	{
+		final long[] pattern = ChunkedPlayerTest.pattern(Texts.generate(ChunkedPlayerTest.MAX_LENGTH));
+		final RecordingSink sink = ChunkedPlayerTest.play(pattern, ChunkedPlayerTest.CHUNK_DURATION, ChunkedPlayerTest.LATENESS);
+		assertTrue(sink.chunks.size() > 1);
+		int start = 0;
+		long deadline = 0;
+		long[] chunk;
+		for (int i = 0; i < sink.chunks.size(); i++)
+		{
+			chunk = sink.chunks.get(i);
+			// Every chunk but the first is sent late, and starts vibrating on time.
+			final long late = i == 0 ? 0 : ChunkedPlayerTest.LATENESS;
+			assertEquals(deadline + late, sink.times.get(i).longValue());
+			assertEquals(pattern[start] - late, chunk[0]);
+			for (int j = 1; j < chunk.length; j++)
+				assertEquals(pattern[start + j], chunk[j]);
+			deadline += ChunkedPlayer.duration(pattern, start, start + chunk.length);
+			start += chunk.length;
+		}
+		assertEquals(pattern.length, start);
+	}
+
+	@Test
+	public void cancelStopsBetweenChunks()
+	{
+		final long[] pattern = ChunkedPlayerTest.pattern(Texts.generate(ChunkedPlayerTest.MAX_LENGTH));
+		final SteppingClock clock = new SteppingClock(0);
+		final RecordingSink sink = new RecordingSink(clock);
+		final ChunkedPlayer player = new ChunkedPlayer(sink, clock, ChunkedPlayerTest.CHUNK_DURATION);
+		sink.cancelAfterFirst = player;
+
+		assertFalse(player.play(pattern, ChunkedPlayerTest.SPLIT_GAP));
+		assertEquals(1, sink.chunks.size());
+		assertTrue(player.isCancelled());
+		// The interrupt sent to the playing thread must not leak into the test.
+		Thread.interrupted();
+	}
+
+	private static RecordingSink play(long[] pattern, long chunkDuration, long lateness)
+	{
+		final SteppingClock clock = new SteppingClock(lateness);
+		final RecordingSink sink = new RecordingSink(clock);
+		assertTrue(new ChunkedPlayer(sink, clock, chunkDuration).play(pattern, ChunkedPlayerTest.SPLIT_GAP));
+		return sink;
+	}
+
+	private static long[] pattern(String text)
+	{
+		final MorseCode code = new MorseCode(text, MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP, true, true, false);
+		return code.toPattern(ChunkedPlayerTest.WAIT, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP);
+	}
+
+	private static long[] concatenate(ArrayList<long[]> chunks)
+	{
+		int length = 0;
+		for (long[] chunk : chunks)
+			length += chunk.length;
+		final long[] pattern = new long[length];
+		int offset = 0;
+		for (long[] chunk : chunks)
+		{
+			System.arraycopy(chunk, 0, pattern, offset, chunk.length);
+			offset += chunk.length;
+		}
+		return pattern;
+	}
+
+	private static final long WAIT				= 500;
+	private static final long SPLIT_GAP			= MorseCode.DEFAULT_GAP * MorseCode.DEFAULT_MEDIUM_GAP;
+	private static final long CHUNK_DURATION	= 3000;
+	private static final long[] CHUNK_DURATIONS	= { 0, 1, 1000, ChunkedPlayerTest.CHUNK_DURATION, Long.MAX_VALUE };
+	private static final long LATENESS			= 7;
+	private static final int MAX_LENGTH			= 4 * 1024;
+}
@@ -0,0 +1,142 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that DurationEstimator.estimate() is exactly the duration of MorseCode.toPattern(),
+ * for messages as given and as cut short by truncate(), with every alphabet option.
+ *
+ * @author savanto
+ */
+public class DurationEstimatorTest
+{
+	@Test
+	public void estimateMatchesPattern()
+	{
+		final Random random = new Random(DurationEstimatorTest.SEED);
+		for (MorseAlphabet alphabet : DurationEstimatorTest.alphabets())
+			for (int[] timing : DurationEstimatorTest.TIMINGS)
+				for (int n = 0; n < DurationEstimatorTest.CASES; n++)
+				{
+					final String text = DurationEstimatorTest.randomText(random);
+					assertEquals(text, DurationEstimatorTest.duration(alphabet, timing, text),
+							DurationEstimatorTest.estimator(alphabet, timing).estimate(text));
+				}
+	}
+
+	@Test
+	public void estimateMatchesPatternAfterTruncation()
+	{
+		final Random random = new Random(DurationEstimatorTest.SEED);
+		String text, truncated;
+		long full, budget, estimate;
+		for (MorseAlphabet alphabet : DurationEstimatorTest.alphabets())
+			for (int[] timing : DurationEstimatorTest.TIMINGS)
+			{
+				final DurationEstimator estimator = DurationEstimatorTest.estimator(alphabet, timing);
+				for (int n = 0; n < DurationEstimatorTest.CASES; n++)
+				{
+					text = DurationEstimatorTest.randomText(random);
+					full = estimator.estimate(text);
+					budget = full == 0 ? 0 : (long) (random.nextDouble() * 1.2 * full);
+					truncated = estimator.truncate(text, budget);
+					estimate = estimator.estimate(truncated);
+
+					assertEquals(text + " -> " + truncated, DurationEstimatorTest.duration(alphabet, timing, truncated), estimate);
+					if (full <= budget)
+						assertEquals(text, truncated);
+					else
+					{
+						// Cut after a whole word, and ended with the prosign when there is one.
+						final String marker = alphabet.usesProsigns() ? MorseCode.PROSIGN_AR : "";
+						assertTrue(text + " -> " + truncated, truncated.endsWith(marker)
+								&& text.startsWith(truncated.substring(0, truncated.length() - marker.length())));
+						// Only a message cut down to the prosign alone may still be over the budget.
+						if (!truncated.equals(MorseCode.PROSIGN_AR) && truncated.length() > 0)
+							assertTrue(text + " -> " + truncated, estimate <= budget);
+					}
+				}
+			}
+	}
+
+	@Test
+	public void emptyMessagesTakeNoTime()
+	{
+		for (MorseAlphabet alphabet : DurationEstimatorTest.alphabets())
+		{
+			final DurationEstimator estimator = DurationEstimatorTest.estimator(alphabet, DurationEstimatorTest.TIMINGS[0]);
+			assertEquals(0, estimator.estimate(""));
+			assertEquals(0, estimator.estimate(" \t\n "));
+		}
+	}
+
+	private static DurationEstimator estimator(MorseAlphabet alphabet, int[] timing)
+	{
+		final PatternTemplates templates = new PatternTemplates(alphabet, timing[2], timing[3], timing[4]);
+		return new DurationEstimator(alphabet, templates, timing[0], timing[1], timing[5]);
+	}
+
+	/**
+	 * @return the sum of the durations of the pattern of text.
+	 */
+	private static long duration(MorseAlphabet alphabet, int[] timing, String text)
+	{
+		final long[] pattern = new MorseCode(text, timing[0], timing[1], alphabet)
+				.toPattern(timing[5], timing[2], timing[3], timing[4]);
+		long duration = 0;
+		for (long element : pattern)
+			duration += element;
+		return duration;
+	}
+
+	/**
+	 * @return a message of random words, some with prosigns, lowercase letters, characters
+	 *         outside the alphabet, or runs of whitespace.
+	 */
+	private static String randomText(Random random)
+	{
+		final StringBuilder text = new StringBuilder();
+		final int words = random.nextInt(12);
+		for (int w = 0; w < words; w++)
+		{
+			text.append(DurationEstimatorTest.WHITESPACE[random.nextInt(DurationEstimatorTest.WHITESPACE.length)]);
+			if (random.nextInt(5) == 0)
+				text.append(DurationEstimatorTest.PROSIGNS[random.nextInt(DurationEstimatorTest.PROSIGNS.length)]);
+			for (int i = random.nextInt(8); i > 0; i--)
+				text.append(DurationEstimatorTest.CHARACTERS.charAt(random.nextInt(DurationEstimatorTest.CHARACTERS.length())));
+		}
+		if (random.nextBoolean())
+			text.append(DurationEstimatorTest.WHITESPACE[random.nextInt(DurationEstimatorTest.WHITESPACE.length)]);
+		return text.toString();
+	}
+
+	/**
+	 * @return every combination of alphabet options.
+	 */
+	private static MorseAlphabet[] alphabets()
+	{
+		final MorseAlphabet[] alphabets = new MorseAlphabet[8];
+		for (int i = 0; i < alphabets.length; i++)
+			alphabets[i] = MorseAlphabet.getInstance((i & 1) != 0, (i & 2) != 0, (i & 4) != 0);
+		return alphabets;
+	}
+
+	private static final long SEED				= 19;
+	private static final int CASES				= 2000;
+	/**
+	 * short_gap, medium_gap, dit, dah, gap and wait.
+	 */
+	private static final int[][] TIMINGS		= {
+		{ 3, 7, 100, 300, 100, 0 },
+		{ 3, 7, 60, 180, 60, 500 },
+		{ 2, 5, 50, 200, 40, 1000 },
+	};
+	private static final String CHARACTERS		= "ETAOINSHRDLUetaoinshrdlu0123456789.,?'!/()&:;=+-_\"$@#~<>é";
+	private static final String[] PROSIGNS		= { "<AR>", "<SK>", "<SOS>", "<KN>", "<K>", "<EEEEEE>", "<S", "<AR" };
+	private static final String[] WHITESPACE	= { " ", " ", " ", "  ", "\t", "\n", " \n " };
+}
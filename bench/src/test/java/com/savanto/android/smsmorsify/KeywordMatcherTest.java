@@ -0,0 +1,111 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the Aho-Corasick matcher against a naive scan that tries every keyword with contains().
+ *
+ * @author savanto
+ */
+public class KeywordMatcherTest
+{
+	@Test
+	public void noKeywordsMatchNothing()
+	{
+		final KeywordMatcher matcher = new KeywordMatcher(new String[0]);
+		assertTrue(matcher.isEmpty());
+		assertFalse(matcher.containsAny("anything"));
+		assertFalse(matcher.containsAny(""));
+	}
+
+	@Test
+	public void keywordsInsideOtherKeywords()
+	{
+		final KeywordMatcher matcher = new KeywordMatcher(new String[] { "he", "she", "his", "hers" });
+		assertTrue(matcher.containsAny("ushers"));
+		assertTrue(matcher.containsAny("ahishe"));
+		assertTrue(matcher.containsAny("SHE"));
+		assertFalse(matcher.containsAny("hsi sh e"));
+	}
+
+	@Test
+	public void onlyAsciiLettersIgnoreCase()
+	{
+		final KeywordMatcher matcher = new KeywordMatcher(new String[] { "café" });
+		assertTrue(matcher.containsAny("CAFé au lait"));
+		assertFalse(matcher.containsAny("CAFÉ au lait"));
+	}
+
+	@Test
+	public void matchesNaiveScanOnSmallAlphabet()
+	{
+		// Few distinct characters, so that keywords overlap often.
+		KeywordMatcherTest.assertMatchesNaiveScan("abcABC ", 6, 5, 40, 20000);
+	}
+
+	@Test
+	public void matchesNaiveScanWithThousandsOfKeywords()
+	{
+		KeywordMatcherTest.assertMatchesNaiveScan("abcdefghijABCDEFGHIJ é", 2000, 8, 160, 2000);
+	}
+
+	/**
+	 * @param characters - the characters keywords and texts are drawn from.
+	 * @param maxKeywords - largest number of keywords in a case.
+	 * @param maxKeywordLength - longest keyword.
+	 * @param maxTextLength - longest text.
+	 * @param cases - number of sets of keywords and texts tried.
+	 */
+	private static void assertMatchesNaiveScan(String characters, int maxKeywords, int maxKeywordLength,
+			int maxTextLength, int cases)
+	{
+		final Random random = new Random(KeywordMatcherTest.SEED);
+		String[] keywords;
+		String text;
+		for (int n = 0; n < cases; n++)
+		{
+			keywords = new String[1 + random.nextInt(maxKeywords)];
+			for (int i = 0; i < keywords.length; i++)
+				keywords[i] = KeywordMatcherTest.randomText(random, characters, 1 + random.nextInt(maxKeywordLength));
+			text = KeywordMatcherTest.randomText(random, characters, random.nextInt(maxTextLength));
+			assertEquals(text, KeywordMatcherTest.contains(text, keywords), new KeywordMatcher(keywords).containsAny(text));
+		}
+	}
+
+	/**
+	 * The naive scan, folding ASCII letters only, as the matcher does.
+	 */
+	private static boolean contains(String text, String[] keywords)
+	{
+		final String folded = KeywordMatcherTest.fold(text);
+		for (String keyword : keywords)
+			if (folded.contains(KeywordMatcherTest.fold(keyword)))
+				return true;
+		return false;
+	}
+
+	private static String fold(String s)
+	{
+		final char[] folded = s.toCharArray();
+		for (int i = 0; i < folded.length; i++)
+			if (folded[i] >= 'a' && folded[i] <= 'z')
+				folded[i] = (char) (folded[i] - 'a' + 'A');
+		return new String(folded);
+	}
+
+	private static String randomText(Random random, String characters, int length)
+	{
+		final char[] text = new char[length];
+		for (int i = 0; i < length; i++)
+			text[i] = characters.charAt(random.nextInt(characters.length()));
+		return new String(text);
+	}
+
+	private static final long SEED	= 21;
+}
@@ -0,0 +1,60 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.savanto.android.smsmorsify.bench.LegacyMorseCode;
+import com.savanto.android.smsmorsify.bench.Texts;
+
+/**
+ * Checks that the baseline encoder the benchmarks compare against produces the same
+ * patterns as MorseCode, so that both sides of each comparison do the same work.
+ *
+ * @author savanto
+ */
+public class LegacyMorseCodeTest
+{
+	@Test
+	public void boxedPatternMatchesMorseCode()
+	{
+		for (String text : LegacyMorseCodeTest.texts())
+			assertArrayEquals(text, LegacyMorseCodeTest.expected(text), new LegacyMorseCode(text).toPatternBoxed(
+					LegacyMorseCodeTest.WAIT, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP));
+	}
+
+	@Test
+	public void signalLoopMatchesMorseCode()
+	{
+		LegacyMorseCode legacy;
+		long[] pattern;
+		for (String text : LegacyMorseCodeTest.texts())
+		{
+			legacy = new LegacyMorseCode(text);
+			pattern = new long[legacy.patternLength()];
+			assertEquals(text, pattern.length, legacy.toPattern(LegacyMorseCodeTest.WAIT,
+					MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP, pattern, 0));
+			assertArrayEquals(text, LegacyMorseCodeTest.expected(text), pattern);
+		}
+	}
+
+	private static long[] expected(String text)
+	{
+		return new MorseCode(text).toPattern(LegacyMorseCodeTest.WAIT, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP);
+	}
+
+	private static String[] texts()
+	{
+		final String[] texts = new String[LegacyMorseCodeTest.SIZES.length + 3];
+		for (int i = 0; i < LegacyMorseCodeTest.SIZES.length; i++)
+			texts[i] = Texts.generate(LegacyMorseCodeTest.SIZES[i]);
+		texts[LegacyMorseCodeTest.SIZES.length] = "SOS";
+		texts[LegacyMorseCodeTest.SIZES.length + 1] = " sos  help ";
+		texts[LegacyMorseCodeTest.SIZES.length + 2] = "a #b";
+		return texts;
+	}
+
+	private static final long WAIT		= 500;
+	private static final int[] SIZES	= { 1, 160, 1024, 8192, 65536 };
+}
@@ -0,0 +1,50 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author savanto
+ */
+public class MessageFilterTest
+{
+	@Test
+	public void keywordsIgnoreCase()
+	{
+		final MessageFilter filter = new MessageFilter("", "", "urgent\nCall me", "");
+		assertTrue(filter.acceptText("This is URGENT!"));
+		assertTrue(filter.acceptText("please call Me back"));
+		assertFalse(filter.acceptText("Call later"));
+	}
+
+	@Test
+	public void keywordsFoundAfterPartialMatches()
+	{
+		// Each text leaves the trie partway through a longer keyword, where a restart would miss the match.
+		final MessageFilter filter = new MessageFilter("", "", "abcd\nbce\nce", "");
+		assertTrue(filter.acceptText("xabce"));
+		assertTrue(filter.acceptText("abcabce"));
+		assertTrue(filter.acceptText("abcf ce"));
+		assertFalse(filter.acceptText("abcabc bcf"));
+	}
+
+	@Test
+	public void patternsExcludeMessages()
+	{
+		final MessageFilter filter = new MessageFilter("", "", "", "^spam\n[invalid");
+		assertFalse(filter.acceptText("SPAM offer"));
+		assertTrue(filter.acceptText("not spam"));
+	}
+
+	@Test
+	public void sendersAllowedAndBlocked()
+	{
+		final MessageFilter filter = new MessageFilter("+1 555 0100, Bank", "+1 555 0199", "", "");
+		assertTrue(filter.acceptSender("+15550100"));
+		assertTrue(filter.acceptSender("BANK"));
+		assertFalse(filter.acceptSender("+15550199"));
+		assertFalse(filter.acceptSender("+15550142"));
+	}
+}
@@ -0,0 +1,136 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.savanto.android.smsmorsify.bench.Texts;
+
+/**
+ * Pipes files and streams through MorseCli, and checks its output against MorseEncoder.
+ *
+ * @author savanto
+ */
+public class MorseCliTest
+{
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void textModeMatchesEncoder() throws IOException
+	{
+		for (String text : MorseCliTest.texts())
+		{
+			final String expected = MorseCliTest.ENCODER.encode(text).toString();
+			assertEquals(expected, this.encodeFile(MorseCli.Mode.TEXT, text));
+			assertEquals(expected, MorseCliTest.encodeStream(MorseCli.Mode.TEXT, text));
+		}
+	}
+
+	@Test
+	public void patternModeMatchesEncoder() throws IOException
+	{
+		for (String text : MorseCliTest.texts())
+		{
+			final String expected = MorseCliTest.join(MorseCliTest.pattern(text));
+			assertEquals(expected, this.encodeFile(MorseCli.Mode.PATTERN, text));
+			assertEquals(expected, MorseCliTest.encodeStream(MorseCli.Mode.PATTERN, text));
+		}
+	}
+
+	@Test
+	public void timingModeMatchesEncoder() throws IOException
+	{
+		for (String text : MorseCliTest.texts())
+		{
+			final long[] pattern = MorseCliTest.pattern(text);
+			final StringBuilder expected = new StringBuilder();
+			for (int i = 0; i < pattern.length; i++)
+				expected.append(i % 2 == 0 ? "off " : "on ").append(pattern[i]).append('\n');
+			assertEquals(expected.toString(), this.encodeFile(MorseCli.Mode.TIMING, text));
+			assertEquals(expected.toString(), MorseCliTest.encodeStream(MorseCli.Mode.TIMING, text));
+		}
+	}
+
+	private String encodeFile(MorseCli.Mode mode, String text) throws IOException
+	{
+		final File file = this.folder.newFile();
+		final FileOutputStream out = new FileOutputStream(file);
+		try
+		{
+			out.write(text.getBytes(MorseCliTest.CHARSET));
+		}
+		finally
+		{
+			out.close();
+		}
+
+		final StringWriter output = new StringWriter();
+		final MorseCli cli = new MorseCli(mode, MorseCliTest.CHARSET, new PrintWriter(output));
+		cli.encode(file);
+		assertTrue(cli.finish());
+		assertEquals(text.length(), cli.getCharCount());
+		return output.toString();
+	}
+
+	private static String encodeStream(MorseCli.Mode mode, String text) throws IOException
+	{
+		final StringWriter output = new StringWriter();
+		final MorseCli cli = new MorseCli(mode, MorseCliTest.CHARSET, new PrintWriter(output));
+		cli.encode(Channels.newChannel(new ByteArrayInputStream(text.getBytes(MorseCliTest.CHARSET))));
+		assertTrue(cli.finish());
+		assertEquals(text.length(), cli.getCharCount());
+		return output.toString();
+	}
+
+	/**
+	 * @return texts with runs of mixed whitespace, prosigns, and characters of several bytes,
+	 *         long enough to be read through several buffers.
+	 */
+	private static String[] texts()
+	{
+		final String words = Texts.generate(MorseCliTest.LENGTH);
+		return new String[] {
+			"SOS",
+			"  <SOS> help\tme \n\n ",
+			"café naïve été <AR>",
+			words,
+			words.replace(" ", " é\r\n  "),
+		};
+	}
+
+	private static long[] pattern(String text)
+	{
+		return MorseCliTest.ENCODER.encode(text).toPattern(MorseCode.DEFAULT_WAIT,
+				new PatternTemplates(MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP));
+	}
+
+	private static String join(long[] pattern)
+	{
+		final StringBuilder s = new StringBuilder();
+		for (int i = 0; i < pattern.length; i++)
+		{
+			if (i > 0)
+				s.append(',');
+			s.append(pattern[i]);
+		}
+		return s.append('\n').toString();
+	}
+
+	private static final MorseEncoder ENCODER	= new MorseEncoder();
+	private static final Charset CHARSET		= Charset.forName("UTF-8");
+	// Several times the CLI's buffers, so that characters are cut between reads.
+	private static final int LENGTH				= 300 * 1024;
+}
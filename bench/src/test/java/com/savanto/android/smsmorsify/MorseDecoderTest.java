@@ -0,0 +1,123 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.savanto.android.smsmorsify.bench.Texts;
+
+/**
+ * Checks that decode(encode(x)) gives back x, through both MorseCode.toString() and
+ * MorseCode.toPattern(), for every character and prosign of every alphabet.
+ *
+ * @author savanto
+ */
+public class MorseDecoderTest
+{
+	@Test
+	public void roundTripsEveryCharacterAsWords()
+	{
+		for (MorseAlphabet alphabet : MorseDecoderTest.alphabets())
+		{
+			final StringBuilder text = new StringBuilder();
+			for (Character c : alphabet.getAlphabet().keySet())
+				text.append(c).append(' ');
+			MorseDecoderTest.assertRoundTrips(alphabet, text.toString().trim(), text.toString().trim());
+		}
+	}
+
+	@Test
+	public void roundTripsEveryCharacterInOneWord()
+	{
+		for (MorseAlphabet alphabet : MorseDecoderTest.alphabets())
+		{
+			final StringBuilder text = new StringBuilder();
+			for (Character c : alphabet.getAlphabet().keySet())
+				text.append(c);
+			MorseDecoderTest.assertRoundTrips(alphabet, text.toString(), text.toString());
+		}
+	}
+
+	@Test
+	public void roundTripsEveryProsign()
+	{
+		for (MorseAlphabet alphabet : MorseDecoderTest.alphabets())
+		{
+			if (!alphabet.usesProsigns())
+				continue;
+			final StringBuilder text = new StringBuilder();
+			final StringBuilder expected = new StringBuilder();
+			for (Map.Entry<String, Morse> prosign : alphabet.getDictionary().entrySet())
+			{
+				text.append(prosign.getKey()).append(' ');
+				expected.append(MorseDecoderTest.decodedProsign(alphabet, prosign.getKey(), prosign.getValue())).append(' ');
+			}
+			MorseDecoderTest.assertRoundTrips(alphabet, text.toString().trim(), expected.toString().trim());
+		}
+	}
+
+	@Test
+	public void decodesLowercaseAsUppercase()
+	{
+		final MorseAlphabet alphabet = MorseAlphabet.getInstance(true, true, true);
+		MorseDecoderTest.assertRoundTrips(alphabet, "the quick brown fox", "THE QUICK BROWN FOX");
+	}
+
+	@Test
+	public void roundTripsLongMessages()
+	{
+		final MorseAlphabet alphabet = MorseAlphabet.getInstance(true, true, true);
+		for (int length = 1; length <= MorseDecoderTest.MAX_LENGTH; length *= 4)
+		{
+			final String text = Texts.generate(length, length);
+			MorseDecoderTest.assertRoundTrips(alphabet, text, text.toUpperCase(Locale.US));
+		}
+	}
+
+	/**
+	 * @param text - plaintext, with single spaces between words.
+	 * @param expected - what the Morse of text decodes to, between the prosigns framing a transmission.
+	 */
+	private static void assertRoundTrips(MorseAlphabet alphabet, String text, String expected)
+	{
+		final MorseDecoder decoder = new MorseDecoder(alphabet);
+		final MorseCode code = new MorseCode(text, MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP, alphabet);
+		final long[] pattern = code.toPattern(MorseCode.DEFAULT_WAIT, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP);
+
+		// A transmission is framed by the prosigns, when the alphabet has them.
+		String framed = expected;
+		if (alphabet.usesProsigns())
+			framed = MorseCode.PROSIGN_CT + ' ' + expected + ' ' + MorseCode.PROSIGN_SK;
+
+		assertEquals(text, framed, decoder.decode(code.toString()));
+		assertEquals(text, framed, decoder.decode(pattern, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH,
+				MorseCode.DEFAULT_GAP, MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP));
+	}
+
+	/**
+	 * @return what a prosign decodes to: the character with the same Morse, such as '+' for <AR>, if any.
+	 */
+	private static String decodedProsign(MorseAlphabet alphabet, String prosign, Morse morse)
+	{
+		for (Map.Entry<Character, Morse> entry : alphabet.getAlphabet().entrySet())
+			if (entry.getValue().equals(morse))
+				return String.valueOf(entry.getKey());
+		return prosign;
+	}
+
+	/**
+	 * @return every combination of alphabet options.
+	 */
+	private static MorseAlphabet[] alphabets()
+	{
+		final MorseAlphabet[] alphabets = new MorseAlphabet[8];
+		for (int i = 0; i < alphabets.length; i++)
+			alphabets[i] = MorseAlphabet.getInstance((i & 1) != 0, (i & 2) != 0, (i & 4) != 0);
+		return alphabets;
+	}
+
+	private static final int MAX_LENGTH	= 64 * 1024;
+}
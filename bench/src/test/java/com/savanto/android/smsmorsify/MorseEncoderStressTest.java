@@ -0,0 +1,132 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.junit.Test;
+
+/**
+ * Hammers one shared MorseEncoder and PatternTemplates from many threads at once, and
+ * checks every result against the same messages encoded on a single thread. Threads
+ * also check the Ciphertexts that other threads publish, which are immutable and so
+ * need no synchronization beyond their publication.
+ *
+ * @author savanto
+ */
+public class MorseEncoderStressTest
+{
+	@Test
+	public void sharedEncoderMatchesSingleThread() throws InterruptedException, ExecutionException
+	{
+		final MorseAlphabet alphabet = MorseAlphabet.getInstance(true, true, true);
+		final MorseEncoder encoder = new MorseEncoder(alphabet, MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP);
+		final PatternTemplates templates = new PatternTemplates(alphabet,
+				MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP);
+
+		// Expected results, encoded on this thread before any other starts.
+		final Random random = new Random(MorseEncoderStressTest.SEED);
+		final String[] messages = new String[MorseEncoderStressTest.MESSAGES];
+		final String[] strings = new String[messages.length];
+		final long[][] patterns = new long[messages.length][];
+		Ciphertext ciphertext;
+		for (int i = 0; i < messages.length; i++)
+		{
+			messages[i] = MorseEncoderStressTest.randomText(random);
+			ciphertext = encoder.encode(messages[i]);
+			strings[i] = ciphertext.toString();
+			patterns[i] = ciphertext.toPattern(MorseCode.DEFAULT_WAIT, templates);
+		}
+
+		final AtomicReferenceArray<Ciphertext> published = new AtomicReferenceArray<Ciphertext>(messages.length);
+		final CountDownLatch start = new CountDownLatch(1);
+		final ExecutorService executor = Executors.newFixedThreadPool(MorseEncoderStressTest.THREADS);
+		final ArrayList<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		try
+		{
+			for (int t = 0; t < MorseEncoderStressTest.THREADS; t++)
+			{
+				final long seed = t;
+				results.add(executor.submit(new Callable<Integer>()
+				{
+					@Override
+					public Integer call() throws InterruptedException
+					{
+						final Random random = new Random(seed);
+						final long[] buffer = new long[MorseEncoderStressTest.MAX_PATTERN];
+						Ciphertext ciphertext, other;
+						int i, length, checked = 0;
+						start.await();
+						for (int n = 0; n < MorseEncoderStressTest.ITERATIONS; n++)
+						{
+							i = random.nextInt(messages.length);
+							ciphertext = encoder.encode(messages[i]);
+							assertEquals(messages[i], strings[i], ciphertext.toString());
+							assertArrayEquals(messages[i], patterns[i], ciphertext.toPattern(MorseCode.DEFAULT_WAIT, templates));
+							// Also write in place, into a buffer reused across messages.
+							length = ciphertext.toPattern(MorseCode.DEFAULT_WAIT, templates, buffer, 0);
+							assertEquals(messages[i], patterns[i].length, length);
+							for (int k = 0; k < length; k++)
+								assertEquals(messages[i], patterns[i][k], buffer[k]);
+
+							// Check what another thread may have encoded, then publish this one.
+							other = published.getAndSet(i, ciphertext);
+							if (other != null)
+								assertArrayEquals(messages[i], patterns[i], other.toPattern(MorseCode.DEFAULT_WAIT, templates));
+							checked++;
+						}
+						return checked;
+					}
+				}));
+			}
+			start.countDown();
+			int checked = 0;
+			for (Future<Integer> result : results)
+				checked += result.get();
+			assertEquals(MorseEncoderStressTest.THREADS * MorseEncoderStressTest.ITERATIONS, checked);
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return a message with letters of both cases, digits, punctuation, prosigns whole
+	 *         and broken off, characters outside the alphabet, and runs of whitespace.
+	 */
+	private static String randomText(Random random)
+	{
+		final StringBuilder text = new StringBuilder();
+		for (int i = random.nextInt(MorseEncoderStressTest.MAX_LENGTH); i > 0; i--)
+		{
+			if (random.nextInt(10) == 0)
+				text.append(MorseEncoderStressTest.PROSIGNS[random.nextInt(MorseEncoderStressTest.PROSIGNS.length)]);
+			else
+				text.append(MorseEncoderStressTest.CHARACTERS.charAt(random.nextInt(MorseEncoderStressTest.CHARACTERS.length())));
+		}
+		return text.toString();
+	}
+
+	private static final long SEED			= 23;
+	private static final int THREADS		= 16;
+	private static final int ITERATIONS		= 20000;
+	private static final int MESSAGES		= 500;
+	private static final int MAX_LENGTH		= 60;
+	/**
+	 * Longer than the pattern of any message: 2 elements per signal, for the two framing prosigns of
+	 * 5 signals and at most one letter of 8 signals or fewer per character.
+	 */
+	private static final int MAX_PATTERN	= 2 * (2 * 5 + MorseEncoderStressTest.MAX_LENGTH * 8);
+	private static final String CHARACTERS	= "abcXYZ 019.,?<>SOSAR  \t\n!é";
+	private static final String[] PROSIGNS	= { "<AR>", "<SOS>", "<KN>", "<EEEEEE>", "<SO", "<K" };
+}
@@ -0,0 +1,162 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.savanto.android.smsmorsify.bench.Texts;
+
+/**
+ * Feeds text to a MorseStreamEncoder in pieces cut at arbitrary points, and checks
+ * that the segments are the pattern the whole text encodes to.
+ *
+ * @author savanto
+ */
+public class MorseStreamEncoderTest
+{
+	/**
+	 * Gathers segments into a pattern, checking that they alternate off and on.
+	 */
+	private static class Recorder implements MorseStreamEncoder.SegmentListener
+	{
+		long[] pattern = new long[64];
+		int length = 0;
+
+		@Override
+		public void onSegment(long duration, boolean on)
+		{
+			assertEquals("segment " + this.length, this.length % 2 == 1, on);
+			if (this.length == this.pattern.length)
+			{
+				final long[] grown = new long[2 * this.length];
+				System.arraycopy(this.pattern, 0, grown, 0, this.length);
+				this.pattern = grown;
+			}
+			this.pattern[this.length++] = duration;
+		}
+
+		long[] toPattern()
+		{
+			final long[] pattern = new long[this.length];
+			System.arraycopy(this.pattern, 0, pattern, 0, this.length);
+			return pattern;
+		}
+	}
+
+	@Test
+	public void matchesPatternAtEverySplit()
+	{
+		for (String text : MorseStreamEncoderTest.TEXTS)
+		{
+			final long[] expected = MorseStreamEncoderTest.pattern(text, MorseAlphabet.getInstance(true, true, true),
+					MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP, MorseCode.DEFAULT_WAIT);
+			for (int i = 0; i <= text.length(); i++)
+				for (int j = i; j <= text.length(); j++)
+				{
+					final Recorder recorder = new Recorder();
+					final MorseStreamEncoder encoder = new MorseStreamEncoder(recorder);
+					encoder.write(text, 0, i);
+					encoder.write(text.subSequence(i, j));
+					for (int k = j; k < text.length(); k++)
+						encoder.write(text.charAt(k));
+					encoder.finish();
+					assertArrayEquals(text + " split at " + i + ", " + j, expected, recorder.toPattern());
+				}
+		}
+	}
+
+	@Test
+	public void matchesPatternOfRandomTexts()
+	{
+		final Random random = new Random(MorseStreamEncoderTest.SEED);
+		String text;
+		MorseAlphabet alphabet;
+		int short_gap, medium_gap, start;
+		long wait;
+		for (int n = 0; n < MorseStreamEncoderTest.CASES; n++)
+		{
+			text = MorseStreamEncoderTest.randomText(random);
+			alphabet = MorseAlphabet.getInstance(random.nextBoolean(), random.nextBoolean(), random.nextBoolean());
+			short_gap = 1 + random.nextInt(4);
+			medium_gap = short_gap + random.nextInt(6);
+			wait = random.nextInt(3) * 500;
+
+			final Recorder recorder = new Recorder();
+			final MorseStreamEncoder encoder = new MorseStreamEncoder(alphabet, short_gap, medium_gap, wait,
+					MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP, recorder);
+			// Pieces of random length, the last of them possibly empty.
+			start = 0;
+			while (start < text.length())
+			{
+				final int end = Math.min(text.length(), start + random.nextInt(8));
+				encoder.write(text, start, end);
+				start = end;
+			}
+			encoder.finish();
+			assertArrayEquals(text, MorseStreamEncoderTest.pattern(text, alphabet, short_gap, medium_gap, wait),
+					recorder.toPattern());
+		}
+	}
+
+	@Test
+	public void matchesPatternFromReader() throws IOException
+	{
+		// Longer than the tokenizer's buffer, so that the text is read in several chunks.
+		final String text = Texts.generate(MorseStreamEncoderTest.LONG);
+		final Recorder recorder = new Recorder();
+		final MorseStreamEncoder encoder = new MorseStreamEncoder(recorder);
+		encoder.write(new StringReader(text));
+		encoder.finish();
+		assertArrayEquals(MorseStreamEncoderTest.pattern(text, MorseAlphabet.getInstance(true, true, true),
+				MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP, MorseCode.DEFAULT_WAIT), recorder.toPattern());
+	}
+
+	@Test
+	public void emptyMessagesHaveNoSegments()
+	{
+		for (String text : new String[] { "", "   ", " \t\n", "~^" })
+		{
+			final Recorder recorder = new Recorder();
+			final MorseStreamEncoder encoder = new MorseStreamEncoder(MorseAlphabet.getInstance(true, true, false),
+					MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP, MorseCode.DEFAULT_WAIT,
+					MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP, recorder);
+			encoder.write(text);
+			encoder.finish();
+			assertArrayEquals("\"" + text + "\"", new MorseCode(text, false, false, false).toPattern(
+					MorseCode.DEFAULT_WAIT, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP),
+					recorder.toPattern());
+		}
+	}
+
+	private static long[] pattern(String text, MorseAlphabet alphabet, int short_gap, int medium_gap, long wait)
+	{
+		return new MorseEncoder(alphabet, short_gap, medium_gap).encode(text).toPattern(wait,
+				new PatternTemplates(MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP));
+	}
+
+	private static String randomText(Random random)
+	{
+		final StringBuilder text = new StringBuilder();
+		for (int i = random.nextInt(80); i > 0; i--)
+			text.append(MorseStreamEncoderTest.CHARACTERS.charAt(random.nextInt(MorseStreamEncoderTest.CHARACTERS.length())));
+		return text.toString();
+	}
+
+	// Leading and trailing whitespace, runs of spaces, prosigns whole and cut short, and unknown characters.
+	private static final String[] TEXTS		= {
+		"SOS",
+		"  hi  there ",
+		"<SOS> <AR<SK>",
+		"a<KN>b <XYZ> <SO",
+		"é~ 1.5?",
+	};
+	private static final long SEED			= 5;
+	private static final int CASES			= 20000;
+	private static final int LONG			= 10000;
+	private static final String CHARACTERS	= "abcXYZ 019.,?<>SOSAR  \t!é\n";
+}
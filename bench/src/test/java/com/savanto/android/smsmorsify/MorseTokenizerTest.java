@@ -0,0 +1,148 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Checks how MorseTokenizer recognizes prosigns typed in the plaintext: whole, in either case,
+ * run into other letters, cut short, or unknown to the dictionary.
+ *
+ * @author savanto
+ */
+public class MorseTokenizerTest
+{
+	/**
+	 * Writes each letter as its dots and dashes, and each word end as "/", separated by spaces.
+	 */
+	private static class Recorder implements MorseTokenizer.Listener
+	{
+		final StringBuilder tokens = new StringBuilder();
+
+		@Override
+		public void onLetter(Morse morse)
+		{
+			this.append(morse.toString());
+		}
+
+		@Override
+		public void onWordEnd()
+		{
+			this.append(MorseTokenizerTest.WORD_END);
+		}
+
+		private void append(String token)
+		{
+			if (this.tokens.length() > 0)
+				this.tokens.append(' ');
+			this.tokens.append(token);
+		}
+	}
+
+	@Test
+	public void sendsProsignsAsSingleLetters()
+	{
+		this.assertTokens("<SOS>", MorseCode.PROSIGN_SOS);
+		this.assertTokens("<sos>", MorseCode.PROSIGN_SOS);
+		this.assertTokens("A<AR>B", "A", MorseCode.PROSIGN_AR, "B");
+		this.assertTokens("<SOS><SK>", MorseCode.PROSIGN_SOS, MorseCode.PROSIGN_SK);
+		this.assertTokens("hi <AR>", "H", "I", MorseTokenizerTest.WORD_END, MorseCode.PROSIGN_AR);
+	}
+
+	@Test
+	public void prefersLongestProsign()
+	{
+		this.assertTokens("<K>", MorseCode.PROSIGN_K);
+		this.assertTokens("<KN>", MorseCode.PROSIGN_KN);
+		// "<K" starts both, but is neither.
+		this.assertTokens("<KNX", "K", "N", "X");
+	}
+
+	@Test
+	public void spellsOutUnterminatedProsigns()
+	{
+		// The angle bracket has no Morse, and is dropped.
+		this.assertTokens("<SO", "S", "O");
+		this.assertTokens("<SOS", "S", "O", "S");
+		this.assertTokens("<SOSX", "S", "O", "S", "X");
+		this.assertTokens("<SOS >", "S", "O", "S", MorseTokenizerTest.WORD_END);
+		this.assertTokens("<", new String[0]);
+	}
+
+	@Test
+	public void spellsOutUnknownProsigns()
+	{
+		this.assertTokens("<XYZ>", "X", "Y", "Z");
+		this.assertTokens("<AB>", "A", "B");
+	}
+
+	@Test
+	public void matchesAgainAfterFailedMatch()
+	{
+		// The second "<" starts a new match while the first is replayed.
+		this.assertTokens("<S<SOS>", "S", MorseCode.PROSIGN_SOS);
+		this.assertTokens("<<AR>", MorseCode.PROSIGN_AR);
+		this.assertTokens("<SO<AR>S", "S", "O", MorseCode.PROSIGN_AR, "S");
+	}
+
+	@Test
+	public void spellsOutProsignsWithoutDictionary()
+	{
+		final Recorder recorder = new Recorder();
+		final MorseTokenizer tokenizer = new MorseTokenizer(MorseAlphabet.getInstance(true, true, false), recorder, false);
+		tokenizer.write("<SOS>");
+		tokenizer.finish();
+		assertEquals(MorseTokenizerTest.expected(MorseAlphabet.getInstance(true, true, false), "S", "O", "S"),
+				recorder.tokens.toString());
+	}
+
+	@Test
+	public void framesMessages()
+	{
+		final Recorder recorder = new Recorder();
+		final MorseTokenizer tokenizer = new MorseTokenizer(MorseTokenizerTest.ALPHABET, recorder);
+		tokenizer.write("  hi <AR");
+		tokenizer.finish();
+		assertEquals(MorseTokenizerTest.expected(MorseTokenizerTest.ALPHABET, MorseCode.PROSIGN_CT, MorseTokenizerTest.WORD_END,
+				"H", "I", MorseTokenizerTest.WORD_END, "A", "R", MorseTokenizerTest.WORD_END,
+				MorseCode.PROSIGN_SK, MorseTokenizerTest.WORD_END), recorder.tokens.toString());
+	}
+
+	/**
+	 * Tokenizes a slice, unframed, so that only the tokens of the text itself are sent,
+	 * one character at a time.
+	 */
+	private void assertTokens(String text, String... expected)
+	{
+		final Recorder recorder = new Recorder();
+		final MorseTokenizer tokenizer = new MorseTokenizer(MorseTokenizerTest.ALPHABET, recorder, false);
+		for (int i = 0; i < text.length(); i++)
+			tokenizer.write(text.charAt(i));
+		tokenizer.finish();
+		assertEquals(text, MorseTokenizerTest.expected(MorseTokenizerTest.ALPHABET, expected), recorder.tokens.toString());
+	}
+
+	/**
+	 * @param tokens - characters, prosign keys, or WORD_END.
+	 * @return the tokens as a Recorder writes them.
+	 */
+	private static String expected(MorseAlphabet alphabet, String... tokens)
+	{
+		final StringBuilder s = new StringBuilder();
+		for (String token : tokens)
+		{
+			if (s.length() > 0)
+				s.append(' ');
+			if (token.equals(MorseTokenizerTest.WORD_END))
+				s.append(token);
+			else if (token.length() == 1)
+				s.append(alphabet.get(token.charAt(0)));
+			else
+				s.append(alphabet.getProsign(token));
+		}
+		return s.toString();
+	}
+
+	private static final MorseAlphabet ALPHABET	= MorseAlphabet.getInstance(true, true, true);
+	private static final String WORD_END		= "/";
+}
@@ -0,0 +1,232 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Looks up patterns in a PatternCache with fake encoders that count their calls,
+ * and checks hits, misses, eviction, and that playback leaves cached patterns as they were.
+ *
+ * @author savanto
+ */
+public class PatternCacheTest
+{
+	/**
+	 * Encodes with a MorseEncoder, prepending the sender if it is part of the pattern.
+	 */
+	private static class CountingEncoder implements PatternEncoder
+	{
+		private final long dit;
+		private final boolean sender;
+		int calls = 0;
+
+		CountingEncoder(long dit, boolean sender)
+		{
+			this.dit = dit;
+			this.sender = sender;
+		}
+
+		@Override
+		public long[] encode(String message, String sender)
+		{
+			this.calls++;
+			if (this.sender && sender != null)
+				message = sender + ' ' + message;
+			return PatternCacheTest.ENCODER.encode(message).toPattern(MorseCode.DEFAULT_WAIT,
+					new PatternTemplates(this.dit, 3 * this.dit, this.dit));
+		}
+
+		@Override
+		public boolean usesSender()
+		{
+			return this.sender;
+		}
+
+		@Override
+		public boolean samePattern(PatternEncoder encoder)
+		{
+			if (!(encoder instanceof CountingEncoder))
+				return false;
+			final CountingEncoder other = (CountingEncoder) encoder;
+			return this.dit == other.dit && this.sender == other.sender;
+		}
+
+		@Override
+		public int patternHashCode()
+		{
+			return 31 * (int) this.dit + (this.sender ? 1 : 0);
+		}
+	}
+
+	/**
+	 * Scribbles over every chunk it is given, as a careless device might.
+	 */
+	private static class ScribblingSink implements PatternSink
+	{
+		int chunks = 0;
+
+		@Override
+		public void play(long[] pattern)
+		{
+			this.chunks++;
+			for (int i = 0; i < pattern.length; i++)
+				pattern[i] = -1;
+		}
+
+		@Override
+		public void cancel()
+		{
+		}
+	}
+
+	/**
+	 * Virtual clock that wakes up late from every sleep.
+	 */
+	private static class LateClock implements PlaybackClock
+	{
+		private long now = 0;
+
+		@Override
+		public long uptimeMillis()
+		{
+			return this.now;
+		}
+
+		@Override
+		public void sleep(long millis)
+		{
+			this.now += millis + PatternCacheTest.LATENESS;
+		}
+	}
+
+	@Test
+	public void hitsRepeatedMessages()
+	{
+		final PatternCache cache = new PatternCache(PatternCacheTest.MAX_BYTES);
+		final CountingEncoder encoder = new CountingEncoder(MorseCode.DEFAULT_DIT, false);
+		final long[] pattern = cache.encode("hello world", null, encoder);
+		assertArrayEquals(encoder.encode("hello world", null), pattern);
+		encoder.calls = 0;
+
+		// Case and surrounding whitespace do not change the pattern.
+		assertSame(pattern, cache.encode("hello world", null, encoder));
+		assertSame(pattern, cache.encode("  HELLO World\n", null, encoder));
+		// Nor does the sender, unless the settings use it.
+		assertSame(pattern, cache.encode("hello world", "+15550100", encoder));
+		assertEquals(0, encoder.calls);
+		assertEquals(1, cache.getMissCount());
+		assertEquals(3, cache.getHitCount());
+		assertEquals(1, cache.size());
+
+		// Spacing within the text does.
+		assertNotSame(pattern, cache.encode("hello  world", null, encoder));
+		assertEquals(1, encoder.calls);
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void keysOnSettings()
+	{
+		final PatternCache cache = new PatternCache(PatternCacheTest.MAX_BYTES);
+		final CountingEncoder slow = new CountingEncoder(MorseCode.DEFAULT_DIT, false);
+		final long[] pattern = cache.encode("SOS", null, slow);
+
+		// Equal settings in another snapshot share the pattern; other settings do not.
+		assertSame(pattern, cache.encode("SOS", null, new CountingEncoder(MorseCode.DEFAULT_DIT, false)));
+		final CountingEncoder fast = new CountingEncoder(MorseCode.DEFAULT_DIT / 2, false);
+		final long[] fastPattern = cache.encode("SOS", null, fast);
+		assertEquals(1, fast.calls);
+		assertEquals(pattern.length, fastPattern.length);
+		assertEquals(pattern[1] / 2, fastPattern[1]);
+
+		// Settings that use the sender key on it.
+		final CountingEncoder sender = new CountingEncoder(MorseCode.DEFAULT_DIT, true);
+		final long[] alice = cache.encode("SOS", "ALICE", sender);
+		assertSame(alice, cache.encode("SOS", "ALICE", sender));
+		assertNotSame(alice, cache.encode("SOS", "BOB", sender));
+		assertEquals(2, sender.calls);
+		assertEquals(4, cache.size());
+	}
+
+	@Test
+	public void evictsLeastRecentlyUsed()
+	{
+		final CountingEncoder encoder = new CountingEncoder(MorseCode.DEFAULT_DIT, false);
+		// Room for two of the messages, of letters of two signals each, but not three.
+		final long entry = PatternCacheTest.sizeOf("AAAA", encoder.encode("AAAA", null));
+		final PatternCache cache = new PatternCache(2 * entry + entry / 2);
+		final long[] a = cache.encode("AAAA", null, encoder);
+		cache.encode("NNNN", null, encoder);
+		assertEquals(2 * entry, cache.getBytes());
+
+		// Using the first makes the second the least recently used.
+		assertSame(a, cache.encode("AAAA", null, encoder));
+		cache.encode("IIII", null, encoder);
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(2, cache.size());
+		assertEquals(2 * entry, cache.getBytes());
+
+		encoder.calls = 0;
+		assertSame(a, cache.encode("AAAA", null, encoder));
+		cache.encode("IIII", null, encoder);
+		assertEquals(0, encoder.calls);
+		cache.encode("NNNN", null, encoder);
+		assertEquals(1, encoder.calls);
+		assertEquals(2, cache.getEvictionCount());
+	}
+
+	@Test
+	public void skipsPatternsLargerThanCache()
+	{
+		final CountingEncoder encoder = new CountingEncoder(MorseCode.DEFAULT_DIT, false);
+		final PatternCache cache = new PatternCache(PatternCacheTest.sizeOf("E", encoder.encode("E", null)));
+		cache.encode("E", null, encoder);
+		cache.encode("HELLO", null, encoder);
+		assertEquals(1, cache.size());
+		assertEquals(0, cache.getEvictionCount());
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getBytes());
+		assertEquals(2, cache.getMissCount());
+	}
+
+	@Test
+	public void playbackLeavesCachedPatternsAlone()
+	{
+		final PatternCache cache = new PatternCache(PatternCacheTest.MAX_BYTES);
+		final CountingEncoder encoder = new CountingEncoder(MorseCode.DEFAULT_DIT, false);
+		final long[] pattern = cache.encode("the quick brown fox jumps over the lazy dog", null, encoder);
+		final long[] expected = new long[pattern.length];
+		System.arraycopy(pattern, 0, expected, 0, pattern.length);
+
+		// Late wake-ups shorten the leading gaps of the chunks, and the sink overwrites them.
+		final ScribblingSink sink = new ScribblingSink();
+		assertTrue(new ChunkedPlayer(sink, new LateClock(), PatternCacheTest.CHUNK_DURATION)
+				.play(cache.encode("the quick brown fox jumps over the lazy dog", null, encoder),
+						MorseCode.DEFAULT_MEDIUM_GAP * MorseCode.DEFAULT_GAP));
+		assertTrue(sink.chunks > 1);
+
+		assertSame(pattern, cache.encode("the quick brown fox jumps over the lazy dog", null, encoder));
+		assertArrayEquals(expected, pattern);
+	}
+
+	/**
+	 * @return the bytes the cache counts for a message of ASCII letters, and its pattern.
+	 */
+	private static long sizeOf(String message, long[] pattern)
+	{
+		return PatternCacheTest.ENTRY_OVERHEAD + 2L * message.length() + 8L * pattern.length;
+	}
+
+	private static final MorseEncoder ENCODER	= new MorseEncoder();
+	private static final long MAX_BYTES			= 64 * 1024;
+	private static final long ENTRY_OVERHEAD	= 128;
+	private static final long CHUNK_DURATION	= 2000;
+	private static final long LATENESS			= 30;
+}
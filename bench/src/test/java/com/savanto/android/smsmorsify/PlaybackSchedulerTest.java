@@ -0,0 +1,338 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Drives the PlaybackScheduler with a fake sink and a clock that only moves when told to.
+ *
+ * @author savanto
+ */
+public class PlaybackSchedulerTest
+{
+	/**
+	 * Virtual clock: sleepers block until the test advances the time past their deadline.
+	 */
+	private static class ManualClock implements PlaybackClock
+	{
+		private long now = 0;
+		private int sleepers = 0;
+
+		@Override
+		public synchronized long uptimeMillis()
+		{
+			return this.now;
+		}
+
+		@Override
+		public synchronized void sleep(long millis) throws InterruptedException
+		{
+			final long deadline = this.now + millis;
+			this.sleepers++;
+			this.notifyAll();
+			try
+			{
+				while (this.now < deadline)
+					this.wait();
+			}
+			finally
+			{
+				this.sleepers--;
+			}
+		}
+
+		synchronized void advance(long millis)
+		{
+			this.now += millis;
+			this.notifyAll();
+		}
+
+		/**
+		 * Blocks until a thread is sleeping on the clock.
+		 */
+		synchronized void awaitSleeper() throws InterruptedException
+		{
+			final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(PlaybackSchedulerTest.TIMEOUT);
+			while (this.sleepers == 0)
+			{
+				final long remaining = TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime());
+				if (remaining <= 0)
+					throw new AssertionError("No thread is sleeping on the clock");
+				this.wait(remaining);
+			}
+		}
+	}
+
+	/**
+	 * Records the chunks played.
+	 */
+	private static class FakeSink implements PatternSink
+	{
+		final BlockingQueue<long[]> played = new LinkedBlockingQueue<long[]>();
+
+		@Override
+		public void play(long[] pattern)
+		{
+			this.played.add(pattern);
+		}
+
+		@Override
+		public void cancel()
+		{
+		}
+	}
+
+	private ManualClock clock;
+	private FakeSink sink;
+	private BlockingQueue<Boolean> finished;
+	private PlaybackScheduler scheduler;
+
+	@Before
+	public void setUp()
+	{
+		this.clock = new ManualClock();
+		this.sink = new FakeSink();
+		this.finished = new LinkedBlockingQueue<Boolean>();
+		this.scheduler = new PlaybackScheduler(this.sink, this.clock, 0, new PlaybackScheduler.Listener()
+		{
+			@Override
+			public void onPlaybackFinished(boolean completed)
+			{
+				PlaybackSchedulerTest.this.finished.add(completed);
+			}
+		});
+		this.scheduler.configure(QueuePolicy.LATEST_ONLY, 1);
+	}
+
+	@After
+	public void tearDown()
+	{
+		this.scheduler.shutdown();
+	}
+
+	@Test
+	public void playsPatternsInOrder() throws InterruptedException
+	{
+		this.scheduler.configure(QueuePolicy.DROP_OLDEST, 5);
+		this.scheduler.schedule(PlaybackSchedulerTest.FIRST, PlaybackSchedulerTest.SPLIT_GAP, 0, null);
+		this.scheduler.schedule(PlaybackSchedulerTest.SECOND, PlaybackSchedulerTest.SPLIT_GAP, 0, null);
+
+		assertArrayEquals(PlaybackSchedulerTest.FIRST, this.nextChunk());
+		this.clock.awaitSleeper();
+		this.clock.advance(PlaybackSchedulerTest.FIRST_DURATION);
+		assertEquals(Boolean.TRUE, this.nextFinished());
+
+		assertArrayEquals(PlaybackSchedulerTest.SECOND, this.nextChunk());
+		this.clock.awaitSleeper();
+		this.clock.advance(PlaybackSchedulerTest.SECOND_DURATION);
+		assertEquals(Boolean.TRUE, this.nextFinished());
+	}
+
+	@Test
+	public void latestOnlySupersedesPatternPlaying() throws InterruptedException
+	{
+		this.scheduler.schedule(PlaybackSchedulerTest.FIRST, PlaybackSchedulerTest.SPLIT_GAP, 0, null);
+		assertArrayEquals(PlaybackSchedulerTest.FIRST, this.nextChunk());
+		this.clock.awaitSleeper();
+
+		// The player is cancelled while waiting for its chunk to finish; the new pattern must still play in full.
+		this.scheduler.schedule(PlaybackSchedulerTest.SECOND, PlaybackSchedulerTest.SPLIT_GAP, 0, null);
+		assertEquals(Boolean.FALSE, this.nextFinished());
+		assertArrayEquals(PlaybackSchedulerTest.SECOND, this.nextChunk());
+		this.clock.awaitSleeper();
+		this.clock.advance(PlaybackSchedulerTest.SECOND_DURATION);
+		assertEquals(Boolean.TRUE, this.nextFinished());
+		assertEquals(1, this.scheduler.getSupersededCount());
+	}
+
+	@Test
+	public void latestOnlySupersedesPatternWaitingToStart() throws InterruptedException
+	{
+		// The first pattern waits for a start time the clock never reaches.
+		this.scheduler.schedule(PlaybackSchedulerTest.FIRST, PlaybackSchedulerTest.SPLIT_GAP, PlaybackSchedulerTest.LATER, null);
+		this.clock.awaitSleeper();
+
+		this.scheduler.schedule(PlaybackSchedulerTest.SECOND, PlaybackSchedulerTest.SPLIT_GAP, 0, null);
+		assertEquals(Boolean.FALSE, this.nextFinished());
+		assertArrayEquals(PlaybackSchedulerTest.SECOND, this.nextChunk());
+		this.clock.awaitSleeper();
+		this.clock.advance(PlaybackSchedulerTest.SECOND_DURATION);
+		assertEquals(Boolean.TRUE, this.nextFinished());
+		assertNull(this.sink.played.poll());
+	}
+
+	@Test
+	public void waitsForStartTime() throws InterruptedException
+	{
+		this.scheduler.configure(QueuePolicy.DROP_OLDEST, 5);
+		// Scheduling returns at once; the playback thread waits on the clock.
+		assertTrue(this.scheduler.schedule(PlaybackSchedulerTest.FIRST, PlaybackSchedulerTest.SPLIT_GAP,
+				PlaybackSchedulerTest.DELAY, null));
+		this.clock.awaitSleeper();
+		this.clock.advance(PlaybackSchedulerTest.DELAY - 1);
+		assertNull(this.sink.played.poll(PlaybackSchedulerTest.QUIET, TimeUnit.MILLISECONDS));
+
+		this.clock.advance(1);
+		this.playNext(PlaybackSchedulerTest.FIRST);
+	}
+
+	@Test
+	public void dropOldestMakesRoomForNewPatterns() throws InterruptedException
+	{
+		this.scheduler.configure(QueuePolicy.DROP_OLDEST, 2);
+		this.holdPlayback();
+		assertTrue(this.scheduler.schedule(PlaybackSchedulerTest.A, PlaybackSchedulerTest.SPLIT_GAP, 0, null));
+		assertTrue(this.scheduler.schedule(PlaybackSchedulerTest.B, PlaybackSchedulerTest.SPLIT_GAP, 0, null));
+		assertTrue(this.scheduler.schedule(PlaybackSchedulerTest.C, PlaybackSchedulerTest.SPLIT_GAP, 0, null));
+
+		// The listener hears of the pattern dropped at once, on this thread.
+		assertEquals(Boolean.FALSE, this.finished.poll());
+		assertEquals(2, this.scheduler.size());
+		assertEquals(2, this.scheduler.getPeakDepth());
+		assertEquals(1, this.scheduler.getDroppedOldestCount());
+		assertEquals(0, this.scheduler.getDroppedNewestCount());
+
+		this.releasePlayback();
+		this.playNext(PlaybackSchedulerTest.B);
+		this.playNext(PlaybackSchedulerTest.C);
+		assertNull(this.sink.played.poll());
+	}
+
+	@Test
+	public void dropNewestRejectsPatternsWhenFull() throws InterruptedException
+	{
+		this.scheduler.configure(QueuePolicy.DROP_NEWEST, 2);
+		this.holdPlayback();
+		assertTrue(this.scheduler.schedule(PlaybackSchedulerTest.A, PlaybackSchedulerTest.SPLIT_GAP, 0, null));
+		assertTrue(this.scheduler.schedule(PlaybackSchedulerTest.B, PlaybackSchedulerTest.SPLIT_GAP, 0, null));
+		assertFalse(this.scheduler.schedule(PlaybackSchedulerTest.C, PlaybackSchedulerTest.SPLIT_GAP, 0, null));
+
+		// The caller is told instead of the listener.
+		assertNull(this.finished.poll());
+		assertEquals(2, this.scheduler.size());
+		assertEquals(1, this.scheduler.getDroppedNewestCount());
+		assertEquals(0, this.scheduler.getDroppedOldestCount());
+
+		this.releasePlayback();
+		this.playNext(PlaybackSchedulerTest.A);
+		this.playNext(PlaybackSchedulerTest.B);
+		assertNull(this.sink.played.poll());
+	}
+
+	@Test
+	public void coalesceSenderReplacesInPlace() throws InterruptedException
+	{
+		this.scheduler.configure(QueuePolicy.COALESCE_SENDER, 2);
+		this.holdPlayback();
+		assertTrue(this.scheduler.schedule(PlaybackSchedulerTest.A, PlaybackSchedulerTest.SPLIT_GAP, 0, PlaybackSchedulerTest.ALICE));
+		assertTrue(this.scheduler.schedule(PlaybackSchedulerTest.B, PlaybackSchedulerTest.SPLIT_GAP, 0, PlaybackSchedulerTest.BOB));
+		// Alice's second message takes the place of her first, though the queue is full.
+		assertTrue(this.scheduler.schedule(PlaybackSchedulerTest.C, PlaybackSchedulerTest.SPLIT_GAP, 0, PlaybackSchedulerTest.ALICE));
+
+		assertEquals(Boolean.FALSE, this.finished.poll());
+		assertEquals(2, this.scheduler.size());
+		assertEquals(1, this.scheduler.getCoalescedCount());
+		assertEquals(0, this.scheduler.getDroppedOldestCount());
+
+		this.releasePlayback();
+		this.playNext(PlaybackSchedulerTest.C);
+		this.playNext(PlaybackSchedulerTest.B);
+		assertNull(this.sink.played.poll());
+	}
+
+	@Test
+	public void coalesceSenderDropsOldestWhenFull() throws InterruptedException
+	{
+		this.scheduler.configure(QueuePolicy.COALESCE_SENDER, 2);
+		this.holdPlayback();
+		// Messages of unknown senders never coalesce.
+		assertTrue(this.scheduler.schedule(PlaybackSchedulerTest.A, PlaybackSchedulerTest.SPLIT_GAP, 0, null));
+		assertTrue(this.scheduler.schedule(PlaybackSchedulerTest.B, PlaybackSchedulerTest.SPLIT_GAP, 0, null));
+		assertTrue(this.scheduler.schedule(PlaybackSchedulerTest.C, PlaybackSchedulerTest.SPLIT_GAP, 0, PlaybackSchedulerTest.ALICE));
+
+		assertEquals(Boolean.FALSE, this.finished.poll());
+		assertEquals(0, this.scheduler.getCoalescedCount());
+		assertEquals(1, this.scheduler.getDroppedOldestCount());
+
+		this.releasePlayback();
+		this.playNext(PlaybackSchedulerTest.B);
+		this.playNext(PlaybackSchedulerTest.C);
+		assertNull(this.sink.played.poll());
+	}
+
+	/**
+	 * Schedules a pattern whose start time is far off, and waits for the playback thread
+	 * to take it, so that the patterns scheduled next stay in the queue.
+	 */
+	private void holdPlayback() throws InterruptedException
+	{
+		assertTrue(this.scheduler.schedule(PlaybackSchedulerTest.FIRST, PlaybackSchedulerTest.SPLIT_GAP,
+				PlaybackSchedulerTest.LATER, null));
+		this.clock.awaitSleeper();
+		assertEquals(0, this.scheduler.size());
+	}
+
+	/**
+	 * Lets the pattern held by holdPlayback() start, and plays it to the end.
+	 */
+	private void releasePlayback() throws InterruptedException
+	{
+		this.clock.advance(PlaybackSchedulerTest.LATER);
+		this.playNext(PlaybackSchedulerTest.FIRST);
+	}
+
+	/**
+	 * Checks that the next pattern is played, as one chunk, and lets it finish.
+	 * @param pattern - a pattern of one word; its duration is the sum of its elements.
+	 */
+	private void playNext(long[] pattern) throws InterruptedException
+	{
+		assertArrayEquals(pattern, this.nextChunk());
+		this.clock.awaitSleeper();
+		this.clock.advance(ChunkedPlayer.duration(pattern, 0, pattern.length));
+		assertEquals(Boolean.TRUE, this.nextFinished());
+	}
+
+	private long[] nextChunk() throws InterruptedException
+	{
+		final long[] chunk = this.sink.played.poll(PlaybackSchedulerTest.TIMEOUT, TimeUnit.MILLISECONDS);
+		assertNotNull("No chunk played", chunk);
+		return chunk;
+	}
+
+	private Boolean nextFinished() throws InterruptedException
+	{
+		final Boolean completed = this.finished.poll(PlaybackSchedulerTest.TIMEOUT, TimeUnit.MILLISECONDS);
+		assertNotNull("Playback did not finish", completed);
+		return completed;
+	}
+
+	// Patterns of a single word each, so that each plays as one chunk.
+	private static final long[] FIRST			= { 0, 100, 100, 300 };
+	private static final long FIRST_DURATION	= 500;
+	private static final long[] SECOND			= { 0, 300, 100, 100 };
+	private static final long SECOND_DURATION	= 500;
+	private static final long[] A				= { 0, 100 };
+	private static final long[] B				= { 0, 300 };
+	private static final long[] C				= { 0, 100, 100, 100 };
+	private static final long SPLIT_GAP			= 700;
+	private static final long DELAY				= 5000;
+	private static final long LATER				= 60000;
+	private static final long TIMEOUT			= 5000;
+	// How long to watch for a chunk that must not be played.
+	private static final long QUIET				= 200;
+	private static final String ALICE			= "+15550100";
+	private static final String BOB				= "+15550199";
+}
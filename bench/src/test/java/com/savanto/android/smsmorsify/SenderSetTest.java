@@ -0,0 +1,144 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @author savanto
+ */
+public class SenderSetTest
+{
+	@Test
+	public void formattingIgnored()
+	{
+		final SenderSet set = new SenderSet(new String[] { "+1 (555) 010-0199" });
+		assertTrue(set.contains("+15550100199"));
+		assertTrue(set.contains("+1.555.010.0199"));
+		assertFalse(set.contains("15550100199"));
+	}
+
+	@Test
+	public void internationalPrefixesMatch()
+	{
+		final SenderSet set = new SenderSet(new String[] { "+44 20 7946 0000", "00800 1234 5678" });
+		assertTrue(set.contains("0044 20 7946 0000"));
+		assertTrue(set.contains("+442079460000"));
+		assertTrue(set.contains("+800 1234 5678"));
+	}
+
+	@Test
+	public void leadingZerosCount()
+	{
+		final String[] senders = { "800", "0800", "00800", "8", "08", "+8", "0", "00" };
+		for (int i = 0; i < senders.length; i++)
+			for (int j = 0; j < senders.length; j++)
+				assertEquals(senders[i] + " against " + senders[j], i == j,
+						new SenderSet(new String[] { senders[i] }).contains(senders[j]));
+	}
+
+	@Test
+	public void shortCodesDoNotMatchTails()
+	{
+		final SenderSet set = new SenderSet(new String[] { "12345", "5550100" });
+		assertTrue(set.contains("12345"));
+		assertFalse(set.contains("+4412345"));
+		assertFalse(set.contains("9912345"));
+		assertFalse(set.contains("+15550100"));
+		assertFalse(set.contains("0123456789012345550100"));
+	}
+
+	@Test
+	public void namesIgnoreCase()
+	{
+		final SenderSet set = new SenderSet(new String[] { "Bank", " ", "" });
+		assertTrue(set.contains("BANK"));
+		assertTrue(set.contains("bank"));
+		assertFalse(set.contains("BANK1"));
+		assertFalse(set.contains(null));
+		assertFalse(set.contains(""));
+	}
+
+	@Test
+	public void longNumbersCompareExactly()
+	{
+		final SenderSet set = new SenderSet(new String[] { "12345678901234567890" });
+		assertTrue(set.contains("1234 5678 9012 3456 7890"));
+		assertFalse(set.contains("22345678901234567890"));
+		assertFalse(set.contains("1234567890123456789"));
+	}
+
+	@Test
+	public void matchesReferenceSetOfDigitStrings()
+	{
+		final Random random = new Random(SenderSetTest.SEED);
+		final String[] senders = new String[SenderSetTest.SENDERS];
+		final HashSet<String> reference = new HashSet<String>();
+		for (int i = 0; i < senders.length; i++)
+		{
+			senders[i] = SenderSetTest.randomNumber(random);
+			reference.add(SenderSetTest.canonical(senders[i]));
+		}
+		final SenderSet set = new SenderSet(senders);
+		assertFalse(set.isEmpty());
+
+		String sender;
+		for (int i = 0; i < SenderSetTest.LOOKUPS; i++)
+		{
+			sender = i % 2 == 0 ? senders[random.nextInt(senders.length)] : SenderSetTest.randomNumber(random);
+			assertEquals(sender, reference.contains(SenderSetTest.canonical(sender)), set.contains(sender));
+		}
+	}
+
+	/**
+	 * @return the digits of a number, after "+" if it is international.
+	 */
+	private static String canonical(String number)
+	{
+		String digits = number.replaceAll("[^0-9]", "");
+		if (number.startsWith("+"))
+			return "+" + digits;
+		if (digits.length() > 2 && digits.startsWith("00"))
+			return "+" + digits.substring(2);
+		return digits;
+	}
+
+	/**
+	 * @return a short number, with leading zeros and an international prefix now and then, and some formatting.
+	 */
+	private static String randomNumber(Random random)
+	{
+		final StringBuilder number = new StringBuilder();
+		switch (random.nextInt(4))
+		{
+			case 0:
+				number.append('+');
+				break;
+			case 1:
+				number.append("00");
+				break;
+			case 2:
+				number.append('0');
+				break;
+			default:
+				break;
+		}
+		final int length = 1 + random.nextInt(5);
+		for (int i = 0; i < length; i++)
+		{
+			if (i > 0 && random.nextInt(4) == 0)
+				number.append(' ');
+			number.append((char) ('0' + random.nextInt(10)));
+		}
+		return number.toString();
+	}
+
+	private static final long SEED		= 21;
+	private static final int SENDERS	= 5000;
+	private static final int LOOKUPS	= 100000;
+}
@@ -0,0 +1,263 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Feeds message parts to an SmsReassembler on a clock that only moves when told to,
+ * and parses concatenation headers out of raw SMS-DELIVER PDUs.
+ *
+ * @author savanto
+ */
+public class SmsReassemblerTest
+{
+	/**
+	 * Virtual clock, advanced by the test.
+	 */
+	private static class ManualClock implements PlaybackClock
+	{
+		long now = 0;
+
+		@Override
+		public long uptimeMillis()
+		{
+			return this.now;
+		}
+
+		@Override
+		public void sleep(long millis)
+		{
+			this.now += millis;
+		}
+	}
+
+	private ManualClock clock;
+	private SmsReassembler reassembler;
+
+	@Before
+	public void setUp()
+	{
+		this.clock = new ManualClock();
+		this.reassembler = new SmsReassembler(this.clock, SmsReassemblerTest.TIMEOUT, SmsReassemblerTest.MAX_BYTES);
+	}
+
+	@Test
+	public void wholeMessagesPassThrough()
+	{
+		assertEquals("hello", this.reassembler.add(SmsReassemblerTest.ALICE, null, "hello"));
+		assertEquals("one", this.reassembler.add(SmsReassemblerTest.ALICE, new SmsReassembler.Concatenation(1, 1, 1), "one"));
+		// Headers that make no sense: the part stands alone.
+		assertEquals("zero", this.reassembler.add(SmsReassemblerTest.ALICE, new SmsReassembler.Concatenation(1, 2, 0), "zero"));
+		assertEquals("three", this.reassembler.add(SmsReassemblerTest.ALICE, new SmsReassembler.Concatenation(1, 2, 3), "three"));
+		assertEquals(0, this.reassembler.getPendingCount());
+	}
+
+	@Test
+	public void joinsPartsReceivedOutOfOrder()
+	{
+		assertNull(this.add(SmsReassemblerTest.ALICE, 7, 3, 3, "C"));
+		assertNull(this.add(SmsReassemblerTest.ALICE, 7, 3, 1, "A"));
+		assertEquals(1, this.reassembler.getPendingCount());
+		assertEquals("ABC", this.add(SmsReassemblerTest.ALICE, 7, 3, 2, "B"));
+		assertEquals(0, this.reassembler.getPendingCount());
+		assertEquals(0, this.reassembler.getBytes());
+	}
+
+	@Test
+	public void keepsSendersAndReferencesApart()
+	{
+		assertNull(this.add(SmsReassemblerTest.ALICE, 7, 2, 1, "a1"));
+		assertNull(this.add(SmsReassemblerTest.BOB, 7, 2, 2, "b2"));
+		assertNull(this.add(SmsReassemblerTest.ALICE, 8, 2, 2, "c2"));
+		assertNull(this.add(null, 7, 2, 1, "d1"));
+		assertEquals(4, this.reassembler.getPendingCount());
+		assertEquals("a1a2", this.add(SmsReassemblerTest.ALICE, 7, 2, 2, "a2"));
+		assertEquals("b1b2", this.add(SmsReassemblerTest.BOB, 7, 2, 1, "b1"));
+		assertEquals("c1c2", this.add(SmsReassemblerTest.ALICE, 8, 2, 1, "c1"));
+		assertEquals("d1d2", this.add(null, 7, 2, 2, "d2"));
+	}
+
+	@Test
+	public void ignoresRetransmittedParts()
+	{
+		assertNull(this.add(SmsReassemblerTest.ALICE, 7, 2, 1, "first"));
+		assertNull(this.add(SmsReassemblerTest.ALICE, 7, 2, 1, "again"));
+		assertNull(this.add(SmsReassemblerTest.ALICE, 7, 2, 1, "and again"));
+		assertEquals(2, this.reassembler.getDuplicateCount());
+		assertEquals("first second", this.add(SmsReassemblerTest.ALICE, 7, 2, 2, " second"));
+
+		// A retransmission after the message is complete starts a new message, which times out.
+		assertNull(this.add(SmsReassemblerTest.ALICE, 7, 2, 2, " second"));
+		assertEquals(1, this.reassembler.getPendingCount());
+		this.clock.now += SmsReassemblerTest.TIMEOUT;
+		assertEquals("hi", this.reassembler.add(SmsReassemblerTest.BOB, null, "hi"));
+		assertEquals(0, this.reassembler.getPendingCount());
+		assertEquals(1, this.reassembler.getTimedOutCount());
+	}
+
+	@Test
+	public void restartsWhenPartCountChanges()
+	{
+		assertNull(this.add(SmsReassemblerTest.ALICE, 7, 3, 1, "old"));
+		assertNull(this.add(SmsReassemblerTest.ALICE, 7, 2, 1, "A"));
+		assertEquals("AB", this.add(SmsReassemblerTest.ALICE, 7, 2, 2, "B"));
+		assertEquals(0, this.reassembler.getPendingCount());
+	}
+
+	@Test
+	public void dropsMessagesThatTimeOut()
+	{
+		assertNull(this.add(SmsReassemblerTest.ALICE, 7, 2, 1, "A"));
+		this.clock.now += SmsReassemblerTest.TIMEOUT / 2;
+		assertNull(this.add(SmsReassemblerTest.BOB, 7, 2, 1, "B"));
+
+		// Just in time for Alice's message.
+		this.clock.now += SmsReassemblerTest.TIMEOUT / 2 - 1;
+		assertNull(this.add(SmsReassemblerTest.BOB, 8, 2, 1, "x"));
+		assertEquals(3, this.reassembler.getPendingCount());
+		assertEquals(0, this.reassembler.getTimedOutCount());
+
+		// Alice's message times out as the next part arrives, and her last part starts a new message.
+		this.clock.now += 1;
+		assertNull(this.add(SmsReassemblerTest.ALICE, 7, 2, 2, "a"));
+		assertEquals(1, this.reassembler.getTimedOutCount());
+		assertEquals(3, this.reassembler.getPendingCount());
+		// Bob's is still in time.
+		assertEquals("BC", this.add(SmsReassemblerTest.BOB, 7, 2, 2, "C"));
+	}
+
+	@Test
+	public void evictsOldestAtByteCap()
+	{
+		// Each part is just under a third of the limit.
+		final String part = SmsReassemblerTest.text((int) ((SmsReassemblerTest.MAX_BYTES / 3 - SmsReassemblerTest.PART_OVERHEAD) / 2));
+		assertNull(this.add(SmsReassemblerTest.ALICE, 1, 2, 1, part));
+		assertNull(this.add(SmsReassemblerTest.ALICE, 2, 2, 1, part));
+		assertNull(this.add(SmsReassemblerTest.ALICE, 3, 2, 1, part));
+		assertEquals(0, this.reassembler.getEvictedCount());
+
+		assertNull(this.add(SmsReassemblerTest.ALICE, 4, 2, 1, part));
+		assertEquals(1, this.reassembler.getEvictedCount());
+		assertEquals(3, this.reassembler.getPendingCount());
+		assertEquals(3 * (SmsReassemblerTest.PART_OVERHEAD + 2 * part.length()), this.reassembler.getBytes());
+
+		// The oldest message was dropped, so its last part starts over; the others complete.
+		assertEquals(part + "2", this.add(SmsReassemblerTest.ALICE, 2, 2, 2, "2"));
+		assertNull(this.add(SmsReassemblerTest.ALICE, 1, 2, 2, "1"));
+	}
+
+	@Test
+	public void parsesEightBitReference()
+	{
+		final SmsReassembler.Concatenation concatenation = SmsReassembler.parseConcatenation(
+				SmsReassemblerTest.pdu(SmsReassemblerTest.UDH_8BIT));
+		assertNotNull(concatenation);
+		assertEquals(0x2A, concatenation.getReference());
+		assertEquals(3, concatenation.getCount());
+		assertEquals(2, concatenation.getSequence());
+	}
+
+	@Test
+	public void parsesSixteenBitReference()
+	{
+		final SmsReassembler.Concatenation concatenation = SmsReassembler.parseConcatenation(
+				SmsReassemblerTest.pdu(SmsReassemblerTest.UDH_16BIT));
+		assertNotNull(concatenation);
+		assertEquals(0xBEEF, concatenation.getReference());
+		assertEquals(2, concatenation.getCount());
+		assertEquals(1, concatenation.getSequence());
+	}
+
+	@Test
+	public void skipsOtherInformationElements()
+	{
+		// Application port addressing, then the concatenation element.
+		final SmsReassembler.Concatenation concatenation = SmsReassembler.parseConcatenation(
+				SmsReassemblerTest.pdu("0B0504158A00000003990201"));
+		assertNotNull(concatenation);
+		assertEquals(0x99, concatenation.getReference());
+
+		// Port addressing alone.
+		assertNull(SmsReassembler.parseConcatenation(SmsReassemblerTest.pdu("0605040B8423F0")));
+	}
+
+	@Test
+	public void ignoresPdusWithoutConcatenation()
+	{
+		// No user data header indicator.
+		final byte[] plain = SmsReassemblerTest.pdu(SmsReassemblerTest.UDH_8BIT);
+		plain[SmsReassemblerTest.SMSC.length() / 2] &= ~0x40;
+		assertNull(SmsReassembler.parseConcatenation(plain));
+
+		// An SMS-SUBMIT rather than an SMS-DELIVER.
+		final byte[] submit = SmsReassemblerTest.pdu(SmsReassemblerTest.UDH_8BIT);
+		submit[SmsReassemblerTest.SMSC.length() / 2] |= 0x01;
+		assertNull(SmsReassembler.parseConcatenation(submit));
+
+		// An element that runs past the end of the header.
+		assertNull(SmsReassembler.parseConcatenation(SmsReassemblerTest.pdu("0300032A0302")));
+	}
+
+	@Test
+	public void ignoresTruncatedPdus()
+	{
+		final byte[] pdu = SmsReassemblerTest.pdu(SmsReassemblerTest.UDH_8BIT);
+		// The PDU up to the end of its header, without the text.
+		final int header = (SmsReassemblerTest.SMSC + SmsReassemblerTest.TPDU_START + SmsReassemblerTest.UDH_8BIT).length() / 2;
+		byte[] truncated;
+		for (int length = 0; length < pdu.length; length++)
+		{
+			truncated = new byte[length];
+			System.arraycopy(pdu, 0, truncated, 0, length);
+			if (length < header)
+				assertNull("length " + length, SmsReassembler.parseConcatenation(truncated));
+			else
+				assertNotNull("length " + length, SmsReassembler.parseConcatenation(truncated));
+		}
+	}
+
+	private String add(String sender, int reference, int count, int sequence, String body)
+	{
+		return this.reassembler.add(sender, new SmsReassembler.Concatenation(reference, count, sequence), body);
+	}
+
+	/**
+	 * @param udh - the user data header, from its length octet on, in hex.
+	 * @return an SMS-DELIVER PDU with the header, followed by a few octets of 7-bit text.
+	 */
+	private static byte[] pdu(String udh)
+	{
+		final String hex = SmsReassemblerTest.SMSC + SmsReassemblerTest.TPDU_START + udh + SmsReassemblerTest.TEXT;
+		final byte[] pdu = new byte[hex.length() / 2];
+		for (int i = 0; i < pdu.length; i++)
+			pdu[i] = (byte) Integer.parseInt(hex.substring(2 * i, 2 * i + 2), 16);
+		return pdu;
+	}
+
+	private static String text(int length)
+	{
+		final char[] text = new char[length];
+		for (int i = 0; i < length; i++)
+			text[i] = 'x';
+		return new String(text);
+	}
+
+	private static final String ALICE		= "+15550100";
+	private static final String BOB			= "+15550199";
+	private static final long TIMEOUT		= 60000;
+	private static final long MAX_BYTES		= 3000;
+	private static final long PART_OVERHEAD	= 40;
+
+	// SMSC address +44778501605.
+	private static final String SMSC		= "07914477581006F5";
+	// SMS-DELIVER with a header, from +44798506050: first octet, originating address,
+	// protocol identifier, 7-bit data coding scheme, time stamp and user data length.
+	private static final String TPDU_START	= "44" + "0B914497586050F0" + "00" + "00" + "21300151425000" + "A0";
+	private static final String UDH_8BIT	= "050003" + "2A0302";
+	private static final String UDH_16BIT	= "060804" + "BEEF0201";
+	private static final String TEXT		= "C8329BFD06";
+}
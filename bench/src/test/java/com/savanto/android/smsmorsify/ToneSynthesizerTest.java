@@ -0,0 +1,158 @@
+package com.savanto.android.smsmorsify;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Renders patterns through a ToneSynthesizer into an array, and checks the samples.
+ *
+ * @author savanto
+ */
+public class ToneSynthesizerTest
+{
+	/**
+	 * Copies the samples written into a growing array; can stop rendering after a number of writes.
+	 */
+	private static class ArraySink implements PcmSink
+	{
+		short[] samples = new short[1024];
+		int length = 0;
+		int writes = 0;
+		int maxWrites = Integer.MAX_VALUE;
+
+		@Override
+		public boolean write(short[] samples, int offset, int length)
+		{
+			if (this.writes == this.maxWrites)
+				return false;
+			this.writes++;
+			while (this.length + length > this.samples.length)
+			{
+				final short[] grown = new short[2 * this.samples.length];
+				System.arraycopy(this.samples, 0, grown, 0, this.length);
+				this.samples = grown;
+			}
+			System.arraycopy(samples, offset, this.samples, this.length, length);
+			this.length += length;
+			return true;
+		}
+	}
+
+	private final ToneSynthesizer synthesizer = new ToneSynthesizer(ToneSynthesizer.DEFAULT_SAMPLE_RATE,
+			ToneSynthesizer.DEFAULT_FREQUENCY, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH);
+
+	@Test
+	public void rendersDitDahAndGapLengths()
+	{
+		assertEquals(ToneSynthesizerTest.DIT_SAMPLES, this.renderTone(MorseCode.DEFAULT_DIT).length);
+		assertEquals(3 * ToneSynthesizerTest.DIT_SAMPLES, this.renderTone(MorseCode.DEFAULT_DAH).length);
+		assertEquals(ToneSynthesizerTest.DIT_SAMPLES, this.renderSilence(MorseCode.DEFAULT_GAP).length);
+		// Word gaps are longer than the silence buffer, and are written in pieces.
+		assertEquals(7 * ToneSynthesizerTest.DIT_SAMPLES, this.renderSilence(7 * MorseCode.DEFAULT_GAP).length);
+	}
+
+	@Test
+	public void rendersOtherDurationsToLength()
+	{
+		// Neither a dit nor a dah of this synthesizer, as from a pattern built with other settings.
+		final ArraySink sink = new ArraySink();
+		assertTrue(this.synthesizer.render(ToneSynthesizerTest.ODD_DURATION, true, sink));
+		assertEquals(this.synthesizer.samples(ToneSynthesizerTest.ODD_DURATION), sink.length);
+		assertEquals(0, sink.samples[0]);
+		assertEquals(0, sink.samples[sink.length - 1]);
+
+		assertEquals(this.synthesizer.samples(250), this.renderSilence(250).length);
+	}
+
+	@Test
+	public void tonesStartAndEndAtZero()
+	{
+		for (long duration : new long[] { MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, ToneSynthesizerTest.ODD_DURATION, 3, 1 })
+		{
+			final short[] tone = this.renderTone(duration);
+			assertEquals(duration + " ms", 0, tone[0]);
+			assertEquals(duration + " ms", 0, tone[tone.length - 1]);
+			for (short sample : tone)
+				assertTrue(Math.abs(sample) <= Short.MAX_VALUE / 2 + 1);
+		}
+	}
+
+	@Test
+	public void rampsFadeInAndOut()
+	{
+		final short[] tone = this.renderTone(MorseCode.DEFAULT_DAH);
+		final int ramp = this.synthesizer.samples(5);
+		// Quieter within the ramps than at full amplitude.
+		assertTrue(ToneSynthesizerTest.peak(tone, 0, ramp / 4) < ToneSynthesizerTest.peak(tone, ramp, tone.length - ramp) / 4);
+		assertTrue(ToneSynthesizerTest.peak(tone, tone.length - ramp / 4, tone.length) < ToneSynthesizerTest.peak(tone, ramp, tone.length - ramp) / 4);
+	}
+
+	@Test
+	public void rendersPatternsToLength()
+	{
+		final long[] pattern = new MorseCode("SOS HELP").toPattern(MorseCode.DEFAULT_WAIT + 250,
+				MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP);
+		final ArraySink sink = new ArraySink();
+		assertTrue(this.synthesizer.render(pattern, sink));
+		assertEquals(this.synthesizer.length(pattern), sink.length);
+
+		// Off durations are silent.
+		int start = 0;
+		int samples;
+		for (int i = 0; i < pattern.length; i++)
+		{
+			samples = this.synthesizer.samples(pattern[i]);
+			if (i % 2 == 0)
+				assertEquals(0, ToneSynthesizerTest.peak(sink.samples, start, start + samples));
+			else
+				assertTrue(ToneSynthesizerTest.peak(sink.samples, start, start + samples) > 0);
+			start += samples;
+		}
+	}
+
+	@Test
+	public void stopsWhenSinkDoes()
+	{
+		final long[] pattern = { 0, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_GAP, MorseCode.DEFAULT_DAH };
+		final ArraySink sink = new ArraySink();
+		sink.maxWrites = 2;
+		assertFalse(this.synthesizer.render(pattern, sink));
+		assertEquals(2 * ToneSynthesizerTest.DIT_SAMPLES, sink.length);
+	}
+
+	private short[] renderTone(long duration)
+	{
+		return this.render(duration, true);
+	}
+
+	private short[] renderSilence(long duration)
+	{
+		final short[] silence = this.render(duration, false);
+		assertEquals(0, ToneSynthesizerTest.peak(silence, 0, silence.length));
+		return silence;
+	}
+
+	private short[] render(long duration, boolean on)
+	{
+		final ArraySink sink = new ArraySink();
+		assertTrue(this.synthesizer.render(duration, on, sink));
+		final short[] samples = new short[sink.length];
+		System.arraycopy(sink.samples, 0, samples, 0, sink.length);
+		return samples;
+	}
+
+	private static int peak(short[] samples, int start, int end)
+	{
+		int peak = 0;
+		for (int i = start; i < end; i++)
+			peak = Math.max(peak, Math.abs(samples[i]));
+		return peak;
+	}
+
+	// 100 ms at 16 kHz.
+	private static final int DIT_SAMPLES		= 1600;
+	private static final long ODD_DURATION	= 137;
+}
@@ -0,0 +1,339 @@
+package com.savanto.android.smsmorsify;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shortens plaintext before encoding by rewriting common words and phrases into standard
+ * Morse abbreviations and Q-codes, such as "please" into "PSE" and "thank you" into "TU".
+ * A substitution is only made where it shortens the on-air time of the message, as computed
+ * from the alphabet and timing in use; where phrases overlap, the substitutions that save the
+ * most time in total are chosen.
+ *
+ * Words are separated by spaces, and matched case-insensitively. Punctuation ending the last
+ * word of a phrase is kept after its abbreviation. Phrases are found by walking a trie over the
+ * table from each word, so matching is linear in the length of the message.
+ *
+ * Instances are immutable, and can be shared between threads.
+ *
+ * @author savanto
+ */
+public class Abbreviator
+{
+	/**
+	 * A shortened message, and the on-air time saved by shortening it.
+	 */
+	public static final class Result
+	{
+		private final String text;
+		private final long savedTime;
+
+		Result(String text, long savedTime)
+		{
+			this.text = text;
+			this.savedTime = savedTime;
+		}
+
+		/**
+		 * @return the plaintext with abbreviations substituted.
+		 */
+		public String getText()
+		{
+			return this.text;
+		}
+
+		/**
+		 * @return the on-air time saved, in the units of the timing.
+		 */
+		public long getSavedTime()
+		{
+			return this.savedTime;
+		}
+	}
+
+	private final MorseAlphabet alphabet;
+	private final long dit;
+	private final long dah;
+	private final long gap;
+	private final long short_gap;
+	private final long medium_gap;
+	private final CharTrie<String> phrases;
+
+	/**
+	 * Creates an abbreviator for the default table of abbreviations and Q-codes.
+	 * @param alphabet - the alphabet the message is encoded with.
+	 * @param dit - duration of a dot.
+	 * @param dah - duration of a dash.
+	 * @param gap - duration of the gap between signals.
+	 * @param short_gap - the gap length between Morse letters.
+	 * @param medium_gap - the gap length between Morse words.
+	 */
+	public Abbreviator(MorseAlphabet alphabet, long dit, long dah, long gap, int short_gap, int medium_gap)
+	{
+		this(Abbreviator.DEFAULT_ABBREVIATIONS, alphabet, dit, dah, gap, short_gap, medium_gap);
+	}
+
+	/**
+	 * @param abbreviations - phrases, with words separated by single spaces, and their abbreviations.
+	 * @param alphabet - the alphabet the message is encoded with.
+	 * @param dit - duration of a dot.
+	 * @param dah - duration of a dash.
+	 * @param gap - duration of the gap between signals.
+	 * @param short_gap - the gap length between Morse letters.
+	 * @param medium_gap - the gap length between Morse words.
+	 */
+	public Abbreviator(Map<String, String> abbreviations, MorseAlphabet alphabet, long dit, long dah, long gap,
+			int short_gap, int medium_gap)
+	{
+		this.alphabet = alphabet;
+		this.dit = dit;
+		this.dah = dah;
+		this.gap = gap;
+		this.short_gap = gap * short_gap;
+		this.medium_gap = gap * medium_gap;
+
+		// Keep only the abbreviations that can be sent in full, and are shorter than their phrase.
+		final HashMap<String, String> phrases = new HashMap<String, String>();
+		String abbreviation;
+		for (Map.Entry<String, String> entry : abbreviations.entrySet())
+		{
+			abbreviation = entry.getValue();
+			if (this.encodable(abbreviation) && this.time(abbreviation) < this.phraseTime(entry.getKey()))
+				phrases.put(entry.getKey(), abbreviation);
+		}
+		this.phrases = new CharTrie<String>(phrases);
+	}
+
+	/**
+	 * Substitutes abbreviations into a message.
+	 * @param plaintext - the plaintext message.
+	 * @return the shortened message, and the time saved.
+	 */
+	public Abbreviator.Result abbreviate(String plaintext)
+	{
+		if (this.phrases.isEmpty())
+			return new Abbreviator.Result(plaintext, 0);
+
+		// Split the message into words, at every space.
+		int count = 1;
+		for (int i = 0; i < plaintext.length(); i++)
+			if (plaintext.charAt(i) == Abbreviator.SPACE)
+				count++;
+		final int[] starts = new int[count + 1];
+		int w = 0;
+		starts[w++] = 0;
+		for (int i = 0; i < plaintext.length(); i++)
+			if (plaintext.charAt(i) == Abbreviator.SPACE)
+				starts[w++] = i + 1;
+		// Sentinel, as if a space followed the last word.
+		starts[count] = plaintext.length() + 1;
+
+		// Find, from the last word back, the cheapest way to send the rest of the message:
+		// each word as it is, or a phrase starting at it as its abbreviation.
+		final long[] best = new long[count + 1];
+		final int[] next = new int[count];
+		final String[] replacement = new String[count];
+		long original = 0;
+		long keep, time;
+		int node, end, core;
+		boolean last;
+		String abbreviation;
+		for (int i = count - 1; i >= 0; i--)
+		{
+			keep = this.time(plaintext, starts[i], starts[i + 1] - 1);
+			original += keep;
+			best[i] = keep + best[i + 1];
+			next[i] = i + 1;
+
+			// Walk the trie over the words from i, one phrase word at a time.
+			node = CharTrie.ROOT;
+			for (int j = i; j < count && node != CharTrie.NO_NODE; j++)
+			{
+				end = starts[j + 1] - 1;
+				core = Abbreviator.coreEnd(plaintext, starts[j], end);
+				if (core == starts[j])
+					break;
+				for (int k = starts[j]; k < core && node != CharTrie.NO_NODE; k++)
+					node = this.phrases.next(node, plaintext.charAt(k));
+				if (node == CharTrie.NO_NODE)
+					break;
+
+				// A phrase may end at a word that ends with punctuation, but not run on past it.
+				last = core < end;
+				abbreviation = this.phrases.value(node);
+				if (abbreviation != null)
+				{
+					time = this.time(abbreviation, plaintext, core, end) + best[j + 1];
+					if (time < best[i])
+					{
+						best[i] = time;
+						next[i] = j + 1;
+						replacement[i] = abbreviation;
+					}
+				}
+				if (last)
+					break;
+				node = this.phrases.next(node, Abbreviator.SPACE);
+			}
+		}
+
+		if (best[0] == original)
+			return new Abbreviator.Result(plaintext, 0);
+
+		// Rebuild the message with the chosen substitutions.
+		final StringBuilder text = new StringBuilder(plaintext.length());
+		for (int i = 0; i < count; i = next[i])
+		{
+			if (i > 0)
+				text.append(Abbreviator.SPACE);
+			if (replacement[i] == null)
+				text.append(plaintext, starts[i], starts[i + 1] - 1);
+			else
+			{
+				end = starts[next[i]] - 1;
+				text.append(replacement[i]).append(plaintext, Abbreviator.coreEnd(plaintext, starts[next[i] - 1], end), end);
+			}
+		}
+		return new Abbreviator.Result(text.toString(), original - best[0]);
+	}
+
+	/**
+	 * @return the end of the word without its trailing punctuation; start if it has no letters or digits,
+	 *         or if it may hold a prosign, which is never abbreviated.
+	 */
+	private static int coreEnd(CharSequence s, int start, int end)
+	{
+		for (int i = start; i < end; i++)
+			if (s.charAt(i) == Abbreviator.PROSIGN_START)
+				return start;
+		int core = end;
+		while (core > start && !Character.isLetterOrDigit(s.charAt(core - 1)))
+			core--;
+		return core;
+	}
+
+	/**
+	 * @return true if every character of the abbreviation has Morse in the alphabet.
+	 */
+	private boolean encodable(String abbreviation)
+	{
+		if (abbreviation.length() == 0)
+			return false;
+		for (int i = 0; i < abbreviation.length(); i++)
+			if (this.alphabet.get(abbreviation.charAt(i)) == null)
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return on-air time of a phrase of words separated by single spaces, including the gaps between them.
+	 */
+	private long phraseTime(String phrase)
+	{
+		long time = 0;
+		int start = 0;
+		int end;
+		while (start <= phrase.length())
+		{
+			end = phrase.indexOf(Abbreviator.SPACE, start);
+			if (end < 0)
+				end = phrase.length();
+			time += this.time(phrase, start, end);
+			start = end + 1;
+		}
+		return time;
+	}
+
+	/**
+	 * @return on-air time of a word, including the medium gap that separates it from the next word.
+	 */
+	private long time(String word)
+	{
+		return this.time(word, "", 0, 0);
+	}
+
+	private long time(CharSequence s, int start, int end)
+	{
+		return this.time("", s, start, end);
+	}
+
+	/**
+	 * Computes the on-air time of a word made of a prefix followed by a range of characters,
+	 * including the medium gap that separates it from the next word. Words with no Morse
+	 * are not sent, and take no time.
+	 */
+	private long time(String prefix, CharSequence s, int start, int end)
+	{
+		long time = 0;
+		int letters = 0;
+		Morse morse;
+		for (int i = 0; i < prefix.length() + end - start; i++)
+		{
+			morse = this.alphabet.get(i < prefix.length() ? prefix.charAt(i) : s.charAt(start + i - prefix.length()));
+			if (morse == null)
+				continue;
+			if (letters++ > 0)
+				time += this.short_gap;
+			for (int k = 0; k < morse.length(); k++)
+				time += (k > 0 ? this.gap : 0) + (morse.isDah(k) ? this.dah : this.dit);
+		}
+		return letters > 0 ? time + this.medium_gap : 0;
+	}
+
+	/**
+	 * Default table of common words and phrases, and their standard abbreviations and Q-codes.
+	 */
+	public static final Map<String, String> DEFAULT_ABBREVIATIONS;
+	static
+	{
+		final String[][] table =
+		{
+			{ "about", "ABT" },
+			{ "again", "AGN" },
+			{ "and", "ES" },
+			{ "are", "R" },
+			{ "before", "BFR" },
+			{ "best regards", "73" },
+			{ "for", "FER" },
+			{ "frequency", "QRG" },
+			{ "good", "GD" },
+			{ "good afternoon", "GA" },
+			{ "good evening", "GE" },
+			{ "good morning", "GM" },
+			{ "good night", "GN" },
+			{ "here", "HR" },
+			{ "how", "HW" },
+			{ "later", "LTR" },
+			{ "location", "QTH" },
+			{ "message", "MSG" },
+			{ "number", "NR" },
+			{ "please", "PSE" },
+			{ "received", "RCVD" },
+			{ "regards", "RGDS" },
+			{ "repeat", "RPT" },
+			{ "see you", "CU" },
+			{ "see you later", "CUL" },
+			{ "signal", "SIG" },
+			{ "sorry", "SRI" },
+			{ "thank you", "TU" },
+			{ "thanks", "TNX" },
+			{ "today", "TDY" },
+			{ "tomorrow", "TMW" },
+			{ "wait", "QRX" },
+			{ "weather", "WX" },
+			{ "with", "WID" },
+			{ "would", "WUD" },
+			{ "you", "U" },
+			{ "your", "UR" },
+			{ "you're", "UR" },
+		};
+		final HashMap<String, String> abbreviations = new HashMap<String, String>(table.length * 2);
+		for (int i = 0; i < table.length; i++)
+			abbreviations.put(table[i][0], table[i][1]);
+		DEFAULT_ABBREVIATIONS = Collections.unmodifiableMap(abbreviations);
+	}
+
+	private static final char SPACE			= ' ';
+	private static final char PROSIGN_START	= '<';
+}
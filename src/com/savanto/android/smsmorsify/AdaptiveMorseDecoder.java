@@ -0,0 +1,172 @@
+package com.savanto.android.smsmorsify;
+
+/**
+ * Decodes raw on/off durations whose timing is only approximately known, such as
+ * jittered vibration logs or human-keyed Morse.
+ * Each duration class (dit and dah for on durations; intra-symbol, short_gap and
+ * medium_gap for off durations) is tracked by a running centroid, seeded from the
+ * expected timing. Every duration is classified by the nearest centroid, using
+ * thresholds at the geometric mean of neighbouring centroids, and then pulls that
+ * centroid towards itself. Classification is online and runs in constant memory.
+ *
+ * @author savanto
+ */
+public class AdaptiveMorseDecoder
+{
+	private final MorseDecoder decoder;
+	private final long dit;
+	private final int short_gap;
+	private final int medium_gap;
+
+	/**
+	 * Creates a decoder for the full default alphabet, seeded with the default timing.
+	 */
+	public AdaptiveMorseDecoder()
+	{
+		this(new MorseDecoder(), MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP);
+	}
+
+	/**
+	 * @param decoder - the symbol table used to decode classified signals.
+	 * @param dit - expected duration of a dot; dashes are expected to be three dots long.
+	 * @param short_gap - expected gap length between Morse letters, in dots.
+	 * @param medium_gap - expected gap length between Morse words, in dots.
+	 */
+	public AdaptiveMorseDecoder(MorseDecoder decoder, long dit, int short_gap, int medium_gap)
+	{
+		this.decoder = decoder;
+		this.dit = dit;
+		this.short_gap = short_gap;
+		this.medium_gap = medium_gap;
+	}
+
+	/**
+	 * Decodes a whole pattern.
+	 * @param pattern - alternating off/on durations, starting with the wait, which is ignored.
+	 * @return the plaintext, with words separated by single spaces.
+	 */
+	public String decode(long[] pattern)
+	{
+		final Session session = this.newSession();
+		for (int i = 1; i < pattern.length; i++)
+			session.append(pattern[i], i % 2 == 1);
+		return session.finish();
+	}
+
+	/**
+	 * @return a new decoding session, for durations that arrive one at a time.
+	 */
+	public Session newSession()
+	{
+		return new Session();
+	}
+
+	/**
+	 * Classifier state for one stream of durations. Not thread-safe.
+	 */
+	public class Session
+	{
+		private final MorseDecoder.Decoding decoding;
+		/**
+		 * Running centroid of each duration class, indexed by DIT, DAH, INTRA_GAP, SHORT_GAP, MEDIUM_GAP.
+		 */
+		private final double[] centroids = new double[5];
+
+		private Session()
+		{
+			final AdaptiveMorseDecoder parent = AdaptiveMorseDecoder.this;
+			this.decoding = parent.decoder.newDecoding(AdaptiveMorseDecoder.INITIAL_CAPACITY);
+			this.centroids[DIT] = parent.dit;
+			this.centroids[DAH] = parent.dit * 3;
+			this.centroids[INTRA_GAP] = parent.dit;
+			this.centroids[SHORT_GAP] = parent.dit * parent.short_gap;
+			this.centroids[MEDIUM_GAP] = parent.dit * parent.medium_gap;
+		}
+
+		/**
+		 * Classifies the next duration.
+		 * @param duration - duration of the segment.
+		 * @param on - true for a signal, false for a gap.
+		 */
+		public void append(long duration, boolean on)
+		{
+			// Classify the duration by its nearest centroid.
+			final int type;
+			if (on)
+				type = duration > AdaptiveMorseDecoder.threshold(this.centroids[DIT], this.centroids[DAH]) ? DAH : DIT;
+			else if (duration > AdaptiveMorseDecoder.threshold(this.centroids[SHORT_GAP], this.centroids[MEDIUM_GAP]))
+				type = MEDIUM_GAP;
+			else if (duration > AdaptiveMorseDecoder.threshold(this.centroids[INTRA_GAP], this.centroids[SHORT_GAP]))
+				type = SHORT_GAP;
+			else
+				type = INTRA_GAP;
+
+			// Pull the centroid towards the duration. Its relative change is a change
+			// of tempo, which carries over, damped, to the other centroids.
+			final double previous = this.centroids[type];
+			this.centroids[type] += AdaptiveMorseDecoder.TRACKING_RATE * (duration - previous);
+			final double tempo = Math.pow(this.centroids[type] / previous, AdaptiveMorseDecoder.COUPLING);
+			for (int i = 0; i < this.centroids.length; i++)
+				if (i != type)
+					this.centroids[i] *= tempo;
+
+			switch (type)
+			{
+				case DIT:
+					this.decoding.signal(false);
+					break;
+				case DAH:
+					this.decoding.signal(true);
+					break;
+				case SHORT_GAP:
+					this.decoding.endLetter();
+					break;
+				case MEDIUM_GAP:
+					this.decoding.endWord();
+					break;
+			}
+		}
+
+		/**
+		 * @return the current estimate of the duration of a dot.
+		 */
+		public double getDitEstimate()
+		{
+			return this.centroids[DIT];
+		}
+
+		/**
+		 * @return the plaintext decoded from all durations appended.
+		 */
+		public String finish()
+		{
+			return this.decoding.finish();
+		}
+	}
+
+	/**
+	 * @return the boundary between two duration classes: the geometric mean of their centroids.
+	 */
+	private static double threshold(double lower, double upper)
+	{
+		return Math.sqrt(lower * upper);
+	}
+
+	// Duration classes.
+	private static final int DIT		= 0;
+	private static final int DAH		= 1;
+	private static final int INTRA_GAP	= 2;
+	private static final int SHORT_GAP	= 3;
+	private static final int MEDIUM_GAP	= 4;
+
+	/**
+	 * Fraction of the way a centroid moves towards each duration of its class.
+	 */
+	private static final double TRACKING_RATE	= 0.2;
+	/**
+	 * Exponent applied to a centroid's relative change before scaling the other centroids:
+	 * 0 tracks each class independently, 1 locks the ratios between classes.
+	 */
+	private static final double COUPLING		= 0.75;
+	private static final int INITIAL_CAPACITY	= 64;
+}
@@ -0,0 +1,155 @@
+package com.savanto.android.smsmorsify;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.util.Log;
+
+/**
+ * PatternSink that plays patterns as a Morse sidetone through a streaming AudioTrack.
+ * play() returns at once, as the Vibrator does: patterns are rendered by a ToneSynthesizer
+ * on a writer thread of the sink's own, which blocks on the AudioTrack as its buffer fills.
+ * Samples are written at most one buffer at a time, so that once cancel() has flushed the
+ * track, the writer can finish its current write without blocking and see the cancellation.
+ *
+ * @author savanto
+ */
+public class AudioSink implements PatternSink
+{
+	private final AudioTrack track;
+	/**
+	 * Most samples handed to the AudioTrack in one write: its buffer size.
+	 */
+	private final int maxWrite;
+	private final BlockingQueue<long[]> patterns = new LinkedBlockingQueue<long[]>();
+	private final Thread thread;
+	private volatile ToneSynthesizer synthesizer;
+
+	/**
+	 * Incremented on each cancel(), so that the writer drops the pattern it is rendering.
+	 */
+	private final AtomicInteger generation = new AtomicInteger(0);
+
+	/**
+	 * @param synthesizer - renders the patterns; its sample rate is used for the AudioTrack.
+	 */
+	public AudioSink(ToneSynthesizer synthesizer)
+	{
+		this.synthesizer = synthesizer;
+		final int sampleRate = synthesizer.getSampleRate();
+		final int bufferSize = AudioTrack.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_16BIT);
+		this.track = new AudioTrack(AudioManager.STREAM_NOTIFICATION, sampleRate, AudioFormat.CHANNEL_OUT_MONO,
+				AudioFormat.ENCODING_PCM_16BIT, bufferSize, AudioTrack.MODE_STREAM);
+		// 16-bit samples; getMinBufferSize() returns an error code below 0.
+		this.maxWrite = Math.max(AudioSink.MIN_WRITE, bufferSize / 2);
+		this.thread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				AudioSink.this.loop();
+			}
+		}, "AudioSink");
+		this.thread.start();
+	}
+
+	/**
+	 * Replaces the synthesizer, e.g. when the timing changes. Applies from the next pattern.
+	 * The sample rate must stay the same.
+	 * @param synthesizer - renders the patterns.
+	 */
+	public void setSynthesizer(ToneSynthesizer synthesizer)
+	{
+		this.synthesizer = synthesizer;
+	}
+
+	@Override
+	public void play(long[] pattern)
+	{
+		this.patterns.offer(pattern);
+	}
+
+	@Override
+	public void cancel()
+	{
+		this.generation.incrementAndGet();
+		this.patterns.clear();
+		this.track.pause();
+		this.track.flush();
+		// Wakes a write() blocked on the track, which pause() alone does not.
+		this.track.stop();
+	}
+
+	/**
+	 * Stops the writer thread and releases the AudioTrack. The sink cannot be used afterwards.
+	 * Waits a bounded time for the writer, as this is called on the main thread.
+	 */
+	public void release()
+	{
+		this.cancel();
+		this.thread.interrupt();
+		try
+		{
+			this.thread.join(AudioSink.RELEASE_TIMEOUT);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		if (this.thread.isAlive())
+			Log.w(AudioSink.TAG, "Writer thread did not stop within " + AudioSink.RELEASE_TIMEOUT + " ms");
+		this.track.release();
+	}
+
+	private void loop()
+	{
+		long[] pattern;
+		while (true)
+		{
+			try
+			{
+				pattern = this.patterns.take();
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+
+			// Render the pattern, unless it is cancelled on the way.
+			final int generation = this.generation.get();
+			this.track.play();
+			this.synthesizer.render(pattern, new PcmSink()
+			{
+				@Override
+				public boolean write(short[] samples, int offset, int length)
+				{
+					final AudioSink sink = AudioSink.this;
+					int n;
+					for (int end = offset + length; offset < end; offset += n)
+					{
+						if (generation != sink.generation.get())
+							return false;
+						n = Math.min(sink.maxWrite, end - offset);
+						if (sink.track.write(samples, offset, n) < 0)
+							return false;
+					}
+					return true;
+				}
+			});
+			// Drop what was written after a cancellation, rather than play it before the next pattern.
+			if (generation != this.generation.get())
+			{
+				this.track.pause();
+				this.track.flush();
+			}
+		}
+	}
+
+	private static final String TAG				= "AudioSink";
+	private static final long RELEASE_TIMEOUT	= 1000;
+	private static final int MIN_WRITE			= 256;
+}
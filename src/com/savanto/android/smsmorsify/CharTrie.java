@@ -0,0 +1,180 @@
+package com.savanto.android.smsmorsify;
+
+import java.util.Map;
+
+/**
+ * Immutable trie over the keys of a dictionary, such as the prosigns "<SOS>" or the
+ * phrases of an abbreviation table, for matching keys in plaintext in a single pass.
+ * ASCII letters are matched case-insensitively. Nodes are ints, the root being ROOT;
+ * each node keeps its few child labels in a short array that is scanned linearly.
+ *
+ * @param <V> - type of the values of the dictionary.
+ * @author savanto
+ */
+final class CharTrie<V>
+{
+	static final int ROOT		= 0;
+	static final int NO_NODE	= -1;
+
+	private final char[][] labels;
+	private final int[][] children;
+	private final Object[] values;
+	private final int size;
+	private final int maxLength;
+
+	/**
+	 * @param dictionary - keys and their values.
+	 */
+	CharTrie(Map<String, ? extends V> dictionary)
+	{
+		// Upper bound on the number of nodes: one per key character, plus the root.
+		int capacity = 1;
+		int maxLength = 0;
+		for (String key : dictionary.keySet())
+		{
+			capacity += key.length();
+			maxLength = Math.max(maxLength, key.length());
+		}
+		this.maxLength = maxLength;
+
+		char[][] labels = new char[capacity][];
+		int[][] children = new int[capacity][];
+		Object[] values = new Object[capacity];
+		labels[CharTrie.ROOT] = new char[0];
+		children[CharTrie.ROOT] = new int[0];
+		int size = 1;
+
+		int node, child;
+		char c;
+		for (Map.Entry<String, ? extends V> entry : dictionary.entrySet())
+		{
+			node = CharTrie.ROOT;
+			for (int i = 0; i < entry.getKey().length(); i++)
+			{
+				c = CharTrie.fold(entry.getKey().charAt(i));
+				child = CharTrie.find(labels[node], children[node], c);
+				if (child == CharTrie.NO_NODE)
+				{
+					child = size++;
+					labels[child] = new char[0];
+					children[child] = new int[0];
+					// Append the new child to its parent.
+					final int n = labels[node].length;
+					char[] l = new char[n + 1];
+					int[] ch = new int[n + 1];
+					System.arraycopy(labels[node], 0, l, 0, n);
+					System.arraycopy(children[node], 0, ch, 0, n);
+					l[n] = c;
+					ch[n] = child;
+					labels[node] = l;
+					children[node] = ch;
+				}
+				node = child;
+			}
+			values[node] = entry.getValue();
+		}
+
+		this.labels = labels;
+		this.children = children;
+		this.values = values;
+		this.size = size;
+	}
+
+	/**
+	 * @param node - current node.
+	 * @param c - next plaintext character.
+	 * @return the child of node for c, or NO_NODE.
+	 */
+	int next(int node, char c)
+	{
+		return CharTrie.find(this.labels[node], this.children[node], CharTrie.fold(c));
+	}
+
+	/**
+	 * @param node - a node.
+	 * @return the value of the key ending at node, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	V value(int node)
+	{
+		return (V) this.values[node];
+	}
+
+	/**
+	 * @param node - a node.
+	 * @return true if no longer key continues from node.
+	 */
+	boolean isLeaf(int node)
+	{
+		return this.labels[node].length == 0;
+	}
+
+	/**
+	 * @return true if the dictionary is empty.
+	 */
+	boolean isEmpty()
+	{
+		return this.isLeaf(CharTrie.ROOT);
+	}
+
+	/**
+	 * @return the number of nodes, which are numbered from ROOT to size() - 1.
+	 */
+	int size()
+	{
+		return this.size;
+	}
+
+	/**
+	 * @param node - a node.
+	 * @return the number of children of node.
+	 */
+	int childCount(int node)
+	{
+		return this.children[node].length;
+	}
+
+	/**
+	 * @param node - a node.
+	 * @param i - index of a child, below childCount(node).
+	 * @return the i-th child of node.
+	 */
+	int childAt(int node, int i)
+	{
+		return this.children[node][i];
+	}
+
+	/**
+	 * @param node - a node.
+	 * @param i - index of a child, below childCount(node).
+	 * @return the character leading to the i-th child of node, folded to uppercase.
+	 */
+	char labelAt(int node, int i)
+	{
+		return this.labels[node][i];
+	}
+
+	/**
+	 * @return length of the longest key.
+	 */
+	int maxLength()
+	{
+		return this.maxLength;
+	}
+
+	private static int find(char[] labels, int[] children, char c)
+	{
+		for (int i = 0; i < labels.length; i++)
+			if (labels[i] == c)
+				return children[i];
+		return CharTrie.NO_NODE;
+	}
+
+	/**
+	 * Folds ASCII lowercase letters to uppercase.
+	 */
+	private static char fold(char c)
+	{
+		return (c >= 'a' && c <= 'z') ? (char) (c - 'a' + 'A') : c;
+	}
+}
@@ -0,0 +1,169 @@
+package com.savanto.android.smsmorsify;
+
+/**
+ * Plays long vibration patterns as a sequence of bounded chunks, split at word gaps,
+ * submitted back to back at precise times. Playback can be cancelled between chunks,
+ * so a long message can be stopped without holding one giant pattern in the Vibrator.
+ *
+ * Chunks are cut from a pattern that is already fully encoded, so chunking bounds how
+ * much the Vibrator holds and how soon playback stops, not how soon it starts; that
+ * is bounded by the time to encode the message, which the start delay covers.
+ *
+ * @author savanto
+ */
+public class ChunkedPlayer
+{
+	private final PatternSink sink;
+	private final PlaybackClock clock;
+	private final long chunkDuration;
+
+	private volatile boolean cancelled = false;
+	private volatile Thread playingThread;
+
+	/**
+	 * @param sink - device that plays each chunk.
+	 * @param clock - time source for scheduling chunks.
+	 * @param chunkDuration - minimum duration of a chunk, in milliseconds, before it is split at the next word gap.
+	 *                        0 sends every word as a chunk of its own.
+	 */
+	public ChunkedPlayer(PatternSink sink, PlaybackClock clock, long chunkDuration)
+	{
+		this.sink = sink;
+		this.clock = clock;
+		this.chunkDuration = chunkDuration;
+	}
+
+	/**
+	 * Plays a pattern chunk by chunk, blocking until it has finished playing.
+	 * @param pattern - alternating off/on durations, starting with off, as produced by MorseCode.toPattern().
+	 * @param splitGap - off durations at least this long are word gaps, at which the pattern may be split.
+	 * @return true if the whole pattern was played, false if playback was cancelled.
+	 */
+	public boolean play(long[] pattern, long splitGap)
+	{
+		this.playingThread = Thread.currentThread();
+		try
+		{
+			long deadline = this.clock.uptimeMillis();
+			int start = 0;
+			int end;
+			long[] chunk;
+			while (start < pattern.length)
+			{
+				// Wait for the previous chunk to finish.
+				if (!this.waitUntil(deadline))
+					return false;
+
+				end = ChunkedPlayer.nextChunkEnd(pattern, start, splitGap, this.chunkDuration);
+				// Copied by hand, as Arrays.copyOfRange() needs API 9.
+				chunk = new long[end - start];
+				System.arraycopy(pattern, start, chunk, 0, chunk.length);
+				// Make up for a late wake-up by shortening the leading gap.
+				chunk[0] = Math.max(0, chunk[0] - (this.clock.uptimeMillis() - deadline));
+				this.sink.play(chunk);
+
+				deadline += ChunkedPlayer.duration(pattern, start, end);
+				start = end;
+			}
+			// Wait for the last chunk to finish.
+			return this.waitUntil(deadline);
+		}
+		finally
+		{
+			this.playingThread = null;
+		}
+	}
+
+	/**
+	 * Waits for the time a pattern may start, blocking until it is reached.
+	 * Cancelling the player ends the wait, as it ends playback.
+	 * @param startTime - clock time before which playback must not start.
+	 * @return true if the start time was reached, false if playback was cancelled.
+	 */
+	public boolean waitForStart(long startTime)
+	{
+		this.playingThread = Thread.currentThread();
+		try
+		{
+			return this.waitUntil(startTime);
+		}
+		finally
+		{
+			this.playingThread = null;
+		}
+	}
+
+	/**
+	 * Stops playback: the current chunk is cancelled and no further chunks are sent,
+	 * or the wait for the start time ends. Once cancelled, the player stays cancelled.
+	 */
+	public void cancel()
+	{
+		this.cancelled = true;
+		this.sink.cancel();
+		Thread thread = this.playingThread;
+		if (thread != null)
+			thread.interrupt();
+	}
+
+	/**
+	 * @return true if cancel() has been called.
+	 */
+	public boolean isCancelled()
+	{
+		return this.cancelled;
+	}
+
+	/**
+	 * Sleeps until the given time, unless playback is cancelled.
+	 * @param deadline - clock time to wait for.
+	 * @return false if playback was cancelled.
+	 */
+	private boolean waitUntil(long deadline)
+	{
+		long remaining;
+		while (!this.cancelled && (remaining = deadline - this.clock.uptimeMillis()) > 0)
+		{
+			try
+			{
+				this.clock.sleep(remaining);
+			}
+			catch (InterruptedException e)
+			{
+				// Check the cancelled flag. An interrupt meant for an earlier player,
+				// sent as it finished, is cleared by the sleep and otherwise ignored.
+			}
+		}
+		return !this.cancelled;
+	}
+
+	/**
+	 * Finds the end of the chunk beginning at start: the first word gap after
+	 * at least chunkDuration of pattern, or the end of the pattern.
+	 * Chunks always begin with an off duration and end with an on duration.
+	 * @return index after the last element of the chunk.
+	 */
+	static int nextChunkEnd(long[] pattern, int start, long splitGap, long chunkDuration)
+	{
+		long duration = pattern[start];
+		for (int i = start + 1; i < pattern.length; i++)
+		{
+			// Off durations are at even indices.
+			if (i % 2 == 0 && pattern[i] >= splitGap && duration >= chunkDuration)
+				return i;
+			duration += pattern[i];
+		}
+		return pattern.length;
+	}
+
+	/**
+	 * @return the sum of pattern durations from start, inclusive, to end, exclusive.
+	 */
+	static long duration(long[] pattern, int start, int end)
+	{
+		long duration = 0;
+		for (int i = start; i < end; i++)
+			duration += pattern[i];
+		return duration;
+	}
+}
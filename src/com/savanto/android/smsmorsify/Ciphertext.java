@@ -0,0 +1,148 @@
+package com.savanto.android.smsmorsify;
+
+/**
+ * A message encoded into Morse letters, split into words, as produced by MorseEncoder.
+ * The letters of all words are held in one flat array, with the end of each word
+ * marked by an index, and the length of the vibration pattern is computed once.
+ * Instances are immutable, so they may be shared between threads and cached.
+ *
+ * @author savanto
+ */
+public final class Ciphertext
+{
+	private final Morse[] letters;
+	private final int[] wordEnds;
+	private final int short_gap;
+	private final int medium_gap;
+	private final int patternLength;
+
+	/**
+	 * @param letters - the letters of every word, in order; not copied.
+	 * @param wordEnds - for each word, the index in letters after its last letter; not copied.
+	 * @param short_gap - the gap length between Morse letters, in dots.
+	 * @param medium_gap - the gap length between Morse words, in dots.
+	 */
+	Ciphertext(Morse[] letters, int[] wordEnds, int short_gap, int medium_gap)
+	{
+		this.letters = letters;
+		this.wordEnds = wordEnds;
+		this.short_gap = short_gap;
+		this.medium_gap = medium_gap;
+
+		// Each letter of n signals takes n durations and n - 1 gaps, followed by
+		// a letter or word gap; the gap after the last letter of the message is
+		// replaced by the leading wait.
+		int length = 0;
+		for (int i = 0; i < letters.length; i++)
+			length += 2 * letters[i].length();
+		this.patternLength = length;
+	}
+
+	/**
+	 * @return the number of words, including empty ones.
+	 */
+	public int getWordCount()
+	{
+		return this.wordEnds.length;
+	}
+
+	/**
+	 * @return the number of letters, in all words.
+	 */
+	public int getLetterCount()
+	{
+		return this.letters.length;
+	}
+
+	/**
+	 * @return the exact number of elements toPattern() produces.
+	 */
+	public int patternLength()
+	{
+		return this.patternLength;
+	}
+
+	/**
+	 * @return the letters of each word separated by spaces, one word per line.
+	 */
+	@Override
+	public String toString()
+	{
+		final StringBuilder s = new StringBuilder();
+		int letter = 0;
+		for (int i = 0; i < this.wordEnds.length; i++)
+		{
+			for (; letter < this.wordEnds[i]; letter++)
+				s.append(this.letters[letter]).append(' ');
+			s.append('\n');
+		}
+		return s.toString();
+	}
+
+	/**
+	 * Converts the ciphertext into a vibration pattern, copying each letter from precompiled templates.
+	 * @param wait - duration before the first signal.
+	 * @param templates - durations of the letters; letter and word gaps are multiples of its gap.
+	 * @return alternating off/on durations, starting with the wait.
+	 */
+	public long[] toPattern(long wait, PatternTemplates templates)
+	{
+		long[] pattern = new long[this.patternLength];
+		this.toPattern(wait, templates, pattern, 0);
+		return pattern;
+	}
+
+	/**
+	 * Writes the vibration pattern into a caller-supplied array, copying each letter from precompiled templates.
+	 * @param wait - duration before the first signal.
+	 * @param templates - durations of the letters; letter and word gaps are multiples of its gap.
+	 * @param pattern - destination array, with at least patternLength() elements from offset.
+	 * @param offset - index in pattern at which to write the first element.
+	 * @return the number of elements written, which equals patternLength().
+	 */
+	public int toPattern(long wait, PatternTemplates templates, long[] pattern, int offset)
+	{
+		final long short_gap = templates.getGap() * this.short_gap;
+		final long medium_gap = templates.getGap() * this.medium_gap;
+
+		// Leave room for the wait, which is written along with the first signal.
+		int p = offset + 1;
+		long lead = wait;
+
+		// Traverse ciphertext
+		boolean first = true;
+		int start = 0;
+		int end;
+		for (int i = 0; i < this.wordEnds.length; i++, start = end)
+		{
+			end = this.wordEnds[i];
+			if (start == end)
+			{
+				// Empty words collapse into the surrounding medium gap.
+				// A leading empty word replaces the wait with a medium gap.
+				if (first)
+					lead = medium_gap;
+				continue;
+			}
+			// Traverse letters in word.
+			for (int j = start; j < end; j++)
+			{
+				// Add the wait before the first letter, then medium gap
+				// between words and short gap between letters.
+				if (first)
+					pattern[offset] = lead;
+				else
+					pattern[p++] = (j == start ? medium_gap : short_gap);
+				first = false;
+
+				// Copy the signals of the letter, with the gaps between them.
+				p = templates.write(this.letters[j], pattern, p);
+			}
+		}
+
+		// Nothing is written when there is nothing to transmit.
+		if (first)
+			return 0;
+		return p - offset;
+	}
+}
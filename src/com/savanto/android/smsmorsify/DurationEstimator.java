@@ -0,0 +1,159 @@
+package com.savanto.android.smsmorsify;
+
+/**
+ * Computes how long a message takes to send, without building its pattern: the letters
+ * are tokenized as for encoding, and their precompiled durations added up with the gaps
+ * between them, in a single pass. The result is exactly the sum of the elements of
+ * MorseCode.toPattern() for the same settings.
+ * Messages over a time budget can be cut short at a word boundary, ending with the
+ * "End of message" prosign AR, so that they fit.
+ *
+ * Instances are immutable, and can be shared between threads.
+ *
+ * @author savanto
+ */
+public class DurationEstimator
+{
+	private final MorseAlphabet alphabet;
+	private final PatternTemplates templates;
+	private final long short_gap;
+	private final long medium_gap;
+	private final long wait;
+
+	/**
+	 * @param alphabet - the alphabet used to look up plaintext characters.
+	 * @param templates - durations of the letters; letter and word gaps are multiples of its gap.
+	 * @param short_gap - the gap length between Morse letters.
+	 * @param medium_gap - the gap length between Morse words.
+	 * @param wait - duration before the first signal.
+	 */
+	public DurationEstimator(MorseAlphabet alphabet, PatternTemplates templates, int short_gap, int medium_gap, long wait)
+	{
+		this.alphabet = alphabet;
+		this.templates = templates;
+		this.short_gap = templates.getGap() * short_gap;
+		this.medium_gap = templates.getGap() * medium_gap;
+		this.wait = wait;
+	}
+
+	/**
+	 * @param plaintext - the plaintext message.
+	 * @return the total duration of the pattern of the message.
+	 */
+	public long estimate(CharSequence plaintext)
+	{
+		final Tally tally = new Tally();
+		final MorseTokenizer tokenizer = new MorseTokenizer(this.alphabet, tally);
+		tokenizer.write(plaintext);
+		tokenizer.finish();
+		return tally.time;
+	}
+
+	/**
+	 * Cuts a message short to fit a time budget. The message is cut after the last whole word
+	 * for which the words so far, followed by the prosign AR, fit the budget. If not even the
+	 * first word fits, only the prosign is left, which may itself be over a very small budget.
+	 * Without prosigns, the message is just cut.
+	 * @param plaintext - the plaintext message.
+	 * @param budget - the longest duration allowed.
+	 * @return the plaintext unchanged if it fits the budget, or else the words that fit, followed by AR.
+	 */
+	public String truncate(String plaintext, long budget)
+	{
+		final Morse end = this.alphabet.getProsign(MorseCode.PROSIGN_AR);
+		final Tally tally = new Tally();
+		final Tally trial = new Tally();
+		final MorseTokenizer tokenizer = new MorseTokenizer(this.alphabet, tally);
+
+		int cut = -1;
+		boolean started = false;
+		char c;
+		for (int i = 0; i < plaintext.length(); i++)
+		{
+			c = plaintext.charAt(i);
+			tokenizer.write(c);
+			// Leading whitespace is skipped, as the tokenizer does.
+			started |= c > DurationEstimator.SPACE;
+			// A word has just ended: prosigns cannot span spaces, so it ends here.
+			if (started && c == DurationEstimator.SPACE)
+			{
+				// Try ending the message here, as truncated messages end.
+				trial.set(tally);
+				if (end != null)
+					trial.onLetter(end);
+				trial.finish();
+				if (trial.time <= budget)
+					cut = i;
+			}
+			// Words only add time: once over budget, no longer cut can fit.
+			if (tally.time > budget)
+				break;
+		}
+		if (tally.time <= budget)
+		{
+			tokenizer.finish();
+			if (tally.time <= budget)
+				return plaintext;
+		}
+
+		final String marker = end != null ? MorseCode.PROSIGN_AR : "";
+		return cut < 0 ? marker : plaintext.substring(0, cut + 1) + marker;
+	}
+
+	/**
+	 * Adds up the pattern of a message from its tokens, as MorseCode.toPattern() lays it out.
+	 */
+	private class Tally implements MorseTokenizer.Listener
+	{
+		private long time = 0;
+		private long lead = DurationEstimator.this.wait;
+		private boolean first = true;
+		private boolean letterInWord = false;
+
+		@Override
+		public void onLetter(Morse morse)
+		{
+			final DurationEstimator estimator = DurationEstimator.this;
+			if (this.first)
+				this.time += this.lead;
+			else
+				this.time += this.letterInWord ? estimator.short_gap : estimator.medium_gap;
+			this.first = false;
+			this.letterInWord = true;
+			this.time += estimator.templates.duration(morse);
+		}
+
+		@Override
+		public void onWordEnd()
+		{
+			// A leading empty word replaces the wait with a medium gap.
+			if (this.first)
+				this.lead = DurationEstimator.this.medium_gap;
+			this.letterInWord = false;
+		}
+
+		/**
+		 * Sends the tokens that MorseTokenizer.finish() sends after the last word.
+		 */
+		void finish()
+		{
+			this.onWordEnd();
+			final Morse prosign = DurationEstimator.this.alphabet.getProsign(MorseCode.PROSIGN_SK);
+			if (prosign != null)
+			{
+				this.onLetter(prosign);
+				this.onWordEnd();
+			}
+		}
+
+		void set(Tally other)
+		{
+			this.time = other.time;
+			this.lead = other.lead;
+			this.first = other.first;
+			this.letterInWord = other.letterInWord;
+		}
+	}
+
+	private static final char SPACE	= ' ';
+}
@@ -0,0 +1,105 @@
+package com.savanto.android.smsmorsify;
+
+import java.util.HashMap;
+
+/**
+ * Aho-Corasick automaton over a set of keywords, for finding whether any of them occurs
+ * in a text in a single pass, whatever the number of keywords. The keywords are kept in
+ * a CharTrie, so ASCII letters match case-insensitively; each node also gets a failure
+ * link to the node of its longest proper suffix that is a prefix of some keyword, which
+ * the matcher follows when the text leaves the trie instead of restarting.
+ *
+ * Instances are immutable, and can be shared between threads.
+ *
+ * @author savanto
+ */
+final class KeywordMatcher
+{
+	private final CharTrie<Boolean> trie;
+	/**
+	 * Failure link of each node; the root links to itself.
+	 */
+	private final int[] fail;
+	/**
+	 * True for each node at which a keyword ends, itself or through its failure links.
+	 */
+	private final boolean[] matches;
+
+	/**
+	 * @param keywords - the keywords to find.
+	 */
+	KeywordMatcher(String[] keywords)
+	{
+		final HashMap<String, Boolean> dictionary = new HashMap<String, Boolean>();
+		for (String keyword : keywords)
+			dictionary.put(keyword, Boolean.TRUE);
+		final CharTrie<Boolean> trie = new CharTrie<Boolean>(dictionary);
+		final int size = trie.size();
+		final int[] fail = new int[size];
+		final boolean[] matches = new boolean[size];
+
+		// Breadth-first, so that the links of all shorter prefixes are set before they are followed.
+		final int[] queue = new int[size];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = CharTrie.ROOT;
+		fail[CharTrie.ROOT] = CharTrie.ROOT;
+		int node, child, f, next;
+		char c;
+		while (head < tail)
+		{
+			node = queue[head++];
+			for (int i = 0; i < trie.childCount(node); i++)
+			{
+				child = trie.childAt(node, i);
+				c = trie.labelAt(node, i);
+				if (node == CharTrie.ROOT)
+					fail[child] = CharTrie.ROOT;
+				else
+				{
+					f = fail[node];
+					while (f != CharTrie.ROOT && trie.next(f, c) == CharTrie.NO_NODE)
+						f = fail[f];
+					next = trie.next(f, c);
+					fail[child] = next == CharTrie.NO_NODE ? CharTrie.ROOT : next;
+				}
+				matches[child] = trie.value(child) != null || matches[fail[child]];
+				queue[tail++] = child;
+			}
+		}
+
+		this.trie = trie;
+		this.fail = fail;
+		this.matches = matches;
+	}
+
+	/**
+	 * @return true if there are no keywords.
+	 */
+	boolean isEmpty()
+	{
+		return this.trie.isEmpty();
+	}
+
+	/**
+	 * @param text - the text to search.
+	 * @return true if a keyword occurs anywhere in the text.
+	 */
+	boolean containsAny(CharSequence text)
+	{
+		final int length = text.length();
+		int node = CharTrie.ROOT;
+		int next;
+		char c;
+		for (int i = 0; i < length; i++)
+		{
+			c = text.charAt(i);
+			while ((next = this.trie.next(node, c)) == CharTrie.NO_NODE && node != CharTrie.ROOT)
+				node = this.fail[node];
+			node = next == CharTrie.NO_NODE ? CharTrie.ROOT : next;
+			if (this.matches[node])
+				return true;
+		}
+		return false;
+	}
+}
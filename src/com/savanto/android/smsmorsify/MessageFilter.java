@@ -0,0 +1,103 @@
+package com.savanto.android.smsmorsify;
+
+import java.util.ArrayList;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Decides which incoming messages are played, from rules the user types in the
+ * settings. A message is played if its sender is not blocked, its sender is allowed
+ * (when any senders are allowed), its text contains one of the keywords (when any
+ * are given), and its text matches none of the ignore patterns.
+ * The rules are compiled once, when the filter is built: senders into SenderSets,
+ * keywords into a KeywordMatcher that scans the text in a single pass, and
+ * patterns into java.util.regex Patterns. Keywords and patterns ignore case.
+ *
+ * A filter is immutable and may be shared between threads.
+ *
+ * @author savanto
+ */
+public final class MessageFilter
+{
+	private final SenderSet allowedSenders;
+	private final SenderSet blockedSenders;
+	private final KeywordMatcher keywords;
+	private final Pattern[] patterns;
+
+	/**
+	 * @param allowedSenders - senders whose messages are played, separated by commas or new lines; empty for all.
+	 * @param blockedSenders - senders whose messages are never played, separated by commas or new lines.
+	 * @param keywords - words or phrases of which a message must contain one, one per line; empty for all.
+	 * @param patterns - regular expressions for messages never played, one per line.
+	 *                   Invalid expressions are skipped.
+	 */
+	public MessageFilter(String allowedSenders, String blockedSenders, String keywords, String patterns)
+	{
+		this.allowedSenders = new SenderSet(MessageFilter.split(allowedSenders, MessageFilter.SENDER_SEPARATORS));
+		this.blockedSenders = new SenderSet(MessageFilter.split(blockedSenders, MessageFilter.SENDER_SEPARATORS));
+
+		this.keywords = new KeywordMatcher(MessageFilter.split(keywords, MessageFilter.LINE_SEPARATORS));
+
+		final ArrayList<Pattern> compiled = new ArrayList<Pattern>();
+		for (String pattern : MessageFilter.split(patterns, MessageFilter.LINE_SEPARATORS))
+		{
+			try
+			{
+				compiled.add(Pattern.compile(pattern, Pattern.CASE_INSENSITIVE));
+			}
+			catch (PatternSyntaxException e)
+			{
+				// Skip rules that are not valid expressions.
+			}
+		}
+		this.patterns = compiled.toArray(new Pattern[compiled.size()]);
+	}
+
+	/**
+	 * Checks the sender alone, so that messages from ignored senders can be dropped
+	 * before their text is even decoded.
+	 * @param sender - originating address of the message; may be null.
+	 * @return true if messages from the sender may be played.
+	 */
+	public boolean acceptSender(String sender)
+	{
+		if (this.blockedSenders.contains(sender))
+			return false;
+		return this.allowedSenders.isEmpty() || this.allowedSenders.contains(sender);
+	}
+
+	/**
+	 * @param message - text of the whole message.
+	 * @return true if the text passes the keyword and pattern rules.
+	 */
+	public boolean acceptText(CharSequence message)
+	{
+		if (!this.keywords.isEmpty() && !this.keywords.containsAny(message))
+			return false;
+		for (int i = 0; i < this.patterns.length; i++)
+			if (this.patterns[i].matcher(message).find())
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return the trimmed, non-blank entries of a rule list.
+	 */
+	private static String[] split(String rules, String separators)
+	{
+		if (rules == null)
+			return new String[0];
+		final ArrayList<String> entries = new ArrayList<String>();
+		String entry;
+		for (String part : rules.split(separators))
+		{
+			entry = part.trim();
+			if (entry.length() > 0)
+				entries.add(entry);
+		}
+		return entries.toArray(new String[entries.size()]);
+	}
+
+	private static final String SENDER_SEPARATORS	= "[,;\\n]";
+	private static final String LINE_SEPARATORS		= "\\n";
+}
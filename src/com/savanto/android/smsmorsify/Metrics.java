@@ -0,0 +1,251 @@
+package com.savanto.android.smsmorsify;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide timers and counters for the stages of the message pipeline, from the
+ * broadcast to the end of playback. Each stage keeps a histogram of its durations in
+ * fixed buckets, one per power of two nanoseconds, with its count, total and maximum,
+ * all held in a preallocated AtomicLongArray: recording a sample never allocates
+ * and never locks, from whichever thread the stage runs on.
+ *
+ * Metrics are off by default. While off, start() costs one volatile read and stop()
+ * one comparison, so the calls are left in place on the hot path:
+ *
+ *     final long start = Metrics.start();
+ *     ...
+ *     Metrics.stop(Metrics.Stage.PARSE, start);
+ *
+ * @author savanto
+ */
+public final class Metrics
+{
+	/**
+	 * Timed stages of the pipeline.
+	 */
+	public enum Stage
+	{
+		/** SMSReceiver.onReceive, as a whole. */
+		RECEIVE,
+		/** Joining the parts of a concatenated message. */
+		REASSEMBLY,
+		/** Reading the preferences: the receiver's checks, or a new MorseConfig. */
+		PREFERENCES,
+		/** Substituting abbreviations. */
+		ABBREVIATE,
+		/** Parsing the plaintext into Ciphertext. */
+		PARSE,
+		/** Building the pattern from the parsed message. */
+		PATTERN,
+		/** PatternCache.encode, as a whole, hit or miss. */
+		ENCODE,
+		/** From scheduling to the start of playback: queued behind earlier messages, then waiting for the delay. */
+		DELAY,
+		/** Playing the pattern. */
+		VIBRATE,
+	}
+
+	/**
+	 * Events counted.
+	 */
+	public enum Counter
+	{
+		/** SMS parts received, one per PDU. */
+		RECEIVED,
+		/** Parts and whole messages rejected by the MessageFilter. */
+		FILTERED,
+		/** Whole messages handed to MorseService. */
+		STARTED,
+		/** Milliseconds of playing time saved by abbreviations. */
+		ABBREVIATION_SAVED_MS,
+	}
+
+	private static volatile boolean enabled = false;
+
+	/**
+	 * Per stage: the buckets, then the count, total and maximum.
+	 */
+	private static final AtomicLongArray[] STAGES = new AtomicLongArray[Stage.values().length];
+	private static final AtomicLongArray COUNTERS = new AtomicLongArray(Counter.values().length);
+	static
+	{
+		for (int i = 0; i < Metrics.STAGES.length; i++)
+			Metrics.STAGES[i] = new AtomicLongArray(Metrics.MAX + 1);
+	}
+
+	private Metrics()
+	{
+	}
+
+	/**
+	 * Turns collection on or off. Samples already collected are kept.
+	 */
+	public static void setEnabled(boolean enabled)
+	{
+		Metrics.enabled = enabled;
+	}
+
+	/**
+	 * @return true if samples are being collected.
+	 */
+	public static boolean isEnabled()
+	{
+		return Metrics.enabled;
+	}
+
+	/**
+	 * @return the start time of a stage, to be passed to stop(), or 0 if metrics are off.
+	 */
+	public static long start()
+	{
+		return Metrics.enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records the duration of a stage started with start().
+	 * @param stage - the stage timed.
+	 * @param start - the value returned by start(); nothing is recorded if it is 0.
+	 */
+	public static void stop(Stage stage, long start)
+	{
+		if (start != 0)
+			Metrics.record(stage, System.nanoTime() - start);
+	}
+
+	/**
+	 * Records a duration measured by other means, such as a PlaybackClock.
+	 * @param stage - the stage timed.
+	 * @param nanos - its duration, in nanoseconds.
+	 */
+	public static void record(Stage stage, long nanos)
+	{
+		if (!Metrics.enabled)
+			return;
+		nanos = Math.max(0, nanos);
+		final AtomicLongArray histogram = Metrics.STAGES[stage.ordinal()];
+		histogram.incrementAndGet(Metrics.bucket(nanos));
+		histogram.incrementAndGet(Metrics.COUNT);
+		histogram.addAndGet(Metrics.TOTAL, nanos);
+		long max;
+		while ((max = histogram.get(Metrics.MAX)) < nanos && !histogram.compareAndSet(Metrics.MAX, max, nanos))
+			;
+	}
+
+	/**
+	 * Adds to a counter.
+	 */
+	public static void count(Counter counter, long delta)
+	{
+		if (Metrics.enabled)
+			Metrics.COUNTERS.addAndGet(counter.ordinal(), delta);
+	}
+
+	/**
+	 * Clears every histogram and counter.
+	 */
+	public static void reset()
+	{
+		for (int i = 0; i < Metrics.STAGES.length; i++)
+			for (int j = 0; j < Metrics.STAGES[i].length(); j++)
+				Metrics.STAGES[i].set(j, 0);
+		for (int i = 0; i < Metrics.COUNTERS.length(); i++)
+			Metrics.COUNTERS.set(i, 0);
+	}
+
+	/**
+	 * Writes a report of every stage and counter. Percentiles are the upper bounds of
+	 * their buckets, so they are accurate to within a factor of two.
+	 */
+	public static void dump(PrintWriter writer)
+	{
+		writer.println("Metrics " + (Metrics.enabled ? "enabled" : "disabled"));
+		writer.printf(Locale.US, "  %-12s %8s %10s %10s %10s %10s %10s%n", "stage", "count", "mean", "p50", "p90", "p99", "max");
+		AtomicLongArray histogram;
+		long count;
+		for (Stage stage : Stage.values())
+		{
+			histogram = Metrics.STAGES[stage.ordinal()];
+			count = histogram.get(Metrics.COUNT);
+			if (count == 0)
+				continue;
+			writer.printf(Locale.US, "  %-12s %8d %10s %10s %10s %10s %10s%n", stage, count,
+					Metrics.format(histogram.get(Metrics.TOTAL) / count),
+					Metrics.format(Metrics.percentile(histogram, count, 50)),
+					Metrics.format(Metrics.percentile(histogram, count, 90)),
+					Metrics.format(Metrics.percentile(histogram, count, 99)),
+					Metrics.format(histogram.get(Metrics.MAX)));
+		}
+		for (Counter counter : Counter.values())
+			writer.printf(Locale.US, "  %-22s %d%n", counter, Metrics.COUNTERS.get(counter.ordinal()));
+	}
+
+	/**
+	 * Writes the report to a file, replacing it.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public static void export(File file) throws IOException
+	{
+		final PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+		try
+		{
+			Metrics.dump(writer);
+		}
+		finally
+		{
+			writer.close();
+		}
+		if (writer.checkError())
+			throw new IOException("Failed to write " + file);
+	}
+
+	/**
+	 * @return the bucket of a duration: bucket b holds durations below 2^b nanoseconds.
+	 */
+	private static int bucket(long nanos)
+	{
+		return 64 - Long.numberOfLeadingZeros(nanos);
+	}
+
+	/**
+	 * @return the upper bound of the bucket holding the given percentile, or the maximum if lower.
+	 */
+	private static long percentile(AtomicLongArray histogram, long count, int percent)
+	{
+		final long rank = (count * percent + 99) / 100;
+		long seen = 0;
+		for (int b = 0; b < Metrics.BUCKETS; b++)
+		{
+			seen += histogram.get(b);
+			if (seen >= rank)
+				return b == Metrics.BUCKETS - 1 ? histogram.get(Metrics.MAX)
+						: Math.min((1L << b) - 1, histogram.get(Metrics.MAX));
+		}
+		return histogram.get(Metrics.MAX);
+	}
+
+	/**
+	 * @return a duration in nanoseconds, in the largest unit that keeps it above 1.
+	 */
+	private static String format(long nanos)
+	{
+		if (nanos >= 1000000000L)
+			return String.format(Locale.US, "%.2fs", nanos / 1e9);
+		if (nanos >= 1000000L)
+			return String.format(Locale.US, "%.2fms", nanos / 1e6);
+		if (nanos >= 1000L)
+			return String.format(Locale.US, "%.2fus", nanos / 1e3);
+		return nanos + "ns";
+	}
+
+	// Layout of each stage's array: one bucket per bit length of a duration, 0 to 63.
+	private static final int BUCKETS	= 64;
+	private static final int COUNT		= Metrics.BUCKETS;
+	private static final int TOTAL		= Metrics.BUCKETS + 1;
+	private static final int MAX		= Metrics.BUCKETS + 2;
+}
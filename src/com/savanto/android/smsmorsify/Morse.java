@@ -4,6 +4,7 @@ package com.savanto.android.smsmorsify;
  * Abstracts the storage of a sequence of Morse code elements.
  * Implementation can be changed to store the Morse code as Strings, Integers, etc,
  * while still providing the same functionality to programs that rely on this class.
+ * Instances are immutable, and compare equal if they hold the same signals.
  * 
  * @author Anton
  */
@@ -18,48 +19,53 @@ public class Morse
 
 	/**
 	 * Storage container for the Morse.
-	 * As of now, uses a char[] of dots and dashs.
+	 * Signals are bit-packed into a single int: bit i is set if signal i is a dah,
+	 * and one sentinel bit above the last signal marks the length.
+	 * An empty Morse is just the sentinel bit.
 	 */
-	private char[] morse;
+	private final int code;
 
 	/**
-	 * Default constructor. Creates an empty Morse.
+	 * Longest Morse that can be packed, leaving room for the sentinel bit.
 	 */
-	public Morse()
-	{
-		this.morse = new char[0];
-	}
+	public static final int MAX_LENGTH = 30;
 
 	/**
-	 * Special constructor: creates an empty Morse consisting of gaps only.
-	 * @param gaps - specifies the number of gaps in the empty Morse.
+	 * Default constructor. Creates an empty Morse.
 	 */
-/*	public Morse(int gaps)
+	public Morse()
 	{
-		this.morse = new char[gaps];
-		for (int i = 0; i < this.morse.length; i++)
-			this.morse[i] = Morse.GAP;
+		this.code = 1;
 	}
-*/
+
 	/**
 	 * Creates Morse from String with given chars for the dots and dashes.
+	 * The default DIT and DAH chars are also accepted.
 	 * @param s - String contains only given chars for dots and dashes.
 	 * @param dit - char representing a dot.
 	 * @param dah - char representing a dash.
+	 * @throws IllegalArgumentException if s contains other chars, or is longer than MAX_LENGTH.
 	 */
 	public Morse(String s, char dit, char dah)
 	{
-		if (dit != Morse.DIT)
-			s = s.replace(dit, Morse.DIT);
-		if (dah != Morse.DAH)
-			s = s.replace(dah, Morse.DAH);
+		final int length = s.length();
+		if (length > Morse.MAX_LENGTH)
+			throw new IllegalArgumentException("Morse longer than " + Morse.MAX_LENGTH + " signals: " + s);
 
 		// **** Implementation specific **** //
-		this.morse = new char[2 * s.length() - 1];	// Morse char[] is spaced
-		for (int i = 0; i < s.length(); i++)
-			this.morse[i*2] = s.charAt(i);
-		for (int i = 1; i < this.morse.length; i += 2)
-			this.morse[i] = Morse.GAP;
+		int code = 1 << length;	// Sentinel bit
+		char c;
+		for (int i = 0; i < length; i++)
+		{
+			c = s.charAt(i);
+			if (c == dit)
+				continue;
+			else if (c == dah || c == Morse.DAH)
+				code |= 1 << i;
+			else if (c != Morse.DIT)
+				throw new IllegalArgumentException("Invalid Morse signal '" + c + "' in: " + s);
+		}
+		this.code = code;
 	}
 
 	/**
@@ -94,34 +100,87 @@ public class Morse
 	}
 
 	/**
-	 * 
-	 * @param rhs
-	 * @return
+	 * @return the number of signals (dots and dashes) in this Morse.
+	 */
+	public int length()
+	{
+		return 31 - Integer.numberOfLeadingZeros(this.code);
+	}
+
+	/**
+	 * @param i - index of the signal, from 0 to length() - 1.
+	 * @return true if signal i is a dash, false if it is a dot.
+	 */
+	public boolean isDah(int i)
+	{
+		return (this.code & (1 << i)) != 0;
+	}
+
+	/**
+	 * @param i - index of the signal, from 0 to length() - 1.
+	 * @return DIT or DAH.
+	 */
+	public char signalAt(int i)
+	{
+		return this.isDah(i) ? Morse.DAH : Morse.DIT;
+	}
+
+	/**
+	 * @return the packed representation: dah bits below a sentinel length bit.
+	 */
+	int code()
+	{
+		return this.code;
+	}
+
+	/**
+	 * @param rhs - Morse to compare against.
+	 * @return true if both contain the same sequence of dots and dashes.
 	 */
 	public boolean equals(Morse rhs)
 	{
-		if (this.morse.length != rhs.morse.length)
-			return false;
-		for (int i = 0; i < this.morse.length; i++)
-			if (this.morse[i] != rhs.morse[i])
-				return false;
-		return true;
+		return rhs != null && this.code == rhs.code;
+	}
+
+	@Override
+	public boolean equals(Object rhs)
+	{
+		return rhs instanceof Morse && this.code == ((Morse) rhs).code;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return this.code;
 	}
 
 	/**
-	 * @return
+	 * @return the dots and dashes of this Morse, such as "-.-".
 	 */
 	@Override
 	public String toString()
 	{
-		String s = "";
-		for (int i = 0; i < this.morse.length; i += 2)
-			s += this.morse[i];
-		return s;
+		final char[] s = new char[this.length()];
+		for (int i = 0; i < s.length; i++)
+			s[i] = this.signalAt(i);
+		return new String(s);
 	}
 
+	/**
+	 * @return a new char[] of the dots and dashes of this Morse, spaced by GAPs.
+	 */
 	public char[] toSignal()
 	{
-		return this.morse;
+		final int length = this.length();
+		if (length == 0)
+			return new char[0];
+		final char[] signal = new char[2 * length - 1];
+		for (int i = 0; i < length; i++)
+		{
+			signal[i * 2] = this.signalAt(i);
+			if (i > 0)
+				signal[i * 2 - 1] = Morse.GAP;
+		}
+		return signal;
 	}
 }
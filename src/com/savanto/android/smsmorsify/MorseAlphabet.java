@@ -0,0 +1,286 @@
+package com.savanto.android.smsmorsify;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable ITU Morse code alphabet and prosign dictionary.
+ * One instance exists per combination of the numbers/symbols/prosigns options;
+ * each is built lazily on first use and then shared process-wide, so that
+ * encoding a message only looks up prebuilt Morse entries.
+ *
+ * @author savanto
+ */
+public final class MorseAlphabet
+{
+	/**
+	 * Lazily built alphabet variants, indexed by MorseAlphabet.index().
+	 */
+	private static final MorseAlphabet[] variants = new MorseAlphabet[8];
+
+	private final Map<Character, Morse> alphabet;
+	/**
+	 * Dense lookup table for the ASCII range, indexed directly by char code.
+	 * Lowercase letters share the entries of their uppercase counterparts.
+	 */
+	private final Morse[] table;
+	/**
+	 * Compact fallback for characters outside the ASCII range:
+	 * sorted keys, searched by binary search, with parallel values.
+	 */
+	private final char[] extraKeys;
+	private final Morse[] extraValues;
+	private final Map<String, Morse> dictionary;
+	/**
+	 * Trie over the dictionary keys, for matching prosigns inline in plaintext.
+	 */
+	private final CharTrie<Morse> prosigns;
+	private final boolean useNumbers;
+	private final boolean useSymbols;
+	private final boolean useProsigns;
+
+	/**
+	 * Returns the shared alphabet for the given options, building it on first request.
+	 * @param useNumbers - true if numbers are to be included.
+	 * @param useSymbols - true if symbols are to be included.
+	 * @param useProsigns - true if prosigns are to be included.
+	 * @return the shared, immutable alphabet.
+	 */
+	public static MorseAlphabet getInstance(boolean useNumbers, boolean useSymbols, boolean useProsigns)
+	{
+		final int index = MorseAlphabet.index(useNumbers, useSymbols, useProsigns);
+		synchronized (MorseAlphabet.variants)
+		{
+			if (MorseAlphabet.variants[index] == null)
+				MorseAlphabet.variants[index] = new MorseAlphabet(useNumbers, useSymbols, useProsigns);
+			return MorseAlphabet.variants[index];
+		}
+	}
+
+	private static int index(boolean useNumbers, boolean useSymbols, boolean useProsigns)
+	{
+		return (useNumbers ? 1 : 0) | (useSymbols ? 2 : 0) | (useProsigns ? 4 : 0);
+	}
+
+	/**
+	 * Constructs default ITU Morse code alphabet and prosign dictionary, taken from
+	 * http://en.wikipedia.org/wiki/Morse_code
+	 * @param useNumbers - true if numbers are to be included.
+	 * @param useSymbols - true if symbols are to be included.
+	 * @param useProsigns - true if prosigns are to be included.
+	 */
+	private MorseAlphabet(boolean useNumbers, boolean useSymbols, boolean useProsigns)
+	{
+		this.useNumbers = useNumbers;
+		this.useSymbols = useSymbols;
+		this.useProsigns = useProsigns;
+
+		// Calculate the alphabet size.
+		final int DEFAULT_ALPHABET_SIZE = MorseAlphabet.DEFAULT_LETTERS
+				+ (useNumbers ? MorseAlphabet.DEFAULT_NUMBERS : 0)
+				+ (useSymbols ? MorseAlphabet.DEFAULT_SYMBOLS : 0);
+		// Calculate the dictionary size
+		final int DEFAULT_DICTIONARY_SIZE = (useProsigns ? MorseAlphabet.DEFAULT_PROSIGNS : 0);
+
+		// Create default alphabet of Morse code characters.
+		HashMap<Character, Morse> alphabet = new HashMap<Character, Morse>(DEFAULT_ALPHABET_SIZE);
+		// Create default dictionary of Morse code words.
+		HashMap<String, Morse> dictionary = new HashMap<String, Morse>(DEFAULT_DICTIONARY_SIZE);
+
+		// Add the default characters to the alphabet.
+		// **** Letters **** //
+		alphabet.put('A', new Morse(".-"));
+		alphabet.put('B', new Morse("-..."));
+		alphabet.put('C', new Morse("-.-."));
+		alphabet.put('D', new Morse("-.."));
+		alphabet.put('E', new Morse("."));
+		alphabet.put('F', new Morse("..-."));
+		alphabet.put('G', new Morse("--."));
+		alphabet.put('H', new Morse("...."));
+		alphabet.put('I', new Morse(".."));
+		alphabet.put('J', new Morse(".---"));
+		alphabet.put('K', new Morse("-.-"));
+		alphabet.put('L', new Morse(".-.."));
+		alphabet.put('M', new Morse("--"));
+		alphabet.put('N', new Morse("-."));
+		alphabet.put('O', new Morse("---"));
+		alphabet.put('P', new Morse(".--."));
+		alphabet.put('Q', new Morse("--.-"));
+		alphabet.put('R', new Morse(".-."));
+		alphabet.put('S', new Morse("..."));
+		alphabet.put('T', new Morse("-"));
+		alphabet.put('U', new Morse("..-"));
+		alphabet.put('V', new Morse("...-"));
+		alphabet.put('W', new Morse(".--"));
+		alphabet.put('X', new Morse("-..-"));
+		alphabet.put('Y', new Morse("-.--"));
+		alphabet.put('Z', new Morse("--.."));
+
+		// **** Numbers **** //
+		if (useNumbers)
+		{
+			alphabet.put('0', new Morse("-----"));
+			alphabet.put('1', new Morse(".----"));
+			alphabet.put('2', new Morse("..---"));
+			alphabet.put('3', new Morse("...--"));
+			alphabet.put('4', new Morse("....-"));
+			alphabet.put('5', new Morse("....."));
+			alphabet.put('6', new Morse("-...."));
+			alphabet.put('7', new Morse("--..."));
+			alphabet.put('8', new Morse("---.."));
+			alphabet.put('9', new Morse("----."));
+		}
+
+		// **** Symbols **** //
+		if (useSymbols)
+		{
+			alphabet.put('.', new Morse(".-.-.-"));
+			alphabet.put(',', new Morse("--..--"));
+			alphabet.put('?', new Morse("..--.."));
+			alphabet.put('\'', new Morse(".----."));
+			alphabet.put('!', new Morse("-.-.--"));
+			alphabet.put('/', new Morse("-..-."));
+			alphabet.put('(', new Morse("-.--."));
+			alphabet.put(')', new Morse("-.--.-"));
+			alphabet.put('&', new Morse(".-..."));
+			alphabet.put(':', new Morse("---..."));
+			alphabet.put(';', new Morse("-.-.-."));
+			alphabet.put('=', new Morse("-...-"));
+			alphabet.put('+', new Morse(".-.-."));
+			alphabet.put('-', new Morse("-....-"));
+			alphabet.put('_', new Morse("..--.-"));
+			alphabet.put('"', new Morse(".-..-."));
+			alphabet.put('$', new Morse("...-..-"));
+			alphabet.put('@', new Morse(".--.-."));
+		}
+
+		// Add the default words to the dictionary.
+		// **** Prosigns **** //
+		// These are actually single Morse characters, as
+		// they are transmitted without inter-character separations.
+		if (useProsigns)
+		{
+			dictionary.put(MorseCode.PROSIGN_AA, new Morse(".-.-"));
+			dictionary.put(MorseCode.PROSIGN_AR, new Morse(".-.-."));
+			dictionary.put(MorseCode.PROSIGN_AS, new Morse(".-..."));
+			dictionary.put(MorseCode.PROSIGN_BK, new Morse("-...-.-"));
+			dictionary.put(MorseCode.PROSIGN_BT, new Morse("-...-"));
+			dictionary.put(MorseCode.PROSIGN_CL, new Morse("-.-..-.."));
+			dictionary.put(MorseCode.PROSIGN_CT, new Morse("-.-.-"));
+			dictionary.put(MorseCode.PROSIGN_DO, new Morse("-..---"));
+			dictionary.put(MorseCode.PROSIGN_K, new Morse("-.-"));
+			dictionary.put(MorseCode.PROSIGN_KN, new Morse("-.--."));
+			dictionary.put(MorseCode.PROSIGN_SK, new Morse("...-.-"));
+			dictionary.put(MorseCode.PROSIGN_SN, new Morse("...-."));
+			dictionary.put(MorseCode.PROSIGN_SOS, new Morse("...---..."));
+			dictionary.put(MorseCode.PROSIGN_EEEEEE, new Morse("......"));
+		}
+
+		this.alphabet = Collections.unmodifiableMap(alphabet);
+		this.dictionary = Collections.unmodifiableMap(dictionary);
+		this.prosigns = new CharTrie<Morse>(dictionary);
+
+		// Build the primitive lookup tables from the alphabet.
+		this.table = new Morse[MorseAlphabet.ASCII_SIZE];
+		int extras = 0;
+		for (char c : alphabet.keySet())
+		{
+			if (c < MorseAlphabet.ASCII_SIZE)
+			{
+				this.table[c] = alphabet.get(c);
+				// Letters are looked up case-insensitively.
+				if (c >= 'A' && c <= 'Z')
+					this.table[Character.toLowerCase(c)] = alphabet.get(c);
+			}
+			else
+				extras++;
+		}
+		this.extraKeys = new char[extras];
+		this.extraValues = new Morse[extras];
+		if (extras > 0)
+		{
+			int i = 0;
+			for (char c : alphabet.keySet())
+				if (c >= MorseAlphabet.ASCII_SIZE)
+					this.extraKeys[i++] = c;
+			Arrays.sort(this.extraKeys);
+			for (i = 0; i < extras; i++)
+				this.extraValues[i] = alphabet.get(this.extraKeys[i]);
+		}
+	}
+
+	/**
+	 * Looks up a plaintext character without boxing: a single array read for ASCII,
+	 * and a binary search of the uppercased character otherwise.
+	 * @param c - plaintext character, in either case.
+	 * @return the Morse for the character, or null if it is not in the alphabet.
+	 */
+	public Morse get(char c)
+	{
+		if (c < MorseAlphabet.ASCII_SIZE)
+			return this.table[c];
+
+		c = Character.toUpperCase(c);
+		if (c < MorseAlphabet.ASCII_SIZE)
+			return this.table[c];
+		final int i = Arrays.binarySearch(this.extraKeys, c);
+		return i >= 0 ? this.extraValues[i] : null;
+	}
+
+	/**
+	 * @param prosign - prosign key, such as MorseCode.PROSIGN_AR.
+	 * @return the Morse for the prosign, or null if it is not in the dictionary.
+	 */
+	public Morse getProsign(String prosign)
+	{
+		return this.dictionary.get(prosign);
+	}
+
+	/**
+	 * @return trie over the prosign dictionary keys.
+	 */
+	CharTrie<Morse> getProsignTrie()
+	{
+		return this.prosigns;
+	}
+
+	/**
+	 * @return read-only view of the character alphabet.
+	 */
+	public Map<Character, Morse> getAlphabet()
+	{
+		return this.alphabet;
+	}
+
+	/**
+	 * @return read-only view of the prosign dictionary.
+	 */
+	public Map<String, Morse> getDictionary()
+	{
+		return this.dictionary;
+	}
+
+	public boolean usesNumbers()
+	{
+		return this.useNumbers;
+	}
+
+	public boolean usesSymbols()
+	{
+		return this.useSymbols;
+	}
+
+	public boolean usesProsigns()
+	{
+		return this.useProsigns;
+	}
+
+	// Default size values.
+	private static final int DEFAULT_LETTERS	= 26;	// Alphabet A-Z
+	private static final int DEFAULT_NUMBERS	= 10;	// Numbers 0-9
+	private static final int DEFAULT_SYMBOLS	= 18;	// Misc symbols
+	private static final int DEFAULT_PROSIGNS	= 14;	// Procedural signals
+	private static final int ASCII_SIZE			= 128;	// Size of the dense lookup table
+}
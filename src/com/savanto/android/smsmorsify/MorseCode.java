@@ -1,20 +1,19 @@
 package com.savanto.android.smsmorsify;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Locale;
-
 /**
+ * One message encoded into Morse. Kept for compatibility: encoding is done by a
+ * MorseEncoder, and the result held as an immutable Ciphertext, to which the
+ * methods of this class delegate. New code should share a MorseEncoder instead.
+ *
  * @author Anton
  *
  */
 public class MorseCode
 {
-	private ArrayList< ArrayList<Morse> > ciphertext;
-	private HashMap<Character, Morse> alphabet;
-	private HashMap<String, Morse> dictionary;
-	private int short_gap;
-	private int medium_gap;
+	// Templates for the timing last passed to toPattern() as durations.
+	private static volatile PatternTemplates templates;
+
+	private final Ciphertext ciphertext;
 
 	/**
 	 * Constructs full default ITU Morse code alphabet and prosign dictionary,
@@ -81,170 +80,28 @@ public class MorseCode
 	 */
 	public MorseCode(String plaintext, int short_gap, int medium_gap, boolean useNumbers, boolean useSymbols, boolean useProsigns)
 	{
-		// Calculate the alphabet size.
-		final int DEFAULT_ALPHABET_SIZE = MorseCode.DEFAULT_LETTERS
-				+ (useNumbers ? MorseCode.DEFAULT_NUMBERS : 0)
-				+ (useSymbols ? MorseCode.DEFAULT_SYMBOLS : 0);
-		// Calculate the dictionary size
-		final int DEFAULT_DICTIONARY_SIZE = (useProsigns ? MorseCode.DEFAULT_PROSIGNS : 0);
-
-		// Create default alphabet of Morse code characters.
-		this.alphabet = new HashMap<Character, Morse>(DEFAULT_ALPHABET_SIZE);
-		// Create default dictionary of Morse code words.
-		this.dictionary = new HashMap<String, Morse>(DEFAULT_DICTIONARY_SIZE);
-
-		// Create default gaps.
-		this.short_gap = short_gap;
-		this.medium_gap = medium_gap;
-
-		// Add the default characters to the alphabet.
-		// **** Letters **** //
-		this.alphabet.put('A', new Morse(".-"));
-		this.alphabet.put('B', new Morse("-..."));
-		this.alphabet.put('C', new Morse("-.-."));
-		this.alphabet.put('D', new Morse("-.."));
-		this.alphabet.put('E', new Morse("."));
-		this.alphabet.put('F', new Morse("..-."));
-		this.alphabet.put('G', new Morse("--."));
-		this.alphabet.put('H', new Morse("...."));
-		this.alphabet.put('I', new Morse(".."));
-		this.alphabet.put('J', new Morse(".---"));
-		this.alphabet.put('K', new Morse("-.-"));
-		this.alphabet.put('L', new Morse(".-.."));
-		this.alphabet.put('M', new Morse("--"));
-		this.alphabet.put('N', new Morse("-."));
-		this.alphabet.put('O', new Morse("---"));
-		this.alphabet.put('P', new Morse(".--."));
-		this.alphabet.put('Q', new Morse("--.-"));
-		this.alphabet.put('R', new Morse(".-."));
-		this.alphabet.put('S', new Morse("..."));
-		this.alphabet.put('T', new Morse("-"));
-		this.alphabet.put('U', new Morse("..-"));
-		this.alphabet.put('V', new Morse("...-"));
-		this.alphabet.put('W', new Morse(".--"));
-		this.alphabet.put('X', new Morse("-..-"));
-		this.alphabet.put('Y', new Morse("-.--"));
-		this.alphabet.put('Z', new Morse("--.."));
-
-		// **** Numbers **** //
-		if (useNumbers)
-		{
-			this.alphabet.put('0', new Morse("-----"));
-			this.alphabet.put('1', new Morse(".----"));
-			this.alphabet.put('2', new Morse("..---"));
-			this.alphabet.put('3', new Morse("...--"));
-			this.alphabet.put('4', new Morse("....-"));
-			this.alphabet.put('5', new Morse("....."));
-			this.alphabet.put('6', new Morse("-...."));
-			this.alphabet.put('7', new Morse("--..."));
-			this.alphabet.put('8', new Morse("---.."));
-			this.alphabet.put('9', new Morse("----."));
-		}
-
-		// **** Symbols **** //
-		if (useSymbols)
-		{
-			this.alphabet.put('.', new Morse(".-.-.-"));
-			this.alphabet.put(',', new Morse("--..--"));
-			this.alphabet.put('?', new Morse("..--.."));
-			this.alphabet.put('\'', new Morse(".----."));
-			this.alphabet.put('!', new Morse("-.-.--"));
-			this.alphabet.put('/', new Morse("-..-."));
-			this.alphabet.put('(', new Morse("-.--."));
-			this.alphabet.put(')', new Morse("-.--.-"));
-			this.alphabet.put('&', new Morse(".-..."));
-			this.alphabet.put(':', new Morse("---..."));
-			this.alphabet.put(';', new Morse("-.-.-."));
-			this.alphabet.put('=', new Morse("-...-"));
-			this.alphabet.put('+', new Morse(".-.-."));
-			this.alphabet.put('-', new Morse("-....-"));
-			this.alphabet.put('_', new Morse("..--.-"));
-			this.alphabet.put('"', new Morse(".-..-."));
-			this.alphabet.put('$', new Morse("...-..-"));
-			this.alphabet.put('@', new Morse(".--.-."));
-		}
-
-		// Add the default words to the dictionary.
-		// **** Prosigns **** //
-		// These are actually single Morse characters, as
-		// they are transmitted without inter-character separations.
-		if (useProsigns)
-		{
-			this.dictionary.put(MorseCode.PROSIGN_AA, new Morse(".-.-"));
-			this.dictionary.put(MorseCode.PROSIGN_AR, new Morse(".-.-."));
-			this.dictionary.put(MorseCode.PROSIGN_AS, new Morse(".-..."));
-			this.dictionary.put(MorseCode.PROSIGN_BK, new Morse("-...-.-"));
-			this.dictionary.put(MorseCode.PROSIGN_BT, new Morse("-...-"));
-			this.dictionary.put(MorseCode.PROSIGN_CL, new Morse("-.-..-.."));
-			this.dictionary.put(MorseCode.PROSIGN_CT, new Morse("-.-.-"));
-			this.dictionary.put(MorseCode.PROSIGN_DO, new Morse("-..---"));
-			this.dictionary.put(MorseCode.PROSIGN_K, new Morse("-.-"));
-			this.dictionary.put(MorseCode.PROSIGN_KN, new Morse("-.--."));
-			this.dictionary.put(MorseCode.PROSIGN_SK, new Morse("...-.-"));
-			this.dictionary.put(MorseCode.PROSIGN_SN, new Morse("...-."));
-			this.dictionary.put(MorseCode.PROSIGN_SOS, new Morse("...---..."));
-			this.dictionary.put(MorseCode.PROSIGN_EEEEEE, new Morse("......"));
-		}
-
-		// Set ciphertext to be empty.
-		this.ciphertext = new ArrayList<ArrayList<Morse> >(0);
-
-		// Parse the plaintext.
-		this.parsePlaintext(plaintext);
+		// Look up the shared, prebuilt alphabet and prosign dictionary.
+		this(plaintext, short_gap, medium_gap, MorseAlphabet.getInstance(useNumbers, useSymbols, useProsigns));
 	}
 
-	private void parsePlaintext(String plaintext)
+	/**
+	 * Creates Morse code from a prebuilt alphabet and prosign dictionary, with custom gap lengths.
+	 * @param plaintext - the plaintext message to be encoded into Morse.
+	 * @param short_gap - the gap length to set between Morse letters.
+	 * @param medium_gap - the gap length to set between Morse words.
+	 * @param alphabet - the alphabet and prosign dictionary to encode with.
+	 */
+	public MorseCode(String plaintext, int short_gap, int medium_gap, MorseAlphabet alphabet)
 	{
-		// Trim plaintext and convert to uppercase for lookup.
-		plaintext = plaintext.trim();
-		plaintext = plaintext.toUpperCase(Locale.getDefault());
-
-		// If plaintext is empty, do nothing.
-		if (plaintext.length() < 1)
-			return;
-
-		// Begin construction of ciphertext.
-		// Words are constructed one by one from the Morse characters, then added to the ciphertext.
-		ArrayList<Morse> word = new ArrayList<Morse>(0);
-
-		// Perform prosign lookup of "Start transmission" prosign CT.
-		// If prosign is found, add it to the ciphertext.
-		if (this.dictionary.containsKey(MorseCode.PROSIGN_CT))
-		{
-			word.add(this.dictionary.get(MorseCode.PROSIGN_CT));
-			this.ciphertext.add(word);
-			word = new ArrayList<Morse>(0);
-		}
-
-		// Traverse plaintext.
-		char c;
-		for (int i = 0; i < plaintext.length(); i++)
-		{
-			c = plaintext.charAt(i);
-			// Check for space between words.
-			if (c == MorseCode.SPACE)
-			{
-				this.ciphertext.add(word);
-				word = new ArrayList<Morse>(0);
-				// Skip further lookup, continue to next character.
-				continue;
-			}
-			// Perform character lookup in dictionary.
-			// If character is found, add it to the ciphertext with short gap after.
-			if (this.alphabet.containsKey(c))
-				word.add(this.alphabet.get(c));
-		}
-		// Add last word to ciphertext
-		this.ciphertext.add(word);
+		this.ciphertext = new MorseEncoder(alphabet, short_gap, medium_gap).encode(plaintext);
+	}
 
-		// Perform prosign lookup of "End transmission" prosign SK.
-		// If prosign is found, add it to the ciphertext.
-		if (this.dictionary.containsKey(MorseCode.PROSIGN_SK))
-		{
-			word = new ArrayList<Morse>(0);
-			word.add(this.dictionary.get(MorseCode.PROSIGN_SK));
-			this.ciphertext.add(word);
-		}
+	/**
+	 * @return the encoded message, which may be shared.
+	 */
+	public Ciphertext getCiphertext()
+	{
+		return this.ciphertext;
 	}
 
 	/**
@@ -253,85 +110,95 @@ public class MorseCode
 	@Override
 	public String toString()
 	{
-		String s = "";
-		ArrayList<Morse> word;
-		for (int i = 0; i < this.ciphertext.size(); i++)
-		{
-			word = this.ciphertext.get(i);
-			for (int j = 0; j < word.size(); j++)
-				s += word.get(j) + " ";
-			s += '\n';
-		}
-		return s;
+		return this.ciphertext.toString();
 	}
 
 	/**
-	 * 
-	 * @param wait
-	 * @param dit
-	 * @param dah
-	 * @param gap
-	 * @return
+	 * Computes the exact number of elements toPattern() produces for this ciphertext,
+	 * without building the pattern.
+	 * @return the length of the pattern array.
+	 */
+	public int patternLength()
+	{
+		return this.ciphertext.patternLength();
+	}
+
+	/**
+	 * Converts the ciphertext into a vibration pattern, in a single pass with no boxing.
+	 * @param wait - duration before the first signal.
+	 * @param dit - duration of a dot.
+	 * @param dah - duration of a dash.
+	 * @param gap - duration of the gap between signals; letter and word gaps are multiples of it.
+	 * @return alternating off/on durations, starting with the wait.
 	 */
 	public long[] toPattern(long wait, long dit, long dah, long gap)
 	{
-		ArrayList<Long> patternList = new ArrayList<Long>(0);
-		// Add the wait.
-		patternList.add(wait);
-		// Traverse ciphertext
-		ArrayList<Morse> word;
-		char[] signal;
-		for (int i = 0; i < this.ciphertext.size(); i++)
+		long[] pattern = new long[this.patternLength()];
+		this.toPattern(wait, dit, dah, gap, pattern, 0);
+		return pattern;
+	}
+
+	/**
+	 * Writes the vibration pattern into a caller-supplied array, so that buffers can be reused.
+	 * The templates for the timing are compiled on its first use, and reused while it stays the same.
+	 * @param wait - duration before the first signal.
+	 * @param dit - duration of a dot.
+	 * @param dah - duration of a dash.
+	 * @param gap - duration of the gap between signals; letter and word gaps are multiples of it.
+	 * @param pattern - destination array, with at least patternLength() elements from offset.
+	 * @param offset - index in pattern at which to write the first element.
+	 * @return the number of elements written, which equals patternLength().
+	 */
+	public int toPattern(long wait, long dit, long dah, long gap, long[] pattern, int offset)
+	{
+		return this.toPattern(wait, MorseCode.templates(dit, dah, gap), pattern, offset);
+	}
+
+	/**
+	 * Looks up the templates for a timing, compiling them for the full alphabet, whose letters
+	 * include those of every other, when the timing changes. Callers almost always pass the
+	 * timing of the current settings, so only the last is kept. Templates are immutable,
+	 * so threads racing on a change at worst compile them twice.
+	 */
+	private static PatternTemplates templates(long dit, long dah, long gap)
+	{
+		PatternTemplates templates = MorseCode.templates;
+		if (templates == null || templates.getDit() != dit || templates.getDah() != dah || templates.getGap() != gap)
 		{
-			word = this.ciphertext.get(i);
-			// Traverse letters in word.
-			for (int j = 0; j < word.size(); j++)
-			{
-				signal = word.get(j).toSignal();
-				// Traverse characters in signal.
-				for (int k = 0; k < signal.length; k++)
-				{
-					switch (signal[k])
-					{
-						case Morse.DIT:
-							patternList.add(dit);
-							break;
-						case Morse.DAH:
-							patternList.add(dah);
-							break;
-						case Morse.GAP:
-							patternList.add(gap);
-							break;
-					}
-				}
-				// Add short gap between letters.
-				patternList.add(gap * this.short_gap);
-			}
-			// Remove previous short gap
-			patternList.remove(patternList.size() - 1);
-			// Add medium gap between words.
-			patternList.add(gap * this.medium_gap);
+			templates = new PatternTemplates(MorseAlphabet.getInstance(true, true, true), dit, dah, gap);
+			MorseCode.templates = templates;
 		}
-		// Remove previous medium gap.
-		patternList.remove(patternList.size() - 1);
+		return templates;
+	}
 
-		// Convert patternList into pattern array.
-		long[] pattern = new long[patternList.size()];
-		for (int i = 0; i < pattern.length; i++)
-			pattern[i] = patternList.get(i);
+	/**
+	 * Converts the ciphertext into a vibration pattern, copying each letter from precompiled templates.
+	 * @param wait - duration before the first signal.
+	 * @param templates - durations of the letters; letter and word gaps are multiples of its gap.
+	 * @return alternating off/on durations, starting with the wait.
+	 */
+	public long[] toPattern(long wait, PatternTemplates templates)
+	{
+		return this.ciphertext.toPattern(wait, templates);
+	}
 
-		return pattern;
+	/**
+	 * Writes the vibration pattern into a caller-supplied array, copying each letter from precompiled templates.
+	 * @param wait - duration before the first signal.
+	 * @param templates - durations of the letters; letter and word gaps are multiples of its gap.
+	 * @param pattern - destination array, with at least patternLength() elements from offset.
+	 * @param offset - index in pattern at which to write the first element.
+	 * @return the number of elements written, which equals patternLength().
+	 */
+	public int toPattern(long wait, PatternTemplates templates, long[] pattern, int offset)
+	{
+		return this.ciphertext.toPattern(wait, templates, pattern, offset);
 	}
 
 	// Default size/length values.
-	private static final int DEFAULT_LETTERS	= 26;	// Alphabet A-Z
-	private static final int DEFAULT_NUMBERS	= 10;	// Numbers 0-9
-	private static final int DEFAULT_SYMBOLS	= 18;	// Misc symbols
-	private static final int DEFAULT_PROSIGNS	= 14;	// Procedural signals
 	public static final int DEFAULT_SHORT_GAP	= 3;	// Space between Morse letters.
 	public static final int DEFAULT_MEDIUM_GAP	= 7;	// Space between Morse words.
 
-	private static final char SPACE = ' ';
 	public static final String PROSIGN_AA = "<AA>";
 	public static final String PROSIGN_AR = "<AR>";
 	public static final String PROSIGN_AS = "<AS>";
@@ -0,0 +1,339 @@
+package com.savanto.android.smsmorsify;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Immutable snapshot of the preferences that control how messages are encoded and played.
+ * A snapshot is built once from SharedPreferences, with every value parsed and the alphabet
+ * looked up, and replaced as a whole when the preferences change, so that a message is
+ * always encoded with one consistent set of settings.
+ *
+ * @author savanto
+ */
+public final class MorseConfig implements PatternEncoder
+{
+	private final boolean enabled;
+	private final boolean screenCheck;
+	private final boolean beep;
+	private final boolean metrics;
+	private final long delay;
+	private final long wait;
+	private final long dit;
+	private final long dah;
+	private final long gap;
+	private final int short_gap;
+	private final int medium_gap;
+	private final MorseAlphabet alphabet;
+	private final MorseEncoder encoder;
+	private final PatternTemplates templates;
+	private final Abbreviator abbreviator;
+	private final DurationEstimator estimator;
+	private final long maxDuration;
+	private final TruncationPolicy truncationPolicy;
+	private final ToneSynthesizer synthesizer;
+	private final QueuePolicy queuePolicy;
+	private final int queueDepth;
+
+	private MorseConfig(Context context, SharedPreferences sharedPrefs)
+	{
+		this.enabled = sharedPrefs.getBoolean(context.getString(R.string.pref_key_enabled), false);
+		this.screenCheck = sharedPrefs.getBoolean(context.getString(R.string.pref_key_screen_check), true);
+		this.beep = sharedPrefs.getBoolean(context.getString(R.string.pref_key_beep), false);
+		this.metrics = sharedPrefs.getBoolean(context.getString(R.string.pref_key_metrics), false);
+		this.delay = sharedPrefs.getLong(context.getString(R.string.pref_key_delay), MorseConfig.DEFAULT_DELAY) * 1000;
+
+		this.wait = MorseCode.DEFAULT_WAIT;
+		this.dit = sharedPrefs.getLong(context.getString(R.string.pref_key_dit), MorseCode.DEFAULT_DIT);
+		this.dah = this.dit * 3;
+		this.gap = this.dit;
+		this.short_gap = (int) sharedPrefs.getLong(context.getString(R.string.pref_key_short_gap), MorseCode.DEFAULT_SHORT_GAP);
+		this.medium_gap = (int) sharedPrefs.getLong(context.getString(R.string.pref_key_medium_gap), MorseCode.DEFAULT_MEDIUM_GAP);
+		this.alphabet = MorseAlphabet.getInstance(
+				sharedPrefs.getBoolean(context.getString(R.string.pref_key_use_numbers), true),
+				sharedPrefs.getBoolean(context.getString(R.string.pref_key_use_symbols), true),
+				sharedPrefs.getBoolean(context.getString(R.string.pref_key_use_prosigns), true));
+		this.encoder = new MorseEncoder(this.alphabet, this.short_gap, this.medium_gap);
+		this.templates = new PatternTemplates(this.alphabet, this.dit, this.dah, this.gap);
+		this.abbreviator = sharedPrefs.getBoolean(context.getString(R.string.pref_key_abbreviate), false)
+				? new Abbreviator(this.alphabet, this.dit, this.dah, this.gap, this.short_gap, this.medium_gap)
+				: null;
+		this.estimator = new DurationEstimator(this.alphabet, this.templates, this.short_gap, this.medium_gap, this.wait);
+		this.maxDuration = sharedPrefs.getLong(context.getString(R.string.pref_key_max_duration), 0) * 1000;
+		this.truncationPolicy = MorseConfig.truncationPolicy(sharedPrefs.getString(context.getString(R.string.pref_key_truncation_policy),
+				context.getString(R.string.pref_default_truncation_policy)));
+		// Waveforms are only computed when they will be played.
+		this.synthesizer = this.beep
+				? new ToneSynthesizer(ToneSynthesizer.DEFAULT_SAMPLE_RATE, ToneSynthesizer.DEFAULT_FREQUENCY, this.dit, this.dah)
+				: null;
+
+		this.queuePolicy = MorseConfig.queuePolicy(sharedPrefs.getString(context.getString(R.string.pref_key_queue_policy),
+				context.getString(R.string.pref_default_queue_policy)));
+		this.queueDepth = (int) sharedPrefs.getLong(context.getString(R.string.pref_key_queue_depth), MorseConfig.DEFAULT_QUEUE_DEPTH);
+	}
+
+	/**
+	 * Reads a snapshot of the current preferences.
+	 * @param context - context used to resolve the preference keys.
+	 * @param sharedPrefs - the preferences to read.
+	 * @return the snapshot.
+	 */
+	public static MorseConfig fromPreferences(Context context, SharedPreferences sharedPrefs)
+	{
+		final long start = Metrics.start();
+		final MorseConfig config = new MorseConfig(context, sharedPrefs);
+		Metrics.stop(Metrics.Stage.PREFERENCES, start);
+		return config;
+	}
+
+	/**
+	 * Encodes a message with this configuration, abbreviating it first if enabled,
+	 * and cutting it short if it is over the time budget.
+	 * @param message - the plaintext message.
+	 * @param sender - sender of the message, sent first if the message is cut short
+	 *                 under TruncationPolicy.SENDER_AND_FIRST_WORDS; may be null.
+	 * @return alternating off/on durations, starting with the wait.
+	 */
+	@Override
+	public long[] encode(String message, String sender)
+	{
+		// Trim first, as encoding does, so that leading whitespace cannot hide the first word.
+		message = message.trim();
+		long start;
+		if (this.abbreviator != null)
+		{
+			start = Metrics.start();
+			final Abbreviator.Result abbreviated = this.abbreviator.abbreviate(message);
+			message = abbreviated.getText();
+			Metrics.stop(Metrics.Stage.ABBREVIATE, start);
+			Metrics.count(Metrics.Counter.ABBREVIATION_SAVED_MS, abbreviated.getSavedTime());
+		}
+		if (this.maxDuration > 0)
+		{
+			if (this.usesSender() && sender != null && this.estimator.estimate(message) > this.maxDuration)
+				message = sender + MorseConfig.SPACE + message;
+			message = this.estimator.truncate(message, this.maxDuration);
+		}
+		start = Metrics.start();
+		final Ciphertext ciphertext = this.encoder.encode(message);
+		Metrics.stop(Metrics.Stage.PARSE, start);
+		start = Metrics.start();
+		final long[] pattern = ciphertext.toPattern(this.wait, this.templates);
+		Metrics.stop(Metrics.Stage.PATTERN, start);
+		return pattern;
+	}
+
+	/**
+	 * @return true if the sender of a message can change its pattern.
+	 */
+	@Override
+	public boolean usesSender()
+	{
+		return this.maxDuration > 0 && this.truncationPolicy == TruncationPolicy.SENDER_AND_FIRST_WORDS;
+	}
+
+	/**
+	 * @return the estimator of message durations for this configuration.
+	 */
+	public DurationEstimator getEstimator()
+	{
+		return this.estimator;
+	}
+
+	/**
+	 * @return the longest a message may play, in milliseconds, or 0 if there is no limit.
+	 */
+	public long getMaxDuration()
+	{
+		return this.maxDuration;
+	}
+
+	/**
+	 * @return the abbreviator applied before encoding, or null if messages are sent as written.
+	 */
+	public Abbreviator getAbbreviator()
+	{
+		return this.abbreviator;
+	}
+
+	/**
+	 * @param encoder - another snapshot.
+	 * @return true if the other snapshot encodes every message to the same pattern as this one.
+	 */
+	@Override
+	public boolean samePattern(PatternEncoder encoder)
+	{
+		if (!(encoder instanceof MorseConfig))
+			return false;
+		final MorseConfig other = (MorseConfig) encoder;
+		return this.alphabet == other.alphabet && (this.abbreviator == null) == (other.abbreviator == null)
+				&& this.maxDuration == other.maxDuration && this.truncationPolicy == other.truncationPolicy
+				&& this.short_gap == other.short_gap && this.medium_gap == other.medium_gap
+				&& this.wait == other.wait && this.dit == other.dit && this.dah == other.dah && this.gap == other.gap;
+	}
+
+	/**
+	 * @return a hash code of the settings that affect patterns, consistent with samePattern().
+	 */
+	@Override
+	public int patternHashCode()
+	{
+		int hash = System.identityHashCode(this.alphabet);
+		hash = 31 * hash + (this.abbreviator == null ? 0 : 1);
+		hash = 31 * hash + (int) (this.maxDuration ^ (this.maxDuration >>> 32));
+		hash = 31 * hash + this.truncationPolicy.ordinal();
+		hash = 31 * hash + this.short_gap;
+		hash = 31 * hash + this.medium_gap;
+		hash = 31 * hash + (int) (this.wait ^ (this.wait >>> 32));
+		hash = 31 * hash + (int) (this.dit ^ (this.dit >>> 32));
+		hash = 31 * hash + (int) (this.dah ^ (this.dah >>> 32));
+		hash = 31 * hash + (int) (this.gap ^ (this.gap >>> 32));
+		return hash;
+	}
+
+	/**
+	 * @return true if SMSMorsify is turned on.
+	 */
+	public boolean isEnabled()
+	{
+		return this.enabled;
+	}
+
+	/**
+	 * @return true if messages are to be skipped while the screen is on.
+	 */
+	public boolean isScreenCheck()
+	{
+		return this.screenCheck;
+	}
+
+	/**
+	 * @return the encoder for the alphabet and gap lengths, shared by every message.
+	 */
+	public MorseEncoder getEncoder()
+	{
+		return this.encoder;
+	}
+
+	/**
+	 * @return true if timing metrics are to be collected.
+	 */
+	public boolean isMetrics()
+	{
+		return this.metrics;
+	}
+
+	/**
+	 * @return true if messages are also to be played as a tone.
+	 */
+	public boolean isBeep()
+	{
+		return this.beep;
+	}
+
+	/**
+	 * @return the synthesizer for the tone, or null if the tone is not played.
+	 */
+	public ToneSynthesizer getSynthesizer()
+	{
+		return this.synthesizer;
+	}
+
+	/**
+	 * @return delay between receiving a message and playing it, in milliseconds.
+	 */
+	public long getDelay()
+	{
+		return this.delay;
+	}
+
+	/**
+	 * @return duration of a dot, in milliseconds.
+	 */
+	public long getDit()
+	{
+		return this.dit;
+	}
+
+	/**
+	 * @return duration of the gap between words, at which patterns may be split.
+	 */
+	public long getWordGap()
+	{
+		return this.gap * this.medium_gap;
+	}
+
+	/**
+	 * @return the gap length between Morse letters, in dots.
+	 */
+	public int getShortGap()
+	{
+		return this.short_gap;
+	}
+
+	/**
+	 * @return the gap length between Morse words, in dots.
+	 */
+	public int getMediumGap()
+	{
+		return this.medium_gap;
+	}
+
+	/**
+	 * @return the alphabet and prosign dictionary selected.
+	 */
+	public MorseAlphabet getAlphabet()
+	{
+		return this.alphabet;
+	}
+
+	/**
+	 * @return what to discard when messages arrive faster than they can be played.
+	 */
+	public QueuePolicy getQueuePolicy()
+	{
+		return this.queuePolicy;
+	}
+
+	/**
+	 * @return maximum number of messages waiting to be played.
+	 */
+	public int getQueueDepth()
+	{
+		return this.queueDepth;
+	}
+
+	/**
+	 * @param name - name of a QueuePolicy constant, as stored by the preference; may be null.
+	 * @return the named policy, or the default policy if the name is not recognized.
+	 */
+	private static QueuePolicy queuePolicy(String name)
+	{
+		if (name != null)
+		{
+			for (QueuePolicy policy : QueuePolicy.values())
+				if (policy.name().equals(name))
+					return policy;
+		}
+		return QueuePolicy.DROP_OLDEST;
+	}
+
+	/**
+	 * @param name - name of a TruncationPolicy constant, as stored by the preference; may be null.
+	 * @return the named policy, or the default policy if the name is not recognized.
+	 */
+	private static TruncationPolicy truncationPolicy(String name)
+	{
+		if (name != null)
+		{
+			for (TruncationPolicy policy : TruncationPolicy.values())
+				if (policy.name().equals(name))
+					return policy;
+		}
+		return TruncationPolicy.FIRST_WORDS;
+	}
+
+	private static final char SPACE					= ' ';
+	private static final long DEFAULT_DELAY			= 5;
+	private static final long DEFAULT_QUEUE_DEPTH	= 5;
+}
@@ -0,0 +1,225 @@
+package com.savanto.android.smsmorsify;
+
+import java.util.Map;
+
+/**
+ * Decodes Morse back into plaintext, using the same alphabet and prosign tables as MorseCode.
+ * Symbols are decoded through a perfect-hash table indexed by the packed code of Morse:
+ * signals are accumulated into an int as they are read, and the finished symbol is a
+ * single array read, so each symbol decodes in O(symbol length) with no string building.
+ *
+ * Where a prosign has the same Morse as a character, such as <AR> and '+',
+ * the character is decoded. Unknown symbols decode as UNKNOWN.
+ * Decoders are immutable and thread-safe.
+ *
+ * @author savanto
+ */
+public class MorseDecoder
+{
+	/**
+	 * Plaintext emitted for Morse symbols that are not in the alphabet.
+	 */
+	public static final char UNKNOWN = '#';
+
+	/**
+	 * Plaintext of each symbol, indexed by Morse.code().
+	 */
+	private final String[] symbols;
+	/**
+	 * Longest symbol in the table.
+	 */
+	private final int maxLength;
+
+	/**
+	 * Creates a decoder for the full default alphabet and prosign dictionary.
+	 */
+	public MorseDecoder()
+	{
+		this(MorseAlphabet.getInstance(true, true, true));
+	}
+
+	/**
+	 * @param alphabet - the alphabet and prosign dictionary to decode.
+	 */
+	public MorseDecoder(MorseAlphabet alphabet)
+	{
+		int maxLength = 0;
+		for (Morse morse : alphabet.getAlphabet().values())
+			maxLength = Math.max(maxLength, morse.length());
+		for (Morse morse : alphabet.getDictionary().values())
+			maxLength = Math.max(maxLength, morse.length());
+		this.maxLength = maxLength;
+
+		// Codes of symbols up to maxLength signals are below the sentinel bit 1 << (maxLength + 1).
+		this.symbols = new String[1 << (maxLength + 1)];
+		// Prosigns first, so that characters with the same Morse take precedence.
+		for (Map.Entry<String, Morse> entry : alphabet.getDictionary().entrySet())
+			this.symbols[entry.getValue().code()] = entry.getKey();
+		for (Map.Entry<Character, Morse> entry : alphabet.getAlphabet().entrySet())
+			this.symbols[entry.getValue().code()] = String.valueOf(entry.getKey());
+	}
+
+	/**
+	 * Decodes a Morse string, such as produced by MorseCode.toString().
+	 * Dots (.) and dashes (-) are signals; a single space separates letters;
+	 * a newline, a slash or two or more spaces separate words.
+	 * @param morse - the Morse to decode.
+	 * @return the plaintext, with words separated by single spaces.
+	 */
+	public String decode(CharSequence morse)
+	{
+		final Decoding decoding = new Decoding(morse.length());
+		int spaces = 0;
+		char c;
+		for (int i = 0; i < morse.length(); i++)
+		{
+			c = morse.charAt(i);
+			switch (c)
+			{
+				case Morse.DIT:
+				case Morse.DAH:
+					if (spaces > 1)
+						decoding.endWord();
+					spaces = 0;
+					decoding.signal(c == Morse.DAH);
+					break;
+				case MorseDecoder.LETTER_SEPARATOR:
+					decoding.endLetter();
+					spaces++;
+					break;
+				case MorseDecoder.WORD_SEPARATOR:
+				case MorseDecoder.LINE_SEPARATOR:
+					decoding.endWord();
+					spaces = 0;
+					break;
+				default:
+					throw new IllegalArgumentException("Invalid Morse character '" + c + "' at " + i);
+			}
+		}
+		return decoding.finish();
+	}
+
+	/**
+	 * Decodes a vibration pattern produced with known timing, such as by MorseCode.toPattern().
+	 * Durations are classified by the nearest of the expected values.
+	 * @param pattern - alternating off/on durations, starting with the wait, which is ignored.
+	 * @param dit - duration of a dot.
+	 * @param dah - duration of a dash.
+	 * @param gap - duration of the gap between signals.
+	 * @param short_gap - the gap length between Morse letters, in gaps.
+	 * @param medium_gap - the gap length between Morse words, in gaps.
+	 * @return the plaintext, with words separated by single spaces.
+	 */
+	public String decode(long[] pattern, long dit, long dah, long gap, int short_gap, int medium_gap)
+	{
+		// Thresholds halfway between the expected durations.
+		final long signalThreshold = (dit + dah) / 2;
+		final long letterThreshold = gap * (1 + short_gap) / 2;
+		final long wordThreshold = gap * (short_gap + medium_gap) / 2;
+
+		final Decoding decoding = new Decoding(pattern.length / 4);
+		for (int i = 1; i < pattern.length; i++)
+		{
+			if (i % 2 == 1)
+				decoding.signal(pattern[i] > signalThreshold);
+			else if (pattern[i] > wordThreshold)
+				decoding.endWord();
+			else if (pattern[i] > letterThreshold)
+				decoding.endLetter();
+		}
+		return decoding.finish();
+	}
+
+	/**
+	 * @param code - packed Morse code, as returned by Morse.code().
+	 * @return the plaintext of the symbol, or null if it is unknown.
+	 */
+	String lookup(int code)
+	{
+		return code < this.symbols.length ? this.symbols[code] : null;
+	}
+
+	/**
+	 * @param capacity - expected length of the plaintext.
+	 * @return a new decoding state, for decoders that classify signals themselves.
+	 */
+	Decoding newDecoding(int capacity)
+	{
+		return new Decoding(capacity);
+	}
+
+	/**
+	 * State of one decoding: the symbol being read, and the plaintext so far.
+	 */
+	class Decoding
+	{
+		private final StringBuilder plaintext;
+		private int bits = 0;
+		private int length = 0;
+		private boolean pendingSpace = false;
+
+		Decoding(int capacity)
+		{
+			this.plaintext = new StringBuilder(capacity);
+		}
+
+		/**
+		 * Adds a signal to the symbol being read.
+		 * @param dah - true for a dash, false for a dot.
+		 */
+		void signal(boolean dah)
+		{
+			// Symbols too long for the table cannot be decoded; keep counting, but stop packing.
+			if (dah && this.length < MorseDecoder.this.maxLength)
+				this.bits |= 1 << this.length;
+			this.length++;
+		}
+
+		/**
+		 * Ends the symbol being read, if any, and appends its plaintext.
+		 */
+		void endLetter()
+		{
+			if (this.length == 0)
+				return;
+
+			if (this.pendingSpace)
+				this.plaintext.append(MorseDecoder.SPACE);
+			this.pendingSpace = false;
+
+			final String symbol = this.length <= MorseDecoder.this.maxLength
+					? MorseDecoder.this.lookup(this.bits | (1 << this.length)) : null;
+			if (symbol != null)
+				this.plaintext.append(symbol);
+			else
+				this.plaintext.append(MorseDecoder.UNKNOWN);
+
+			this.bits = 0;
+			this.length = 0;
+		}
+
+		/**
+		 * Ends the word being read; a space is written before the next letter.
+		 */
+		void endWord()
+		{
+			this.endLetter();
+			if (this.plaintext.length() > 0)
+				this.pendingSpace = true;
+		}
+
+		/**
+		 * @return the decoded plaintext.
+		 */
+		String finish()
+		{
+			this.endLetter();
+			return this.plaintext.toString();
+		}
+	}
+
+	private static final char SPACE				= ' ';
+	private static final char LETTER_SEPARATOR	= ' ';
+	private static final char WORD_SEPARATOR	= '/';
+	private static final char LINE_SEPARATOR	= '\n';
+}
@@ -0,0 +1,125 @@
+package com.savanto.android.smsmorsify;
+
+import java.util.ArrayList;
+
+/**
+ * Encodes plaintext messages into Ciphertext, with a fixed alphabet and gap lengths.
+ * An encoder holds no per-message state: each call to encode() tokenizes the message
+ * with its own MorseTokenizer, so one encoder may be built once and shared by every
+ * thread, and its results are immutable.
+ *
+ * @author savanto
+ */
+public final class MorseEncoder
+{
+	private final MorseAlphabet alphabet;
+	private final int short_gap;
+	private final int medium_gap;
+
+	/**
+	 * Creates an encoder for the full default alphabet, with default gap lengths.
+	 */
+	public MorseEncoder()
+	{
+		this(MorseAlphabet.getInstance(true, true, true), MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP);
+	}
+
+	/**
+	 * @param alphabet - the alphabet and prosign dictionary to encode with.
+	 * @param short_gap - the gap length to set between Morse letters.
+	 * @param medium_gap - the gap length to set between Morse words.
+	 */
+	public MorseEncoder(MorseAlphabet alphabet, int short_gap, int medium_gap)
+	{
+		this.alphabet = alphabet;
+		this.short_gap = short_gap;
+		this.medium_gap = medium_gap;
+	}
+
+	/**
+	 * Encodes a message. Leading and trailing whitespace is ignored, as String.trim() does.
+	 * @param plaintext - the plaintext message.
+	 * @return the encoded message.
+	 */
+	public Ciphertext encode(CharSequence plaintext)
+	{
+		// Alphabet lookup is case-insensitive, so no conversion is needed.
+		int end = plaintext.length();
+		while (end > 0 && plaintext.charAt(end - 1) <= MorseEncoder.SPACE)
+			end--;
+
+		final Collector collector = new Collector();
+		final MorseTokenizer tokenizer = new MorseTokenizer(this.alphabet, collector);
+		tokenizer.write(plaintext, 0, end);
+		tokenizer.finish();
+		return collector.toCiphertext(this.short_gap, this.medium_gap);
+	}
+
+	/**
+	 * @return the alphabet encoded with.
+	 */
+	public MorseAlphabet getAlphabet()
+	{
+		return this.alphabet;
+	}
+
+	/**
+	 * @return the gap length between Morse letters, in dots.
+	 */
+	public int getShortGap()
+	{
+		return this.short_gap;
+	}
+
+	/**
+	 * @return the gap length between Morse words, in dots.
+	 */
+	public int getMediumGap()
+	{
+		return this.medium_gap;
+	}
+
+	/**
+	 * Gathers the tokens of one message into flat arrays.
+	 */
+	private static class Collector implements MorseTokenizer.Listener
+	{
+		private final ArrayList<Morse> letters = new ArrayList<Morse>();
+		private int[] wordEnds = new int[MorseEncoder.INITIAL_WORDS];
+		private int words = 0;
+
+		@Override
+		public void onLetter(Morse morse)
+		{
+			this.letters.add(morse);
+		}
+
+		@Override
+		public void onWordEnd()
+		{
+			if (this.words == this.wordEnds.length)
+				this.wordEnds = MorseEncoder.copy(this.wordEnds, 2 * this.words);
+			this.wordEnds[this.words++] = this.letters.size();
+		}
+
+		Ciphertext toCiphertext(int short_gap, int medium_gap)
+		{
+			return new Ciphertext(this.letters.toArray(new Morse[this.letters.size()]),
+					MorseEncoder.copy(this.wordEnds, this.words), short_gap, medium_gap);
+		}
+	}
+
+	/**
+	 * Copies the start of an array into a new one of the given length, by hand, as
+	 * Arrays.copyOf() needs API 9.
+	 */
+	private static int[] copy(int[] array, int length)
+	{
+		final int[] copy = new int[length];
+		System.arraycopy(array, 0, copy, 0, Math.min(array.length, length));
+		return copy;
+	}
+
+	private static final char SPACE		= ' ';
+	private static final int INITIAL_WORDS	= 16;
+}
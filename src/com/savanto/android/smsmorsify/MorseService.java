@@ -1,24 +1,38 @@
 package com.savanto.android.smsmorsify;
 
-import android.app.IntentService;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.media.AudioManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
 import android.os.PowerManager;
-import android.os.SystemClock;
 import android.os.Vibrator;
 import android.preference.PreferenceManager;
 
 /**
- * @author savanto
+ * Encodes incoming messages on a worker thread and hands the patterns to a
+ * PlaybackScheduler, which plays them in order on its own thread once their
+ * delay has elapsed. The worker never sleeps, so message N+1 is encoded
+ * while message N is waiting or playing.
+ * The service stops itself once every message it was started for is done.
  *
+ * @author savanto
  */
-public class MorseService extends IntentService
+public class MorseService extends Service
 {
-	private static final long DEFAULT_DELAY	= 5;
-	private static final int DEFAULT_REPEAT	= -1;
+	private static final long CHUNK_MS		= 3000;
+	private static final long CACHE_BYTES	= 256 * 1024;
+	private static final String METRICS_FILE	= "metrics.txt";
 
 
 	/**
@@ -26,10 +40,49 @@ public class MorseService extends IntentService
 	 */
 	private ScreenOnReceiver screenOnReceiver;
 
-	public MorseService()
+	/**
+	 * Worker thread on which messages are encoded, one at a time.
+	 */
+	private HandlerThread workerThread;
+	private Handler worker;
+
+	/**
+	 * Plays encoded patterns on the Vibrator, and as a tone if enabled; shut down when the service is stopped.
+	 * The audio sink is created the first time the tone is enabled.
+	 */
+	private PlaybackScheduler scheduler;
+	private VibratorSink vibratorSink;
+	private volatile AudioSink audioSink;
+
+	/**
+	 * Patterns of recent messages, so that repeated messages are not encoded again.
+	 * Kept for the life of the service.
+	 */
+	private final PatternCache patternCache = new PatternCache(MorseService.CACHE_BYTES);
+
+	/**
+	 * Snapshot of the settings, replaced whenever they change. SharedPreferences only
+	 * holds its listeners weakly, so the listener is kept here for the life of the service.
+	 */
+	private volatile MorseConfig config;
+	private SharedPreferences sharedPrefs;
+	private final SharedPreferences.OnSharedPreferenceChangeListener configListener = new SharedPreferences.OnSharedPreferenceChangeListener()
 	{
-		super("MorseService");
-	}
+		@Override
+		public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key)
+		{
+			MorseService.this.loadConfig(sharedPreferences);
+		}
+	};
+
+	/**
+	 * Number of messages received and not yet played or dropped,
+	 * and the most recent start id, used to stop the service when idle.
+	 * The start id is only touched on the main thread.
+	 */
+	private final AtomicInteger outstanding = new AtomicInteger(0);
+	private int lastStartId;
+	private final Handler main = new Handler();
 
 	@Override
 	public void onCreate()
@@ -42,63 +95,217 @@ public class MorseService extends IntentService
 		intentFilter.addAction(Intent.ACTION_SCREEN_ON);
 		intentFilter.addAction(Intent.ACTION_SCREEN_OFF);
 		this.registerReceiver(this.screenOnReceiver, intentFilter);
+
+		this.workerThread = new HandlerThread("MorseService");
+		this.workerThread.start();
+		this.worker = new Handler(this.workerThread.getLooper());
+
+		this.vibratorSink = new VibratorSink((Vibrator) this.getSystemService(Context.VIBRATOR_SERVICE));
+		this.scheduler = new PlaybackScheduler(new PatternSink()
+				{
+					@Override
+					public void play(long[] pattern)
+					{
+						MorseService.this.vibratorSink.play(pattern);
+						final AudioSink audioSink = MorseService.this.audioSink;
+						if (audioSink != null && MorseService.this.config.isBeep())
+							audioSink.play(pattern);
+					}
+
+					@Override
+					public void cancel()
+					{
+						MorseService.this.vibratorSink.cancel();
+						final AudioSink audioSink = MorseService.this.audioSink;
+						if (audioSink != null)
+							audioSink.cancel();
+					}
+				}, PlaybackClock.SYSTEM, MorseService.CHUNK_MS, new PlaybackScheduler.Listener()
+				{
+					@Override
+					public void onPlaybackFinished(boolean completed)
+					{
+						MorseService.this.done();
+					}
+				});
+
+		// Read the settings once, and again only when they change.
+		this.sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+		this.loadConfig(this.sharedPrefs);
+		this.sharedPrefs.registerOnSharedPreferenceChangeListener(this.configListener);
 	}
 
-	/* (non-Javadoc)
-	 * @see android.app.IntentService#onHandleIntent(android.content.Intent)
-	 */
 	@Override
-	protected void onHandleIntent(Intent intent)
+	public int onStartCommand(final Intent intent, int flags, int startId)
 	{
-		// Get SharedPreferences
-		SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+		// Arm the delay from the time the message arrived, not from when it is encoded.
+		final long receivedAt = this.scheduler.getClock().uptimeMillis();
+		this.lastStartId = startId;
+		this.outstanding.incrementAndGet();
+
+		this.worker.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (!MorseService.this.encode(intent, receivedAt))
+					MorseService.this.done();
+			}
+		});
+		return Service.START_NOT_STICKY;
+	}
+
+	/**
+	 * Encodes a message and schedules its playback. Runs on the worker thread.
+	 * @param intent - the intent carrying the message.
+	 * @param receivedAt - scheduler clock time at which the message was received.
+	 * @return true if the message was scheduled, false if it was dropped, including
+	 *         by the queue policy.
+	 */
+	private boolean encode(Intent intent, long receivedAt)
+	{
+		// Take one snapshot of the settings for the whole message.
+		final MorseConfig config = this.config;
 
 		// Do nothing if SMSMorsify is set to off.
-		if (! sharedPrefs.getBoolean(this.getString(R.string.pref_key_enabled), false))
-			return;
+		if (! config.isEnabled())
+			return false;
 
 		// Check if user has enabled the screen-on check
-		if (sharedPrefs.getBoolean(this.getString(R.string.pref_key_screen_check), true))
+		if (config.isScreenCheck())
 		{
 			// Do nothing if phone screen is on.
 			if (((PowerManager) this.getSystemService(Context.POWER_SERVICE)).isScreenOn())
-				return;
+				return false;
 		}
 
 		// Do nothing if phone is in silent mode
 		if (((AudioManager) this.getSystemService(Context.AUDIO_SERVICE)).getRingerMode() == AudioManager.RINGER_MODE_SILENT)
-			return;
-
-		// Retrieve pattern settings from shared preferences.
-		final long WAIT_MS			= MorseCode.DEFAULT_WAIT;
-		final long DELAY_SECONDS	= sharedPrefs.getLong(this.getString(R.string.pref_key_delay), MorseService.DEFAULT_DELAY);
-		final long DIT_MS			= sharedPrefs.getLong(this.getString(R.string.pref_key_dit), MorseCode.DEFAULT_DIT);
-		final long DAH_MS			= DIT_MS * 3;
-		final long GAP_MS			= DIT_MS;
-		final int SHORT_GAP			= (int) sharedPrefs.getLong(this.getString(R.string.pref_key_short_gap), MorseCode.DEFAULT_SHORT_GAP);
-		final int MEDIUM_GAP		= (int) sharedPrefs.getLong(this.getString(R.string.pref_key_medium_gap), MorseCode.DEFAULT_MEDIUM_GAP);
-		final boolean USE_NUMBERS	= sharedPrefs.getBoolean(this.getString(R.string.pref_key_use_numbers), true);
-		final boolean USE_SYMBOLS	= sharedPrefs.getBoolean(this.getString(R.string.pref_key_use_symbols), true);
-		final boolean USE_PROSIGNS	= sharedPrefs.getBoolean(this.getString(R.string.pref_key_use_prosigns), true);
-
-		// Create Morse code from message and preferences
-		MorseCode morseCode = new MorseCode(intent.getStringExtra(MorseService.MESSAGE_KEY),
-				SHORT_GAP, MEDIUM_GAP, USE_NUMBERS, USE_SYMBOLS, USE_PROSIGNS);
-
-		// Delay Morse transmission to allow Notification sound/vibration to finish.
-		SystemClock.sleep(DELAY_SECONDS * 1000);
-
-		// Vibrate the message pattern
-		((Vibrator) this.getSystemService(Context.VIBRATOR_SERVICE))
-			.vibrate(morseCode.toPattern(WAIT_MS, DIT_MS, DAH_MS, GAP_MS), MorseService.DEFAULT_REPEAT);
+			return false;
+
+		// Delay Morse transmission to allow Notification sound/vibration to finish,
+		// then vibrate the message pattern, chunk by chunk, until done or cancelled.
+		// The whole pattern is encoded up front, as the cache and the queue policies
+		// need it; encoding takes milliseconds, well within the delay.
+		final String sender = intent.getStringExtra(MorseService.SENDER_KEY);
+		return this.scheduler.schedule(this.patternCache.encode(intent.getStringExtra(MorseService.MESSAGE_KEY), sender, config),
+				config.getWordGap(), receivedAt + config.getDelay(), sender);
+	}
+
+	/**
+	 * Replaces the settings snapshot with one read from the current preferences,
+	 * and applies the queue settings to the scheduler.
+	 */
+	private void loadConfig(SharedPreferences sharedPrefs)
+	{
+		final MorseConfig config = MorseConfig.fromPreferences(this, sharedPrefs);
+		Metrics.setEnabled(config.isMetrics());
+		this.scheduler.configure(config.getQueuePolicy(), config.getQueueDepth());
+		if (config.isBeep())
+		{
+			if (this.audioSink == null)
+				this.audioSink = new AudioSink(config.getSynthesizer());
+			else
+				this.audioSink.setSynthesizer(config.getSynthesizer());
+		}
+		this.config = config;
+	}
+
+	/**
+	 * Called as each message is played or dropped; stops the service when none are left.
+	 * The check is repeated on the main thread, where no new start can interleave with it.
+	 */
+	private void done()
+	{
+		if (this.outstanding.decrementAndGet() == 0)
+		{
+			this.main.post(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					if (MorseService.this.outstanding.get() == 0)
+						MorseService.this.stopSelf(MorseService.this.lastStartId);
+				}
+			});
+		}
+	}
+
+	@Override
+	public IBinder onBind(Intent intent)
+	{
+		return null;
+	}
+
+	/**
+	 * Reports the pipeline metrics and the statistics of the queue, cache and reassembler:
+	 * adb shell dumpsys activity service com.savanto.android.smsmorsify/.MorseService
+	 */
+	@Override
+	protected void dump(FileDescriptor fd, PrintWriter writer, String[] args)
+	{
+		Metrics.dump(writer);
+
+		writer.println("Queue");
+		writer.println("  waiting " + this.scheduler.size() + ", peak " + this.scheduler.getPeakDepth());
+		writer.println("  dropped oldest " + this.scheduler.getDroppedOldestCount()
+				+ ", dropped newest " + this.scheduler.getDroppedNewestCount()
+				+ ", coalesced " + this.scheduler.getCoalescedCount()
+				+ ", superseded " + this.scheduler.getSupersededCount());
+
+		writer.println("Pattern cache");
+		writer.println("  patterns " + this.patternCache.size() + ", bytes " + this.patternCache.getBytes());
+		writer.println("  hits " + this.patternCache.getHitCount() + ", misses " + this.patternCache.getMissCount()
+				+ ", evictions " + this.patternCache.getEvictionCount());
+
+		final SmsReassembler reassembler = SMSReceiver.getReassembler();
+		writer.println("Reassembler");
+		writer.println("  pending " + reassembler.getPendingCount() + ", bytes " + reassembler.getBytes());
+		writer.println("  timed out " + reassembler.getTimedOutCount() + ", evicted " + reassembler.getEvictedCount()
+				+ ", duplicates " + reassembler.getDuplicateCount());
 	}
 
 	@Override
 	public void onDestroy()
 	{
+		this.sharedPrefs.unregisterOnSharedPreferenceChangeListener(this.configListener);
+
+		// Stop any message still playing, and drop those waiting.
+		this.scheduler.shutdown();
+
+		// Keep the metrics after the service stops, where dumpsys cannot reach them.
+		// The file is written on the worker, off the main thread, after any message it
+		// is still encoding; the worker then quits, as quit() would drop the pending export.
+		final File metrics = Metrics.isEnabled() ? new File(this.getFilesDir(), MorseService.METRICS_FILE) : null;
+		final HandlerThread workerThread = this.workerThread;
+		this.worker.post(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (metrics != null)
+				{
+					try
+					{
+						Metrics.export(metrics);
+					}
+					catch (IOException e)
+					{
+						// Metrics are best effort.
+					}
+				}
+				workerThread.quit();
+			}
+		});
+		if (this.audioSink != null)
+			this.audioSink.release();
+
 		// Unregister the screenOnReceiver
 		this.unregisterReceiver(this.screenOnReceiver);
+
+		super.onDestroy();
 	}
 
 	public static final String MESSAGE_KEY = "message";
+	public static final String SENDER_KEY = "sender";
 }
@@ -0,0 +1,164 @@
+package com.savanto.android.smsmorsify;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Encodes plaintext into vibration pattern durations incrementally, as characters
+ * are consumed, instead of building the whole ciphertext and pattern first.
+ * Segments are delivered to a SegmentListener as soon as they are known, so
+ * playback can begin after the first character. For the same input the segments
+ * are identical to the elements of MorseCode.toPattern().
+ *
+ * An encoder holds the state of one message and is not thread-safe.
+ *
+ * @author savanto
+ */
+public class MorseStreamEncoder
+{
+	/**
+	 * Receives pattern durations, in order.
+	 */
+	public interface SegmentListener
+	{
+		/**
+		 * @param duration - duration of the segment.
+		 * @param on - true if the vibrator is on for this segment, false for a wait or gap.
+		 */
+		public void onSegment(long duration, boolean on);
+	}
+
+	private final MorseTokenizer tokenizer;
+	private final SegmentListener listener;
+	private final long dit;
+	private final long dah;
+	private final long gap;
+	private final long short_gap;
+	private final long medium_gap;
+
+	/**
+	 * Creates a stream encoder with default alphabet, gaps and pattern values.
+	 * @param listener - receives the pattern durations.
+	 */
+	public MorseStreamEncoder(SegmentListener listener)
+	{
+		this(MorseAlphabet.getInstance(true, true, true), MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP,
+				MorseCode.DEFAULT_WAIT, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP, listener);
+	}
+
+	/**
+	 * @param alphabet - the alphabet used to look up plaintext characters.
+	 * @param short_gap - the gap length to set between Morse letters.
+	 * @param medium_gap - the gap length to set between Morse words.
+	 * @param wait - duration before the first signal.
+	 * @param dit - duration of a dot.
+	 * @param dah - duration of a dash.
+	 * @param gap - duration of the gap between signals; letter and word gaps are multiples of it.
+	 * @param listener - receives the pattern durations.
+	 */
+	public MorseStreamEncoder(MorseAlphabet alphabet, int short_gap, int medium_gap,
+			long wait, long dit, long dah, long gap, SegmentListener listener)
+	{
+		this.tokenizer = new MorseTokenizer(alphabet, new Tokens(wait));
+		this.listener = listener;
+		this.dit = dit;
+		this.dah = dah;
+		this.gap = gap;
+		this.short_gap = gap * short_gap;
+		this.medium_gap = gap * medium_gap;
+	}
+
+	/**
+	 * @param c - the next plaintext character.
+	 */
+	public void write(char c)
+	{
+		this.tokenizer.write(c);
+	}
+
+	/**
+	 * @param s - the plaintext.
+	 * @param start - index of the first character to consume.
+	 * @param end - index after the last character to consume.
+	 */
+	public void write(CharSequence s, int start, int end)
+	{
+		this.tokenizer.write(s, start, end);
+	}
+
+	/**
+	 * @param s - the plaintext.
+	 */
+	public void write(CharSequence s)
+	{
+		this.tokenizer.write(s);
+	}
+
+	/**
+	 * @param reader - source of the plaintext; it is not closed.
+	 * @throws IOException if the reader fails.
+	 */
+	public void write(Reader reader) throws IOException
+	{
+		this.tokenizer.write(reader);
+	}
+
+	/**
+	 * Ends the message, flushing any closing prosign.
+	 */
+	public void finish()
+	{
+		this.tokenizer.finish();
+	}
+
+	/**
+	 * Converts tokens into pattern segments, deferring each gap until the next
+	 * letter so that no trailing gap is ever emitted.
+	 */
+	private class Tokens implements MorseTokenizer.Listener
+	{
+		/**
+		 * Duration of the first segment, written along with the first signal.
+		 */
+		private long lead;
+		private boolean first = true;
+		private boolean letterInWord = false;
+
+		public Tokens(long wait)
+		{
+			this.lead = wait;
+		}
+
+		@Override
+		public void onLetter(Morse morse)
+		{
+			final MorseStreamEncoder encoder = MorseStreamEncoder.this;
+
+			// Add the wait before the first letter, then medium gap
+			// between words and short gap between letters.
+			if (this.first)
+				encoder.listener.onSegment(this.lead, false);
+			else
+				encoder.listener.onSegment(this.letterInWord ? encoder.short_gap : encoder.medium_gap, false);
+			this.first = false;
+			this.letterInWord = true;
+
+			// Traverse signals in Morse, with gaps between them.
+			for (int k = 0; k < morse.length(); k++)
+			{
+				if (k > 0)
+					encoder.listener.onSegment(encoder.gap, false);
+				encoder.listener.onSegment(morse.isDah(k) ? encoder.dah : encoder.dit, true);
+			}
+		}
+
+		@Override
+		public void onWordEnd()
+		{
+			// A leading empty word replaces the wait with a medium gap, as in MorseCode.toPattern().
+			if (this.first)
+				this.lead = MorseStreamEncoder.this.medium_gap;
+			this.letterInWord = false;
+		}
+	}
+}
@@ -0,0 +1,279 @@
+package com.savanto.android.smsmorsify;
+
+import java.io.IOException;
+import java.io.Reader;
+/**
+ * Splits plaintext into Morse letters and word breaks as characters are consumed,
+ * using the lookup tables of a MorseAlphabet.
+ * Leading whitespace is skipped, and if the alphabet has prosigns the message is
+ * framed by the "Start transmission" (CT) and "End transmission" (SK) prosigns,
+ * each sent as a word of its own.
+ * Prosigns typed in the plaintext, such as "<SOS>", are recognized in the same
+ * pass by walking a trie over the dictionary keys, and sent as single letters.
+ * Characters are buffered only while they may still be part of a prosign, so
+ * scanning stays linear in the length of the message.
+ *
+ * A slice of a longer message, cut at a space, can be tokenized on its own by an
+ * unframed tokenizer, which neither skips leading whitespace nor sends the prosigns,
+ * and leaves the last word open. As prosigns contain no spaces, the tokens of the
+ * slices, in order, are those of the whole message without its framing.
+ *
+ * A tokenizer holds the state of one message and is not thread-safe.
+ *
+ * @author savanto
+ */
+public class MorseTokenizer
+{
+	/**
+	 * Receives the tokens of a message, in order.
+	 */
+	public interface Listener
+	{
+		/**
+		 * Called for each encodable letter or prosign.
+		 * @param morse - the Morse of the letter.
+		 */
+		public void onLetter(Morse morse);
+
+		/**
+		 * Called at the end of each word. Words may be empty, e.g. between two spaces.
+		 */
+		public void onWordEnd();
+	}
+
+	private final MorseAlphabet alphabet;
+	private final CharTrie<Morse> prosigns;
+	private final Listener listener;
+	private final boolean framed;
+	private boolean started;
+	private boolean finished;
+
+	// Prosign matching state: the trie node reached, the characters consumed
+	// since the match began, and the longest prosign matched so far.
+	private int node = CharTrie.NO_NODE;
+	private final char[] pending;
+	private int pendingLength = 0;
+	private Morse matched = null;
+	private int matchedLength = 0;
+
+	/**
+	 * @param alphabet - the alphabet used to look up plaintext characters.
+	 * @param listener - receives the letters and word breaks.
+	 */
+	public MorseTokenizer(MorseAlphabet alphabet, Listener listener)
+	{
+		this(alphabet, listener, true);
+	}
+
+	/**
+	 * @param alphabet - the alphabet used to look up plaintext characters.
+	 * @param listener - receives the letters and word breaks.
+	 * @param framed - false to tokenize a slice of a message, cut at a space: leading whitespace
+	 *                 is kept, no prosigns are sent, and finish() does not close the last word.
+	 */
+	MorseTokenizer(MorseAlphabet alphabet, Listener listener, boolean framed)
+	{
+		this.alphabet = alphabet;
+		this.prosigns = alphabet.getProsignTrie();
+		this.listener = listener;
+		this.framed = framed;
+		this.started = !framed;
+		this.pending = new char[this.prosigns.maxLength()];
+	}
+
+	/**
+	 * Consumes one plaintext character.
+	 * @param c - the next plaintext character.
+	 */
+	public void write(char c)
+	{
+		if (this.finished)
+			throw new IllegalStateException("Tokenizer already finished");
+
+		if (!this.started)
+		{
+			// Skip leading whitespace, as String.trim() does.
+			if (c <= MorseTokenizer.SPACE)
+				return;
+			this.started = true;
+
+			// Perform prosign lookup of "Start transmission" prosign CT.
+			// If prosign is found, send it as a word of its own.
+			Morse prosign = this.alphabet.getProsign(MorseCode.PROSIGN_CT);
+			if (prosign != null)
+			{
+				this.listener.onLetter(prosign);
+				this.listener.onWordEnd();
+			}
+		}
+
+		if (this.prosigns.isEmpty())
+			this.plain(c);
+		else
+			this.match(c);
+	}
+
+	/**
+	 * Advances the prosign matcher by one character.
+	 * @param c - the next plaintext character.
+	 */
+	private void match(char c)
+	{
+		// Outside a prosign, characters that cannot start one are plain.
+		if (this.node == CharTrie.NO_NODE)
+		{
+			if (this.prosigns.next(CharTrie.ROOT, c) == CharTrie.NO_NODE)
+			{
+				this.plain(c);
+				return;
+			}
+			this.node = CharTrie.ROOT;
+		}
+
+		final int next = this.prosigns.next(this.node, c);
+		if (next == CharTrie.NO_NODE)
+		{
+			// The match failed: settle the buffered characters, then retry this one.
+			this.resolve();
+			this.match(c);
+			return;
+		}
+
+		this.node = next;
+		this.pending[this.pendingLength++] = c;
+		if (this.prosigns.value(next) != null)
+		{
+			this.matched = this.prosigns.value(next);
+			this.matchedLength = this.pendingLength;
+		}
+		// Send the prosign as soon as no longer one can match.
+		if (this.prosigns.isLeaf(next))
+			this.resolve();
+	}
+
+	/**
+	 * Settles the buffered characters of a match: sends the longest prosign matched,
+	 * or else the first character as plain, then replays the rest through the matcher.
+	 */
+	private void resolve()
+	{
+		final int from;
+		final int to = this.pendingLength;
+		if (this.matched != null)
+		{
+			final Morse prosign = this.matched;
+			from = this.matchedLength;
+			this.reset();
+			this.listener.onLetter(prosign);
+		}
+		else
+		{
+			final char first = this.pending[0];
+			from = 1;
+			this.reset();
+			this.plain(first);
+		}
+		// Replay in place: the new match holds fewer characters than have been replayed,
+		// so it only overwrites those already read.
+		for (int i = from; i < to; i++)
+			this.match(this.pending[i]);
+	}
+
+	private void reset()
+	{
+		this.node = CharTrie.NO_NODE;
+		this.pendingLength = 0;
+		this.matched = null;
+		this.matchedLength = 0;
+	}
+
+	/**
+	 * Sends one character that is not part of a prosign.
+	 * @param c - the plaintext character.
+	 */
+	private void plain(char c)
+	{
+		// Check for space between words.
+		if (c == MorseTokenizer.SPACE)
+		{
+			this.listener.onWordEnd();
+			return;
+		}
+		// Perform character lookup in alphabet table; unknown characters are skipped.
+		Morse morse = this.alphabet.get(c);
+		if (morse != null)
+			this.listener.onLetter(morse);
+	}
+
+	/**
+	 * Consumes a range of plaintext characters.
+	 * @param s - the plaintext.
+	 * @param start - index of the first character to consume.
+	 * @param end - index after the last character to consume.
+	 */
+	public void write(CharSequence s, int start, int end)
+	{
+		for (int i = start; i < end; i++)
+			this.write(s.charAt(i));
+	}
+
+	/**
+	 * Consumes plaintext characters.
+	 * @param s - the plaintext.
+	 */
+	public void write(CharSequence s)
+	{
+		this.write(s, 0, s.length());
+	}
+
+	/**
+	 * Consumes all plaintext characters from a Reader, in fixed-size chunks.
+	 * The reader is not closed.
+	 * @param reader - source of the plaintext.
+	 * @throws IOException if the reader fails.
+	 */
+	public void write(Reader reader) throws IOException
+	{
+		final char[] buffer = new char[MorseTokenizer.BUFFER_SIZE];
+		int count;
+		while ((count = reader.read(buffer)) != -1)
+			for (int i = 0; i < count; i++)
+				this.write(buffer[i]);
+	}
+
+	/**
+	 * Ends the message: closes the last word and, if prosigns are in use,
+	 * sends the "End transmission" prosign SK. Messages that were empty
+	 * or all whitespace produce no tokens at all.
+	 */
+	public void finish()
+	{
+		if (this.finished)
+			return;
+		this.finished = true;
+
+		if (!this.started)
+			return;
+
+		// Settle any prosign still being matched.
+		while (this.node != CharTrie.NO_NODE)
+			this.resolve();
+		if (!this.framed)
+			return;
+
+		// Close last word.
+		this.listener.onWordEnd();
+
+		// Perform prosign lookup of "End transmission" prosign SK.
+		// If prosign is found, send it as a word of its own.
+		Morse prosign = this.alphabet.getProsign(MorseCode.PROSIGN_SK);
+		if (prosign != null)
+		{
+			this.listener.onLetter(prosign);
+			this.listener.onWordEnd();
+		}
+	}
+
+	private static final char SPACE			= ' ';
+	private static final int BUFFER_SIZE	= 1024;
+}
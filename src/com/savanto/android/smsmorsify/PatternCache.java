@@ -0,0 +1,217 @@
+package com.savanto.android.smsmorsify;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache of encoded patterns, so that repeated messages,
+ * such as alerts and confirmation codes, skip encoding entirely.
+ * Patterns are keyed by the normalized message text together with the settings that
+ * affect the pattern, and the cache is bounded by the approximate memory its entries use.
+ * Cached patterns are shared, and must not be modified by callers.
+ *
+ * All methods are thread-safe.
+ *
+ * @author savanto
+ */
+public class PatternCache
+{
+	/**
+	 * Message text, normalized so that texts encoding to the same pattern share a key,
+	 * the sender if the settings make it part of the pattern, and the settings it was encoded with.
+	 */
+	private static final class Key
+	{
+		private final String text;
+		private final String sender;
+		private final PatternEncoder encoder;
+		private final int hash;
+
+		Key(String text, String sender, PatternEncoder encoder)
+		{
+			this.text = text;
+			this.sender = encoder.usesSender() ? sender : null;
+			this.encoder = encoder;
+			this.hash = 31 * (31 * text.hashCode() + (this.sender == null ? 0 : this.sender.hashCode()))
+					+ encoder.patternHashCode();
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Key))
+				return false;
+			final Key key = (Key) o;
+			return this.hash == key.hash && this.text.equals(key.text)
+					&& (this.sender == null ? key.sender == null : this.sender.equals(key.sender))
+					&& this.encoder.samePattern(key.encoder);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return this.hash;
+		}
+	}
+
+	private final LinkedHashMap<Key, long[]> patterns;
+	private final long maxBytes;
+	private long bytes = 0;
+
+	// Cache statistics.
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	/**
+	 * @param maxBytes - approximate memory the cached patterns may use, in bytes.
+	 */
+	public PatternCache(long maxBytes)
+	{
+		// Access order, so that iteration starts at the least recently used entry.
+		this.patterns = new LinkedHashMap<Key, long[]>(PatternCache.INITIAL_CAPACITY, PatternCache.LOAD_FACTOR, true);
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Looks up the pattern of a message, encoding and caching it on a miss.
+	 * @param message - the plaintext message.
+	 * @param sender - sender of the message; may be null.
+	 * @param encoder - the settings to encode with, such as a MorseConfig.
+	 * @return alternating off/on durations, starting with the wait; shared, not to be modified.
+	 */
+	public long[] encode(String message, String sender, PatternEncoder encoder)
+	{
+		final long start = Metrics.start();
+		final long[] pattern = this.lookup(message, sender, encoder);
+		Metrics.stop(Metrics.Stage.ENCODE, start);
+		return pattern;
+	}
+
+	/**
+	 * Looks up or encodes the pattern of a message, as encode() does, untimed.
+	 */
+	private long[] lookup(String message, String sender, PatternEncoder encoder)
+	{
+		final Key key = new Key(PatternCache.normalize(message), sender, encoder);
+		long[] pattern;
+		synchronized (this)
+		{
+			pattern = this.patterns.get(key);
+			if (pattern != null)
+			{
+				this.hits++;
+				return pattern;
+			}
+			this.misses++;
+		}
+
+		// Encode outside the lock; the normalized text encodes to the same pattern.
+		pattern = encoder.encode(key.text, sender);
+
+		synchronized (this)
+		{
+			final long size = PatternCache.sizeOf(key, pattern);
+			if (size <= this.maxBytes && !this.patterns.containsKey(key))
+			{
+				this.patterns.put(key, pattern);
+				this.bytes += size;
+				// Evict least recently used patterns until back within the limit.
+				final Iterator<Map.Entry<Key, long[]>> i = this.patterns.entrySet().iterator();
+				Map.Entry<Key, long[]> eldest;
+				while (this.bytes > this.maxBytes)
+				{
+					eldest = i.next();
+					this.bytes -= PatternCache.sizeOf(eldest.getKey(), eldest.getValue());
+					i.remove();
+					this.evictions++;
+				}
+			}
+		}
+		return pattern;
+	}
+
+	/**
+	 * Empties the cache. Statistics are kept.
+	 */
+	public synchronized void clear()
+	{
+		this.patterns.clear();
+		this.bytes = 0;
+	}
+
+	/**
+	 * @return the number of patterns cached.
+	 */
+	public synchronized int size()
+	{
+		return this.patterns.size();
+	}
+
+	/**
+	 * @return approximate memory used by the cached patterns, in bytes.
+	 */
+	public synchronized long getBytes()
+	{
+		return this.bytes;
+	}
+
+	/**
+	 * @return the number of lookups that found a cached pattern.
+	 */
+	public synchronized long getHitCount()
+	{
+		return this.hits;
+	}
+
+	/**
+	 * @return the number of lookups that had to encode the message.
+	 */
+	public synchronized long getMissCount()
+	{
+		return this.misses;
+	}
+
+	/**
+	 * @return the number of patterns evicted to stay within the size limit.
+	 */
+	public synchronized long getEvictionCount()
+	{
+		return this.evictions;
+	}
+
+	/**
+	 * Normalizes message text the way encoding treats it: surrounding whitespace is trimmed,
+	 * and ASCII letters, which the alphabet and the prosign matcher look up case-insensitively,
+	 * are folded to uppercase. Other characters are kept as they are.
+	 */
+	static String normalize(String message)
+	{
+		final String trimmed = message.trim();
+		final char[] text = new char[trimmed.length()];
+		char c;
+		for (int i = 0; i < text.length; i++)
+		{
+			c = trimmed.charAt(i);
+			text[i] = (c >= 'a' && c <= 'z') ? (char) (c - 'a' + 'A') : c;
+		}
+		return new String(text);
+	}
+
+	/**
+	 * @return approximate memory used by an entry, in bytes.
+	 */
+	private static long sizeOf(Key key, long[] pattern)
+	{
+		return PatternCache.ENTRY_OVERHEAD + 2L * key.text.length() + (key.sender == null ? 0 : 2L * key.sender.length())
+				+ 8L * pattern.length;
+	}
+
+	private static final int INITIAL_CAPACITY	= 16;
+	private static final float LOAD_FACTOR		= 0.75f;
+	/**
+	 * Approximate bytes used by the map entry, key, string and array headers of each entry.
+	 */
+	private static final long ENTRY_OVERHEAD	= 128;
+}
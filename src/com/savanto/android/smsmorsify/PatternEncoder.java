@@ -0,0 +1,33 @@
+package com.savanto.android.smsmorsify;
+
+/**
+ * Encodes messages into vibration patterns with one fixed set of settings, such as a MorseConfig.
+ * Abstracted so that the PatternCache can run against a fake encoder on the JVM.
+ *
+ * @author savanto
+ */
+public interface PatternEncoder
+{
+	/**
+	 * @param message - the plaintext message.
+	 * @param sender - sender of the message; may be null.
+	 * @return alternating off/on durations, starting with the wait.
+	 */
+	public long[] encode(String message, String sender);
+
+	/**
+	 * @return true if the sender of a message can change its pattern.
+	 */
+	public boolean usesSender();
+
+	/**
+	 * @param other - another encoder.
+	 * @return true if the other encoder encodes every message to the same pattern as this one.
+	 */
+	public boolean samePattern(PatternEncoder other);
+
+	/**
+	 * @return a hash code of the settings that affect patterns, consistent with samePattern().
+	 */
+	public int patternHashCode();
+}
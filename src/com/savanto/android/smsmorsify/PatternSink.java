@@ -0,0 +1,22 @@
+package com.savanto.android.smsmorsify;
+
+/**
+ * Output device for vibration patterns, such as the Vibrator.
+ * Abstracted so that playback scheduling can run against a fake sink on the JVM.
+ *
+ * @author savanto
+ */
+public interface PatternSink
+{
+	/**
+	 * Starts playing a pattern and returns without waiting for it to finish.
+	 * Any pattern still playing is replaced.
+	 * @param pattern - alternating off/on durations in milliseconds, starting with off.
+	 */
+	public void play(long[] pattern);
+
+	/**
+	 * Stops any pattern currently playing.
+	 */
+	public void cancel();
+}
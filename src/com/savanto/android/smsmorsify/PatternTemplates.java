@@ -0,0 +1,144 @@
+package com.savanto.android.smsmorsify;
+
+/**
+ * Durations of every letter and prosign of an alphabet, compiled once for a timing
+ * configuration, so that patterns can be assembled by copying whole letters.
+ * The template of a letter of n signals holds its n signal durations with the n - 1
+ * gaps between them; the gaps between letters and words are left to the assembler.
+ * Templates are indexed by the packed code of their Morse, as are the total
+ * durations of the letters, for estimating the length of a message.
+ *
+ * Instances are immutable, and can be shared between threads.
+ *
+ * @author savanto
+ */
+public final class PatternTemplates
+{
+	private final long dit;
+	private final long dah;
+	private final long gap;
+	private final long[][] templates;
+	private final long[] durations;
+
+	/**
+	 * Creates templates with no letters compiled, for patterns built only once:
+	 * every letter is written signal by signal.
+	 * @param dit - duration of a dot.
+	 * @param dah - duration of a dash.
+	 * @param gap - duration of the gap between signals.
+	 */
+	public PatternTemplates(long dit, long dah, long gap)
+	{
+		this.dit = dit;
+		this.dah = dah;
+		this.gap = gap;
+		this.templates = new long[0][];
+		this.durations = new long[0];
+	}
+
+	/**
+	 * @param alphabet - the alphabet and prosign dictionary whose letters are compiled.
+	 * @param dit - duration of a dot.
+	 * @param dah - duration of a dash.
+	 * @param gap - duration of the gap between signals.
+	 */
+	public PatternTemplates(MorseAlphabet alphabet, long dit, long dah, long gap)
+	{
+		this.dit = dit;
+		this.dah = dah;
+		this.gap = gap;
+
+		int size = 0;
+		for (Morse morse : alphabet.getAlphabet().values())
+			size = Math.max(size, morse.code() + 1);
+		for (Morse morse : alphabet.getDictionary().values())
+			size = Math.max(size, morse.code() + 1);
+
+		this.templates = new long[size][];
+		this.durations = new long[size];
+		for (Morse morse : alphabet.getAlphabet().values())
+			this.compile(morse);
+		for (Morse morse : alphabet.getDictionary().values())
+			this.compile(morse);
+	}
+
+	private void compile(Morse morse)
+	{
+		if (this.templates[morse.code()] != null)
+			return;
+		final long[] template = new long[Math.max(0, 2 * morse.length() - 1)];
+		this.write(morse, template, 0);
+		this.templates[morse.code()] = template;
+		for (int i = 0; i < template.length; i++)
+			this.durations[morse.code()] += template[i];
+	}
+
+	/**
+	 * @param morse - a letter.
+	 * @return the duration of the letter: its signals and the gaps between them.
+	 */
+	public long duration(Morse morse)
+	{
+		final int code = morse.code();
+		if (code < this.templates.length && this.templates[code] != null)
+			return this.durations[code];
+
+		// Not in the alphabet compiled: add up signal by signal.
+		long duration = 0;
+		for (int k = 0; k < morse.length(); k++)
+			duration += (k > 0 ? this.gap : 0) + (morse.isDah(k) ? this.dah : this.dit);
+		return duration;
+	}
+
+	/**
+	 * Writes the durations of a letter, with the gaps between its signals.
+	 * @param morse - the letter.
+	 * @param pattern - destination array.
+	 * @param offset - index in pattern at which to write the first signal.
+	 * @return the index after the last signal written.
+	 */
+	int write(Morse morse, long[] pattern, int offset)
+	{
+		final int code = morse.code();
+		if (code < this.templates.length && this.templates[code] != null)
+		{
+			final long[] template = this.templates[code];
+			System.arraycopy(template, 0, pattern, offset, template.length);
+			return offset + template.length;
+		}
+
+		// Not in the alphabet compiled: write signal by signal.
+		int p = offset;
+		for (int k = 0; k < morse.length(); k++)
+		{
+			if (k > 0)
+				pattern[p++] = this.gap;
+			pattern[p++] = morse.isDah(k) ? this.dah : this.dit;
+		}
+		return p;
+	}
+
+	/**
+	 * @return duration of a dot.
+	 */
+	public long getDit()
+	{
+		return this.dit;
+	}
+
+	/**
+	 * @return duration of a dash.
+	 */
+	public long getDah()
+	{
+		return this.dah;
+	}
+
+	/**
+	 * @return duration of the gap between signals.
+	 */
+	public long getGap()
+	{
+		return this.gap;
+	}
+}
@@ -0,0 +1,19 @@
+package com.savanto.android.smsmorsify;
+
+/**
+ * Destination for 16-bit mono PCM samples rendered by a ToneSynthesizer,
+ * such as an AudioTrack or a file.
+ *
+ * @author savanto
+ */
+public interface PcmSink
+{
+	/**
+	 * Consumes samples. The buffer may be reused once the call returns.
+	 * @param samples - buffer holding the samples.
+	 * @param offset - index of the first sample to consume.
+	 * @param length - number of samples to consume.
+	 * @return true to continue rendering, false to stop.
+	 */
+	public boolean write(short[] samples, int offset, int length);
+}
@@ -0,0 +1,40 @@
+package com.savanto.android.smsmorsify;
+
+/**
+ * Monotonic time source used to schedule playback.
+ * Abstracted so that scheduling can be driven by a virtual clock on the JVM.
+ *
+ * @author savanto
+ */
+public interface PlaybackClock
+{
+	/**
+	 * @return monotonic time in milliseconds, from an arbitrary origin.
+	 */
+	public long uptimeMillis();
+
+	/**
+	 * Blocks the calling thread.
+	 * @param millis - time to sleep, in milliseconds.
+	 * @throws InterruptedException if the thread is interrupted while sleeping.
+	 */
+	public void sleep(long millis) throws InterruptedException;
+
+	/**
+	 * Clock backed by System.nanoTime() and Thread.sleep().
+	 */
+	public static final PlaybackClock SYSTEM = new PlaybackClock()
+	{
+		@Override
+		public long uptimeMillis()
+		{
+			return System.nanoTime() / 1000000;
+		}
+
+		@Override
+		public void sleep(long millis) throws InterruptedException
+		{
+			Thread.sleep(millis);
+		}
+	};
+}
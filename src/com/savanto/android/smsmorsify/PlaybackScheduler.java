@@ -0,0 +1,354 @@
+package com.savanto.android.smsmorsify;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.ListIterator;
+
+/**
+ * Plays encoded patterns one after another on a dedicated thread, each starting no
+ * earlier than its armed start time. Callers hand over a pattern and return at once,
+ * so the next message can be encoded while the previous one is waiting or playing.
+ * The queue of waiting patterns is bounded; a QueuePolicy decides what is discarded
+ * when messages arrive faster than they can be played.
+ *
+ * @author savanto
+ */
+public class PlaybackScheduler
+{
+	/**
+	 * Notified as each scheduled pattern is done with: on the playback thread when it
+	 * finishes playing, or on the scheduling thread when the queue policy discards it.
+	 */
+	public interface Listener
+	{
+		/**
+		 * @param completed - true if the pattern played to the end, false if it was cancelled or discarded.
+		 */
+		public void onPlaybackFinished(boolean completed);
+	}
+
+	/**
+	 * A pattern waiting to be played.
+	 */
+	private static class Job
+	{
+		final long[] pattern;
+		final long splitGap;
+		final long startTime;
+		final String sender;
+		/**
+		 * Clock time at which the pattern was scheduled.
+		 */
+		final long queuedAt;
+
+		Job(long[] pattern, long splitGap, long startTime, String sender, long queuedAt)
+		{
+			this.pattern = pattern;
+			this.splitGap = splitGap;
+			this.startTime = startTime;
+			this.sender = sender;
+			this.queuedAt = queuedAt;
+		}
+	}
+
+	private final PatternSink sink;
+	private final PlaybackClock clock;
+	private final long chunkDuration;
+	private final Listener listener;
+
+	private final Object lock = new Object();
+	private final LinkedList<Job> queue = new LinkedList<Job>();
+	private final Thread thread;
+	private ChunkedPlayer player;
+	private boolean shutdown = false;
+
+	private QueuePolicy policy = QueuePolicy.DROP_OLDEST;
+	private int maxDepth = PlaybackScheduler.DEFAULT_MAX_DEPTH;
+
+	// Queue statistics.
+	private int peakDepth = 0;
+	private int droppedOldest = 0;
+	private int droppedNewest = 0;
+	private int coalesced = 0;
+	private int superseded = 0;
+
+	/**
+	 * @param sink - device that plays the patterns.
+	 * @param clock - time source for start times and chunk scheduling.
+	 * @param chunkDuration - minimum chunk duration, as for ChunkedPlayer.
+	 * @param listener - notified as each pattern finishes; may be null.
+	 */
+	public PlaybackScheduler(PatternSink sink, PlaybackClock clock, long chunkDuration, Listener listener)
+	{
+		this.sink = sink;
+		this.clock = clock;
+		this.chunkDuration = chunkDuration;
+		this.listener = listener;
+		this.thread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				PlaybackScheduler.this.loop();
+			}
+		}, "PlaybackScheduler");
+		this.thread.start();
+	}
+
+	/**
+	 * Sets how the queue of waiting patterns is bounded. Applies to patterns scheduled from now on.
+	 * @param policy - what to discard when messages arrive faster than they can be played.
+	 * @param maxDepth - maximum number of patterns waiting, excluding the one playing; at least 1.
+	 */
+	public void configure(QueuePolicy policy, int maxDepth)
+	{
+		synchronized (this.lock)
+		{
+			this.policy = policy;
+			this.maxDepth = Math.max(1, maxDepth);
+		}
+	}
+
+	/**
+	 * Queues a pattern for playback and returns immediately.
+	 * @param pattern - alternating off/on durations, starting with off.
+	 * @param splitGap - off durations at least this long are word gaps, at which the pattern may be split.
+	 * @param startTime - clock time before which playback must not start.
+	 * @param sender - sender of the message, used to coalesce messages; may be null.
+	 * @return false if the pattern was not queued, because the queue policy discarded it
+	 *         or the scheduler is shut down. The listener is not notified for it.
+	 */
+	public boolean schedule(long[] pattern, long splitGap, long startTime, String sender)
+	{
+		final Job job = new Job(pattern, splitGap, startTime, sender, this.clock.uptimeMillis());
+		final ArrayList<Job> discarded = new ArrayList<Job>();
+		synchronized (this.lock)
+		{
+			if (this.shutdown)
+				return false;
+
+			if (this.policy == QueuePolicy.LATEST_ONLY)
+			{
+				// Supersede everything: discard the waiting patterns, and cancel the one playing,
+				// whose listener is notified on the playback thread.
+				this.superseded += this.queue.size();
+				discarded.addAll(this.queue);
+				this.queue.clear();
+				if (this.player != null && !this.player.isCancelled())
+				{
+					this.superseded++;
+					this.player.cancel();
+				}
+			}
+
+			// Take the place of a waiting pattern from the same sender, if any.
+			final boolean replaced = this.policy == QueuePolicy.COALESCE_SENDER && this.replace(job, discarded);
+			if (replaced)
+				this.coalesced++;
+			else if (this.queue.size() >= this.maxDepth)
+			{
+				if (this.policy == QueuePolicy.DROP_NEWEST)
+				{
+					this.droppedNewest++;
+					return false;
+				}
+				// Discard the patterns that have waited longest, to make room.
+				while (this.queue.size() >= this.maxDepth)
+				{
+					discarded.add(this.queue.removeFirst());
+					this.droppedOldest++;
+				}
+			}
+
+			if (!replaced)
+				this.queue.addLast(job);
+			this.peakDepth = Math.max(this.peakDepth, this.queue.size());
+			this.lock.notifyAll();
+		}
+		return this.notifyDiscarded(discarded);
+	}
+
+	/**
+	 * Replaces the waiting pattern from the same sender as job, if any. Called with the lock held.
+	 * @param job - the new pattern.
+	 * @param discarded - receives the pattern replaced.
+	 * @return true if a pattern was replaced.
+	 */
+	private boolean replace(Job job, ArrayList<Job> discarded)
+	{
+		if (job.sender == null)
+			return false;
+		final ListIterator<Job> i = this.queue.listIterator();
+		Job waiting;
+		while (i.hasNext())
+		{
+			waiting = i.next();
+			if (job.sender.equals(waiting.sender))
+			{
+				i.set(job);
+				discarded.add(waiting);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Notifies the listener of discarded patterns. Called without the lock held.
+	 * @return true, as the new pattern was queued.
+	 */
+	private boolean notifyDiscarded(ArrayList<Job> discarded)
+	{
+		if (this.listener != null)
+			for (int i = 0; i < discarded.size(); i++)
+				this.listener.onPlaybackFinished(false);
+		return true;
+	}
+
+	/**
+	 * @return the number of patterns waiting to be played, excluding the one playing.
+	 */
+	public int size()
+	{
+		synchronized (this.lock)
+		{
+			return this.queue.size();
+		}
+	}
+
+	/**
+	 * @return the largest number of patterns that have been waiting at once.
+	 */
+	public int getPeakDepth()
+	{
+		synchronized (this.lock)
+		{
+			return this.peakDepth;
+		}
+	}
+
+	/**
+	 * @return the number of waiting patterns discarded to make room for newer ones.
+	 */
+	public int getDroppedOldestCount()
+	{
+		synchronized (this.lock)
+		{
+			return this.droppedOldest;
+		}
+	}
+
+	/**
+	 * @return the number of new patterns discarded because the queue was full.
+	 */
+	public int getDroppedNewestCount()
+	{
+		synchronized (this.lock)
+		{
+			return this.droppedNewest;
+		}
+	}
+
+	/**
+	 * @return the number of waiting patterns replaced by newer ones from the same sender.
+	 */
+	public int getCoalescedCount()
+	{
+		synchronized (this.lock)
+		{
+			return this.coalesced;
+		}
+	}
+
+	/**
+	 * @return the number of patterns, waiting or playing, superseded under QueuePolicy.LATEST_ONLY.
+	 */
+	public int getSupersededCount()
+	{
+		synchronized (this.lock)
+		{
+			return this.superseded;
+		}
+	}
+
+	/**
+	 * @return the clock used for start times.
+	 */
+	public PlaybackClock getClock()
+	{
+		return this.clock;
+	}
+
+	/**
+	 * Cancels the pattern playing, discards those waiting, and stops the playback thread.
+	 * Listeners are not notified of discarded patterns.
+	 */
+	public void shutdown()
+	{
+		ChunkedPlayer player;
+		synchronized (this.lock)
+		{
+			this.shutdown = true;
+			this.queue.clear();
+			player = this.player;
+			this.lock.notifyAll();
+		}
+		if (player != null)
+			player.cancel();
+		this.thread.interrupt();
+	}
+
+	private void loop()
+	{
+		Job job;
+		ChunkedPlayer player;
+		boolean completed;
+		long startedAt;
+		while (true)
+		{
+			// Wait for the next pattern.
+			synchronized (this.lock)
+			{
+				while (!this.shutdown && this.queue.isEmpty())
+				{
+					try
+					{
+						this.lock.wait();
+					}
+					catch (InterruptedException e)
+					{
+						// Check shutdown flag.
+					}
+				}
+				if (this.shutdown)
+					return;
+				job = this.queue.removeFirst();
+				player = new ChunkedPlayer(this.sink, this.clock, this.chunkDuration);
+				this.player = player;
+			}
+
+			// Wait for the start time, then play the pattern. The delay counts from scheduling,
+			// so that it includes the time spent queued behind earlier patterns.
+			completed = player.waitForStart(job.startTime);
+			startedAt = this.clock.uptimeMillis();
+			Metrics.record(Metrics.Stage.DELAY, (startedAt - job.queuedAt) * PlaybackScheduler.NANOS_PER_MILLI);
+			if (completed)
+			{
+				completed = player.play(job.pattern, job.splitGap);
+				Metrics.record(Metrics.Stage.VIBRATE, (this.clock.uptimeMillis() - startedAt) * PlaybackScheduler.NANOS_PER_MILLI);
+			}
+
+			synchronized (this.lock)
+			{
+				this.player = null;
+				if (this.shutdown)
+					return;
+			}
+			if (this.listener != null)
+				this.listener.onPlaybackFinished(completed);
+		}
+	}
+
+	private static final int DEFAULT_MAX_DEPTH	= 5;
+	private static final long NANOS_PER_MILLI	= 1000000;
+}
@@ -0,0 +1,30 @@
+package com.savanto.android.smsmorsify;
+
+/**
+ * What the PlaybackScheduler does with a new message when messages are already waiting.
+ *
+ * @author savanto
+ */
+public enum QueuePolicy
+{
+	/**
+	 * When the queue is full, discard the message that has waited longest.
+	 */
+	DROP_OLDEST,
+
+	/**
+	 * When the queue is full, discard the new message.
+	 */
+	DROP_NEWEST,
+
+	/**
+	 * A new message replaces any message from the same sender still waiting, in its place
+	 * in the queue. When the queue is full otherwise, discard the message that has waited longest.
+	 */
+	COALESCE_SENDER,
+
+	/**
+	 * A new message supersedes all others: the one playing is cancelled and those waiting are discarded.
+	 */
+	LATEST_ONLY;
+}
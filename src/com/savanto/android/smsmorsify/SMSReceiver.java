@@ -3,11 +3,16 @@
  */
 package com.savanto.android.smsmorsify;
 
+import java.util.Arrays;
+
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.SharedPreferences;
 import android.os.Bundle;
+import android.preference.PreferenceManager;
 import android.telephony.SmsMessage;
+import android.telephony.TelephonyManager;
 
 /**
  * @author savanto
@@ -16,6 +21,23 @@ import android.telephony.SmsMessage;
 public class SMSReceiver extends BroadcastReceiver
 {
 	private static final String SMS_BUNDLE_KEY = "pdus";
+	private static final String FORMAT_BUNDLE_KEY = "format";
+	private static final String FORMAT_3GPP = "3gpp";
+	private static final long REASSEMBLY_TIMEOUT	= 5 * 60 * 1000;
+	private static final long REASSEMBLY_BYTES		= 64 * 1024;
+
+	/**
+	 * Parts of concatenated messages still waiting for the rest, kept for as long as the process lives.
+	 */
+	private static final SmsReassembler REASSEMBLER = new SmsReassembler(PlaybackClock.SYSTEM,
+			SMSReceiver.REASSEMBLY_TIMEOUT, SMSReceiver.REASSEMBLY_BYTES);
+
+	/**
+	 * Filter compiled from the rules last read, and those rules, so that it is
+	 * only compiled again when the user changes them.
+	 */
+	private static MessageFilter filter;
+	private static String[] filterRules;
 
 	/* (non-Javadoc)
 	 * @see android.content.BroadcastReceiver#onReceive(android.content.Context, android.content.Intent)
@@ -23,6 +45,25 @@ public class SMSReceiver extends BroadcastReceiver
 	@Override
 	public void onReceive(Context context, Intent intent)
 	{
+		final long start = Metrics.start();
+		SMSReceiver.receive(context, intent);
+		Metrics.stop(Metrics.Stage.RECEIVE, start);
+	}
+
+	/**
+	 * Hands each whole message that passes the filter to MorseService.
+	 */
+	private static void receive(Context context, Intent intent)
+	{
+		// Do nothing if SMSMorsify is set to off, without waking the service.
+		long start = Metrics.start();
+		final SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+		Metrics.setEnabled(sharedPrefs.getBoolean(context.getString(R.string.pref_key_metrics), false));
+		if (! sharedPrefs.getBoolean(context.getString(R.string.pref_key_enabled), false))
+			return;
+		final MessageFilter filter = SMSReceiver.getFilter(context, sharedPrefs);
+		Metrics.stop(Metrics.Stage.PREFERENCES, start);
+
 		// Get intent bundle
 		Bundle extras = intent.getExtras();
 
@@ -34,17 +75,112 @@ public class SMSReceiver extends BroadcastReceiver
 			// Retrieve the received message
 			Object[] pdus = (Object[]) extras.get(SMSReceiver.SMS_BUNDLE_KEY);
 	
-			// String together message from pdus
-			String message = "";
+			// Parts of concatenated messages are joined by the reassembler, which starts
+			// a message once its last part arrives, in this broadcast or a later one.
+			// Other parts in the same broadcast are strung together, as they always were,
+			// as are all parts of messages whose PDUs are not GSM, such as CDMA.
+			final boolean gsm = SMSReceiver.isGsmFormat(context, extras);
+			StringBuilder message = null;
+			String sender = null;
+			SmsMessage sms;
+			SmsReassembler.Concatenation concatenation;
+			String from, body, whole;
 			for (int i = 0; i < pdus.length; i++)
-				message += SmsMessage.createFromPdu((byte[]) pdus[i]).getMessageBody();
-	
-			// Create Intent for launching the MorseService, which will process the message.
-			Intent morseServiceIntent = new Intent(context, MorseService.class);
-			morseServiceIntent.putExtra(MorseService.MESSAGE_KEY, message);
-	
-			// Enqueue processing of this message with MorseService.
-			context.startService(morseServiceIntent);
+			{
+				sms = SmsMessage.createFromPdu((byte[]) pdus[i]);
+				from = sms.getOriginatingAddress();
+				Metrics.count(Metrics.Counter.RECEIVED, 1);
+				// Drop messages from ignored senders before decoding their text.
+				if (!filter.acceptSender(from))
+				{
+					Metrics.count(Metrics.Counter.FILTERED, 1);
+					continue;
+				}
+				body = sms.getMessageBody();
+				if (body == null)
+					body = "";
+				concatenation = gsm ? SmsReassembler.parseConcatenation((byte[]) pdus[i]) : null;
+				if (concatenation == null)
+				{
+					if (message == null)
+					{
+						message = new StringBuilder(body.length() * (pdus.length - i));
+						sender = from;
+					}
+					message.append(body);
+				}
+				else
+				{
+					start = Metrics.start();
+					whole = SMSReceiver.REASSEMBLER.add(from, concatenation, body);
+					Metrics.stop(Metrics.Stage.REASSEMBLY, start);
+					if (whole != null)
+						SMSReceiver.startMorseService(context, filter, whole, from);
+				}
+			}
+			if (message != null)
+				SMSReceiver.startMorseService(context, filter, message.toString(), sender);
+		}
+	}
+
+	/**
+	 * Broadcasts carry the format of their PDUs from API 19; before, PDUs are in the format of the phone.
+	 * @return true if the PDUs are 3GPP (GSM), the only format whose User Data Header is parsed.
+	 */
+	private static boolean isGsmFormat(Context context, Bundle extras)
+	{
+		final String format = extras.getString(SMSReceiver.FORMAT_BUNDLE_KEY);
+		if (format != null)
+			return SMSReceiver.FORMAT_3GPP.equals(format);
+		final TelephonyManager telephony = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+		return telephony != null && telephony.getPhoneType() == TelephonyManager.PHONE_TYPE_GSM;
+	}
+
+	/**
+	 * @return the filter for the current rules, compiled again only if they changed since the last message.
+	 */
+	private static synchronized MessageFilter getFilter(Context context, SharedPreferences sharedPrefs)
+	{
+		final String[] rules = new String[] {
+				sharedPrefs.getString(context.getString(R.string.pref_key_allowed_senders), ""),
+				sharedPrefs.getString(context.getString(R.string.pref_key_blocked_senders), ""),
+				sharedPrefs.getString(context.getString(R.string.pref_key_keywords), ""),
+				sharedPrefs.getString(context.getString(R.string.pref_key_ignore_patterns), ""),
+		};
+		if (SMSReceiver.filter == null || !Arrays.equals(rules, SMSReceiver.filterRules))
+		{
+			SMSReceiver.filter = new MessageFilter(rules[0], rules[1], rules[2], rules[3]);
+			SMSReceiver.filterRules = rules;
 		}
+		return SMSReceiver.filter;
+	}
+
+	/**
+	 * @return the reassembler, whose statistics MorseService reports.
+	 */
+	static SmsReassembler getReassembler()
+	{
+		return SMSReceiver.REASSEMBLER;
+	}
+
+	/**
+	 * Enqueues processing of a whole message with MorseService, unless the filter rejects its text.
+	 */
+	private static void startMorseService(Context context, MessageFilter filter, String message, String sender)
+	{
+		if (!filter.acceptText(message))
+		{
+			Metrics.count(Metrics.Counter.FILTERED, 1);
+			return;
+		}
+		Metrics.count(Metrics.Counter.STARTED, 1);
+
+		// Create Intent for launching the MorseService, which will process the message.
+		Intent morseServiceIntent = new Intent(context, MorseService.class);
+		morseServiceIntent.putExtra(MorseService.MESSAGE_KEY, message);
+		morseServiceIntent.putExtra(MorseService.SENDER_KEY, sender);
+
+		// Enqueue processing of this message with MorseService.
+		context.startService(morseServiceIntent);
 	}
 }
@@ -0,0 +1,165 @@
+package com.savanto.android.smsmorsify;
+
+/**
+ * Immutable set of message senders, for filtering messages as they arrive.
+ * Senders are normalized to a long key, so that the same phone number written in
+ * different formats matches. Formatting such as spaces, dashes and parentheses is
+ * dropped, and the international prefix "+" or "00" is recognized, so "+44 20 7946 0000"
+ * and "0044 20 7946 0000" are the same number. Otherwise the full string of digits is
+ * kept, leading zeros included: "800", "0800" and "+800" are three different senders,
+ * and a short code never matches the tail of a longer number. A number in national
+ * form does not match the same number in international form, so rules should be
+ * written as the numbers appear in messages. Alphanumeric senders such as "BANK" are
+ * hashed case-insensitively, as are numbers too long to be phone numbers. Keys are
+ * held in an open-addressed table with linear probing, so a lookup costs a few probes
+ * and allocates nothing.
+ *
+ * @author savanto
+ */
+final class SenderSet
+{
+	private final long[] keys;
+	private final int mask;
+	private final int size;
+
+	/**
+	 * @param senders - the senders in the set; blank entries are skipped.
+	 */
+	SenderSet(String[] senders)
+	{
+		// Keep the table at most half full, so that probe sequences stay short.
+		int capacity = SenderSet.MIN_CAPACITY;
+		while (capacity < 2 * senders.length)
+			capacity <<= 1;
+		this.keys = new long[capacity];
+		this.mask = capacity - 1;
+
+		int size = 0;
+		long key;
+		int i;
+		for (int s = 0; s < senders.length; s++)
+		{
+			key = SenderSet.normalize(senders[s]);
+			if (key == SenderSet.EMPTY)
+				continue;
+			for (i = SenderSet.hash(key) & this.mask; this.keys[i] != SenderSet.EMPTY; i = (i + 1) & this.mask)
+				if (this.keys[i] == key)
+					break;
+			if (this.keys[i] == SenderSet.EMPTY)
+			{
+				this.keys[i] = key;
+				size++;
+			}
+		}
+		this.size = size;
+	}
+
+	/**
+	 * @param sender - originating address of a message; may be null.
+	 * @return true if the sender is in the set.
+	 */
+	boolean contains(String sender)
+	{
+		final long key = SenderSet.normalize(sender);
+		if (key == SenderSet.EMPTY)
+			return false;
+		for (int i = SenderSet.hash(key) & this.mask; this.keys[i] != SenderSet.EMPTY; i = (i + 1) & this.mask)
+			if (this.keys[i] == key)
+				return true;
+		return false;
+	}
+
+	/**
+	 * @return true if the set has no senders.
+	 */
+	boolean isEmpty()
+	{
+		return this.size == 0;
+	}
+
+	/**
+	 * @return the key of a sender: its digits and whether they are international,
+	 *         or a hash if it has letters or too many digits; EMPTY if it is blank.
+	 */
+	static long normalize(String sender)
+	{
+		if (sender == null)
+			return SenderSet.EMPTY;
+
+		// The number is held below a sentinel power of ten, so that leading zeros count.
+		long number = 0;
+		long sentinel = 1;
+		long hash = SenderSet.FNV_OFFSET;
+		int digits = 0;
+		boolean letters = false;
+		boolean international = false;
+		char c;
+		for (int i = 0; i < sender.length(); i++)
+		{
+			c = sender.charAt(i);
+			if (c >= '0' && c <= '9')
+			{
+				if (digits < SenderSet.MAX_DIGITS)
+				{
+					number = number * 10 + (c - '0');
+					sentinel *= 10;
+				}
+				digits++;
+			}
+			else if (Character.isLetter(c))
+			{
+				c = Character.toUpperCase(c);
+				letters = true;
+			}
+			else
+			{
+				// A plus before the first digit is the international prefix; anything else is formatting.
+				if (c == SenderSet.PLUS && digits == 0)
+					international = true;
+				continue;
+			}
+			hash = (hash ^ c) * SenderSet.FNV_PRIME;
+		}
+
+		if (letters || digits > SenderSet.MAX_DIGITS)
+			return (international ? hash ^ SenderSet.PLUS : hash) | SenderSet.NAME_FLAG;
+		if (digits == 0)
+			return SenderSet.EMPTY;
+
+		// "00" followed by more digits is the international prefix as dialled; the zeros add nothing to the number.
+		if (!international && digits > 2 && number < sentinel / 100)
+		{
+			international = true;
+			sentinel /= 100;
+		}
+		return (sentinel + number) | SenderSet.NUMBER_FLAG | (international ? SenderSet.INTERNATIONAL_FLAG : 0);
+	}
+
+	/**
+	 * Spreads the bits of a key over the low bits used to index the table.
+	 */
+	private static int hash(long key)
+	{
+		key ^= key >>> 33;
+		key *= 0xFF51AFD7ED558CCDL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	private static final long EMPTY				= 0;
+	private static final int MIN_CAPACITY		= 16;
+
+	/**
+	 * Longest number kept digit for digit; longer ones are hashed. Phone numbers have at most 15.
+	 */
+	private static final int MAX_DIGITS			= 17;
+	private static final char PLUS				= '+';
+	// Flags that keep numbers and names apart, and keys from being EMPTY.
+	private static final long INTERNATIONAL_FLAG	= 1L << 61;
+	private static final long NUMBER_FLAG		= 1L << 62;
+	private static final long NAME_FLAG			= 1L << 63;
+
+	// 64-bit FNV-1a hash of alphanumeric senders.
+	private static final long FNV_OFFSET		= 0xCBF29CE484222325L;
+	private static final long FNV_PRIME			= 0x100000001B3L;
+}
@@ -29,6 +29,8 @@ import android.preference.PreferenceManager;
 public class SettingsPreferenceActivity extends PreferenceActivity implements OnSharedPreferenceChangeListener
 {
 	private SeekBarPreference mDelayPreference;
+	private SeekBarPreference mMaxDurationPreference;
+	private SeekBarPreference mQueueDepthPreference;
 	private SeekBarPreference mDitPreference;
 	private SeekBarPreference mShortGapPreference;
 	private SeekBarPreference mMediumGapPreference;
@@ -76,6 +78,8 @@ public class SettingsPreferenceActivity extends PreferenceActivity implements On
 
 			// Get references to the preferences.
 			this.mDelayPreference = (SeekBarPreference) this.getPreferenceScreen().findPreference(this.getText(R.string.pref_key_delay));
+			this.mMaxDurationPreference = (SeekBarPreference) this.getPreferenceScreen().findPreference(this.getText(R.string.pref_key_max_duration));
+			this.mQueueDepthPreference = (SeekBarPreference) this.getPreferenceScreen().findPreference(this.getText(R.string.pref_key_queue_depth));
 			this.mDitPreference = (SeekBarPreference) this.getPreferenceScreen().findPreference(this.getText(R.string.pref_key_dit));
 			this.mShortGapPreference = (SeekBarPreference) this.getPreferenceScreen().findPreference(this.getText(R.string.pref_key_short_gap));
 			this.mMediumGapPreference = (SeekBarPreference) this.getPreferenceScreen().findPreference(this.getText(R.string.pref_key_medium_gap));
@@ -93,6 +97,10 @@ public class SettingsPreferenceActivity extends PreferenceActivity implements On
 		// Setup initial dynamic summary values of EditText/List/Dialog/Ringtone preferences.
 		this.mDelayPreference.setSummary(Long.toString(this.mSharedPreferences.getLong(this.mDelayPreference.getKey(),
 				this.mDelayPreference.getDefaultValue())) + this.mDelayPreference.getUnits());
+		this.mMaxDurationPreference.setSummary(Long.toString(this.mSharedPreferences.getLong(this.mMaxDurationPreference.getKey(),
+				this.mMaxDurationPreference.getDefaultValue())) + this.mMaxDurationPreference.getUnits());
+		this.mQueueDepthPreference.setSummary(Long.toString(this.mSharedPreferences.getLong(this.mQueueDepthPreference.getKey(),
+				this.mQueueDepthPreference.getDefaultValue())) + this.mQueueDepthPreference.getUnits());
 		this.mDitPreference.setSummary(Long.toString(this.mSharedPreferences.getLong(this.mDitPreference.getKey(),
 				this.mDitPreference.getDefaultValue())) + this.mDitPreference.getUnits());
 		this.mShortGapPreference.setSummary(Long.toString(this.mSharedPreferences.getLong(this.mShortGapPreference.getKey(),
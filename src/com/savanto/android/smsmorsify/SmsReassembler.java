@@ -0,0 +1,319 @@
+package com.savanto.android.smsmorsify;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Joins the parts of concatenated SMS messages back into whole messages, whether or not
+ * they arrive in the same broadcast. Parts are keyed by sender and concatenation reference,
+ * as read from the user data header of the raw PDU, and held until the last part arrives.
+ * Memory is bounded: incomplete messages are dropped once they time out, checked lazily
+ * whenever a part arrives, and the oldest are dropped whenever the parts held would
+ * exceed a size limit.
+ *
+ * All methods are thread-safe.
+ *
+ * @author savanto
+ */
+public class SmsReassembler
+{
+	/**
+	 * Concatenation information element of a message part.
+	 */
+	public static final class Concatenation
+	{
+		private final int reference;
+		private final int count;
+		private final int sequence;
+
+		/**
+		 * @param reference - reference number shared by the parts of a message.
+		 * @param count - number of parts in the message.
+		 * @param sequence - number of this part, from 1.
+		 */
+		public Concatenation(int reference, int count, int sequence)
+		{
+			this.reference = reference;
+			this.count = count;
+			this.sequence = sequence;
+		}
+
+		/**
+		 * @return reference number shared by the parts of a message.
+		 */
+		public int getReference()
+		{
+			return this.reference;
+		}
+
+		/**
+		 * @return number of parts in the message.
+		 */
+		public int getCount()
+		{
+			return this.count;
+		}
+
+		/**
+		 * @return number of this part, from 1.
+		 */
+		public int getSequence()
+		{
+			return this.sequence;
+		}
+	}
+
+	/**
+	 * Parts of a message received so far.
+	 */
+	private static final class Partial
+	{
+		final String[] parts;
+		final long started;
+		int received = 0;
+		int chars = 0;
+
+		Partial(int count, long started)
+		{
+			this.parts = new String[count];
+			this.started = started;
+		}
+	}
+
+	private final PlaybackClock clock;
+	private final long timeout;
+	private final long maxBytes;
+
+	/**
+	 * Incomplete messages, oldest first.
+	 */
+	private final LinkedHashMap<String, Partial> partials = new LinkedHashMap<String, Partial>();
+	private long bytes = 0;
+
+	// Statistics.
+	private long timedOut = 0;
+	private long evicted = 0;
+	private long duplicates = 0;
+
+	/**
+	 * @param clock - time source for timeouts.
+	 * @param timeout - time after its first part arrives after which an incomplete message is dropped.
+	 * @param maxBytes - approximate memory the parts held may use, in bytes.
+	 */
+	public SmsReassembler(PlaybackClock clock, long timeout, long maxBytes)
+	{
+		this.clock = clock;
+		this.timeout = timeout;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Adds a received message part.
+	 * @param sender - originating address of the part; may be null.
+	 * @param concatenation - concatenation information of the part, or null if it is a whole message.
+	 * @param body - text of the part.
+	 * @return the whole message if this part completes it, or null if parts are still missing.
+	 */
+	public synchronized String add(String sender, Concatenation concatenation, String body)
+	{
+		final long now = this.clock.uptimeMillis();
+		this.expire(now);
+
+		// Whole messages, and parts whose header makes no sense, stand alone.
+		if (concatenation == null || concatenation.count <= 1
+				|| concatenation.sequence < 1 || concatenation.sequence > concatenation.count)
+			return body;
+
+		final String key = (sender == null ? "" : sender) + SmsReassembler.KEY_SEPARATOR + concatenation.reference;
+		Partial partial = this.partials.get(key);
+		if (partial == null || partial.parts.length != concatenation.count)
+		{
+			if (partial != null)
+				this.remove(key, partial);
+			partial = new Partial(concatenation.count, now);
+			this.partials.put(key, partial);
+		}
+
+		final int index = concatenation.sequence - 1;
+		if (partial.parts[index] != null)
+		{
+			// Retransmitted part.
+			this.duplicates++;
+			return null;
+		}
+		partial.parts[index] = body;
+		partial.received++;
+		partial.chars += body.length();
+		this.bytes += SmsReassembler.sizeOf(body);
+
+		if (partial.received == partial.parts.length)
+		{
+			this.remove(key, partial);
+			final StringBuilder message = new StringBuilder(partial.chars);
+			for (int i = 0; i < partial.parts.length; i++)
+				message.append(partial.parts[i]);
+			return message.toString();
+		}
+
+		// Drop the oldest incomplete messages until back within the limit.
+		final Iterator<Partial> i = this.partials.values().iterator();
+		Partial oldest;
+		while (this.bytes > this.maxBytes && i.hasNext())
+		{
+			oldest = i.next();
+			this.bytes -= SmsReassembler.sizeOf(oldest);
+			i.remove();
+			this.evicted++;
+		}
+		return null;
+	}
+
+	/**
+	 * Drops incomplete messages that have timed out. Messages are held oldest first,
+	 * so the scan stops at the first one still in time.
+	 */
+	private void expire(long now)
+	{
+		final Iterator<Partial> i = this.partials.values().iterator();
+		Partial oldest;
+		while (i.hasNext())
+		{
+			oldest = i.next();
+			if (now - oldest.started < this.timeout)
+				break;
+			this.bytes -= SmsReassembler.sizeOf(oldest);
+			i.remove();
+			this.timedOut++;
+		}
+	}
+
+	private void remove(String key, Partial partial)
+	{
+		this.partials.remove(key);
+		this.bytes -= SmsReassembler.sizeOf(partial);
+	}
+
+	/**
+	 * @return the number of incomplete messages held.
+	 */
+	public synchronized int getPendingCount()
+	{
+		return this.partials.size();
+	}
+
+	/**
+	 * @return approximate memory used by the parts held, in bytes.
+	 */
+	public synchronized long getBytes()
+	{
+		return this.bytes;
+	}
+
+	/**
+	 * @return the number of incomplete messages dropped because they timed out.
+	 */
+	public synchronized long getTimedOutCount()
+	{
+		return this.timedOut;
+	}
+
+	/**
+	 * @return the number of incomplete messages dropped to stay within the size limit.
+	 */
+	public synchronized long getEvictedCount()
+	{
+		return this.evicted;
+	}
+
+	/**
+	 * @return the number of parts received more than once.
+	 */
+	public synchronized long getDuplicateCount()
+	{
+		return this.duplicates;
+	}
+
+	/**
+	 * Reads the concatenation information element from the user data header of a raw
+	 * GSM SMS-DELIVER PDU, as delivered with the SMS_RECEIVED broadcast: the SMSC address
+	 * followed by the TPDU. Both the 8-bit (0x00) and 16-bit (0x08) reference forms are read.
+	 * @param pdu - the raw PDU.
+	 * @return the concatenation information, or null if the PDU is not part of a
+	 *         concatenated message or cannot be parsed.
+	 */
+	public static Concatenation parseConcatenation(byte[] pdu)
+	{
+		try
+		{
+			// Skip the SMSC address.
+			int p = 1 + (pdu[0] & 0xFF);
+
+			// First octet: only SMS-DELIVER with a user data header is of interest.
+			final int firstOctet = pdu[p++] & 0xFF;
+			if ((firstOctet & SmsReassembler.TP_MTI_MASK) != SmsReassembler.TP_MTI_DELIVER
+					|| (firstOctet & SmsReassembler.TP_UDHI) == 0)
+				return null;
+
+			// Skip the originating address: its length in digits, type of address, then two digits per octet.
+			final int digits = pdu[p++] & 0xFF;
+			p += 1 + (digits + 1) / 2;
+
+			// Skip protocol identifier, data coding scheme, service centre time stamp and user data length.
+			p += 1 + 1 + 7 + 1;
+
+			// Walk the information elements of the user data header.
+			final int end = p + 1 + (pdu[p] & 0xFF);
+			p++;
+			int id, length;
+			while (p + 1 < end)
+			{
+				id = pdu[p++] & 0xFF;
+				length = pdu[p++] & 0xFF;
+				// An element cannot run past the end of the header.
+				if (p + length > end)
+					return null;
+				if (id == SmsReassembler.IEI_CONCATENATED_8BIT && length == 3)
+					return new Concatenation(pdu[p] & 0xFF, pdu[p + 1] & 0xFF, pdu[p + 2] & 0xFF);
+				if (id == SmsReassembler.IEI_CONCATENATED_16BIT && length == 4)
+					return new Concatenation(((pdu[p] & 0xFF) << 8) | (pdu[p + 1] & 0xFF), pdu[p + 2] & 0xFF, pdu[p + 3] & 0xFF);
+				p += length;
+			}
+			return null;
+		}
+		catch (ArrayIndexOutOfBoundsException e)
+		{
+			// Truncated or not a GSM PDU.
+			return null;
+		}
+	}
+
+	/**
+	 * @return approximate memory used by a part held, in bytes.
+	 */
+	private static long sizeOf(String part)
+	{
+		return SmsReassembler.PART_OVERHEAD + 2L * part.length();
+	}
+
+	private static long sizeOf(Partial partial)
+	{
+		long size = 0;
+		for (int i = 0; i < partial.parts.length; i++)
+			if (partial.parts[i] != null)
+				size += SmsReassembler.sizeOf(partial.parts[i]);
+		return size;
+	}
+
+	private static final char KEY_SEPARATOR				= '/';
+
+	private static final int TP_MTI_MASK				= 0x03;
+	private static final int TP_MTI_DELIVER				= 0x00;
+	private static final int TP_UDHI					= 0x40;
+	private static final int IEI_CONCATENATED_8BIT		= 0x00;
+	private static final int IEI_CONCATENATED_16BIT	= 0x08;
+
+	/**
+	 * Approximate bytes used by the string header of each part.
+	 */
+	private static final long PART_OVERHEAD				= 40;
+}
@@ -0,0 +1,155 @@
+package com.savanto.android.smsmorsify;
+
+/**
+ * Renders vibration patterns as a Morse sidetone: 16-bit mono PCM, with the on durations
+ * played as a sine tone and the off durations as silence.
+ * The dot and dash waveforms, shaped by raised-cosine ramps so that they start and stop
+ * without clicks, and a silence buffer are computed once, when the synthesizer is created.
+ * Rendering then only hands those buffers to a PcmSink, with no per-sample work.
+ *
+ * Instances are immutable.
+ *
+ * @author savanto
+ */
+public class ToneSynthesizer
+{
+	private final int sampleRate;
+	private final int frequency;
+	private final long dit;
+	private final long dah;
+	private final short[] ditWave;
+	private final short[] dahWave;
+	private final short[] silence;
+
+	/**
+	 * @param sampleRate - samples per second.
+	 * @param frequency - pitch of the tone, in Hz.
+	 * @param dit - duration of a dot, in milliseconds.
+	 * @param dah - duration of a dash, in milliseconds.
+	 */
+	public ToneSynthesizer(int sampleRate, int frequency, long dit, long dah)
+	{
+		this.sampleRate = sampleRate;
+		this.frequency = frequency;
+		this.dit = dit;
+		this.dah = dah;
+		this.ditWave = this.tone(this.samples(dit));
+		this.dahWave = this.tone(this.samples(dah));
+		// Gaps are multiples of the dot, so a dot of silence is written whole most of the time.
+		this.silence = new short[Math.max(1, this.samples(dit))];
+	}
+
+	/**
+	 * Renders a pattern.
+	 * @param pattern - alternating off/on durations in milliseconds, starting with off.
+	 * @param sink - receives the samples.
+	 * @return true if the whole pattern was rendered, false if the sink stopped it.
+	 */
+	public boolean render(long[] pattern, PcmSink sink)
+	{
+		for (int i = 0; i < pattern.length; i++)
+			if (!this.render(pattern[i], i % 2 == 1, sink))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Renders one segment of a pattern, as delivered by a MorseStreamEncoder.
+	 * @param duration - duration of the segment, in milliseconds.
+	 * @param on - true for a tone, false for silence.
+	 * @param sink - receives the samples.
+	 * @return true if the whole segment was rendered, false if the sink stopped it.
+	 */
+	public boolean render(long duration, boolean on, PcmSink sink)
+	{
+		return on ? this.tone(duration, sink) : this.silence(this.samples(duration), sink);
+	}
+
+	/**
+	 * @param pattern - alternating off/on durations in milliseconds.
+	 * @return the number of samples render() produces for the pattern.
+	 */
+	public long length(long[] pattern)
+	{
+		long length = 0;
+		for (int i = 0; i < pattern.length; i++)
+			length += this.samples(pattern[i]);
+		return length;
+	}
+
+	/**
+	 * @return samples per second.
+	 */
+	public int getSampleRate()
+	{
+		return this.sampleRate;
+	}
+
+	/**
+	 * @return the number of samples in a duration.
+	 */
+	int samples(long millis)
+	{
+		return (int) (millis * this.sampleRate / 1000);
+	}
+
+	private boolean tone(long millis, PcmSink sink)
+	{
+		final short[] wave;
+		if (millis == this.dit)
+			wave = this.ditWave;
+		else if (millis == this.dah)
+			wave = this.dahWave;
+		else
+			// Not a signal of this timing; only patterns built with other settings get here.
+			wave = this.tone(this.samples(millis));
+		return wave.length == 0 || sink.write(wave, 0, wave.length);
+	}
+
+	private boolean silence(int samples, PcmSink sink)
+	{
+		int length;
+		while (samples > 0)
+		{
+			length = Math.min(samples, this.silence.length);
+			if (!sink.write(this.silence, 0, length))
+				return false;
+			samples -= length;
+		}
+		return true;
+	}
+
+	/**
+	 * Computes a sine tone, faded in and out by raised-cosine ramps.
+	 * @param samples - length of the tone.
+	 */
+	private short[] tone(int samples)
+	{
+		final short[] wave = new short[samples];
+		final int ramp = Math.min(this.samples(ToneSynthesizer.RAMP_MILLIS), samples / 2);
+		final double step = 2 * Math.PI * this.frequency / this.sampleRate;
+		double amplitude;
+		for (int i = 0; i < samples; i++)
+		{
+			amplitude = ToneSynthesizer.AMPLITUDE;
+			if (i < ramp)
+				amplitude *= 0.5 * (1 - Math.cos(Math.PI * i / ramp));
+			else if (i >= samples - ramp)
+				amplitude *= 0.5 * (1 - Math.cos(Math.PI * (samples - 1 - i) / ramp));
+			wave[i] = (short) Math.round(amplitude * Math.sin(step * i));
+		}
+		return wave;
+	}
+
+	public static final int DEFAULT_SAMPLE_RATE	= 16000;
+	public static final int DEFAULT_FREQUENCY	= 700;
+
+	/**
+	 * Duration of the fade in and out of each tone.
+	 */
+	private static final long RAMP_MILLIS		= 5;
+	/**
+	 * Peak amplitude of the tone, leaving headroom below full scale.
+	 */
+	private static final double AMPLITUDE		= 0.5 * Short.MAX_VALUE;
+}
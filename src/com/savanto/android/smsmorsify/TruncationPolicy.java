@@ -0,0 +1,20 @@
+package com.savanto.android.smsmorsify;
+
+/**
+ * How a message longer than the time budget is cut short. In either case the message
+ * is cut after the last whole word that fits, and ends with the "End of message" prosign AR.
+ *
+ * @author savanto
+ */
+public enum TruncationPolicy
+{
+	/**
+	 * Send the first words of the message.
+	 */
+	FIRST_WORDS,
+
+	/**
+	 * Send the sender of the message, then its first words.
+	 */
+	SENDER_AND_FIRST_WORDS;
+}
@@ -0,0 +1,32 @@
+package com.savanto.android.smsmorsify;
+
+import android.os.Vibrator;
+
+/**
+ * PatternSink that plays patterns on the device Vibrator.
+ *
+ * @author savanto
+ */
+public class VibratorSink implements PatternSink
+{
+	private static final int DEFAULT_REPEAT	= -1;
+
+	private final Vibrator vibrator;
+
+	public VibratorSink(Vibrator vibrator)
+	{
+		this.vibrator = vibrator;
+	}
+
+	@Override
+	public void play(long[] pattern)
+	{
+		this.vibrator.vibrate(pattern, VibratorSink.DEFAULT_REPEAT);
+	}
+
+	@Override
+	public void cancel()
+	{
+		this.vibrator.cancel();
+	}
+}
@@ -0,0 +1,243 @@
+package com.savanto.android.smsmorsify;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Renders plaintext as Morse audio into a 16-bit mono PCM WAV file.
+ * Text is encoded by a MorseStreamEncoder and rendered by a ToneSynthesizer as it is
+ * read, and samples go to the file through a direct buffer of fixed size, so memory
+ * use does not depend on the length of the message. The WAV header is written last,
+ * once the length of the data is known.
+ *
+ * Instances are immutable; each call to render() uses state of its own.
+ *
+ * @author savanto
+ */
+public class WavRenderer
+{
+	private final ToneSynthesizer synthesizer;
+	private final MorseAlphabet alphabet;
+	private final int short_gap;
+	private final int medium_gap;
+	private final long wait;
+	private final long dit;
+	private final long dah;
+	private final long gap;
+
+	/**
+	 * Creates a renderer with default alphabet, gaps, timing and tone.
+	 */
+	public WavRenderer()
+	{
+		this(new ToneSynthesizer(ToneSynthesizer.DEFAULT_SAMPLE_RATE, ToneSynthesizer.DEFAULT_FREQUENCY,
+				MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH), MorseAlphabet.getInstance(true, true, true),
+				MorseCode.DEFAULT_SHORT_GAP, MorseCode.DEFAULT_MEDIUM_GAP,
+				MorseCode.DEFAULT_WAIT, MorseCode.DEFAULT_DIT, MorseCode.DEFAULT_DAH, MorseCode.DEFAULT_GAP);
+	}
+
+	/**
+	 * @param synthesizer - renders the pattern; built for the same dit and dah.
+	 * @param alphabet - the alphabet used to look up plaintext characters.
+	 * @param short_gap - the gap length to set between Morse letters.
+	 * @param medium_gap - the gap length to set between Morse words.
+	 * @param wait - duration of silence before the first signal.
+	 * @param dit - duration of a dot.
+	 * @param dah - duration of a dash.
+	 * @param gap - duration of the gap between signals; letter and word gaps are multiples of it.
+	 */
+	public WavRenderer(ToneSynthesizer synthesizer, MorseAlphabet alphabet, int short_gap, int medium_gap,
+			long wait, long dit, long dah, long gap)
+	{
+		this.synthesizer = synthesizer;
+		this.alphabet = alphabet;
+		this.short_gap = short_gap;
+		this.medium_gap = medium_gap;
+		this.wait = wait;
+		this.dit = dit;
+		this.dah = dah;
+		this.gap = gap;
+	}
+
+	/**
+	 * Renders plaintext into a WAV file, replacing its contents.
+	 * @param plaintext - the plaintext message.
+	 * @param file - destination file.
+	 * @return the number of samples written.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public long render(CharSequence plaintext, File file) throws IOException
+	{
+		return this.render(new StringReader(plaintext.toString()), file);
+	}
+
+	/**
+	 * Renders plaintext read from a Reader into a WAV file, replacing its contents.
+	 * The reader is not closed.
+	 * @param plaintext - source of the plaintext message.
+	 * @param file - destination file.
+	 * @return the number of samples written.
+	 * @throws IOException if the reader fails or the file cannot be written.
+	 */
+	public long render(Reader plaintext, File file) throws IOException
+	{
+		final RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try
+		{
+			final FileChannel channel = out.getChannel();
+			channel.truncate(0);
+			return this.render(plaintext, channel);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Renders plaintext read from a Reader as a WAV file starting at the beginning of a channel.
+	 * Neither the reader nor the channel is closed.
+	 * @param plaintext - source of the plaintext message.
+	 * @param channel - destination; must be positioned at the start of an empty file.
+	 * @return the number of samples written.
+	 * @throws IOException if the reader fails or the channel cannot be written.
+	 */
+	public long render(Reader plaintext, FileChannel channel) throws IOException
+	{
+		// Leave room for the header, which is written once the data length is known.
+		channel.position(WavRenderer.HEADER_SIZE);
+		final Output output = new Output(channel);
+		final MorseStreamEncoder encoder = new MorseStreamEncoder(this.alphabet, this.short_gap, this.medium_gap,
+				this.wait, this.dit, this.dah, this.gap, output);
+
+		final char[] text = new char[WavRenderer.TEXT_BUFFER_SIZE];
+		final CharBuffer wrapped = CharBuffer.wrap(text);
+		int count;
+		while ((count = plaintext.read(text)) != -1)
+		{
+			encoder.write(wrapped, 0, count);
+			output.check();
+		}
+		encoder.finish();
+		output.check();
+		output.flush();
+		output.check();
+
+		channel.write(this.header((int) (2 * output.samples)), 0);
+		return output.samples;
+	}
+
+	/**
+	 * @return the 44-byte RIFF header of a 16-bit mono PCM file.
+	 */
+	private ByteBuffer header(int dataSize)
+	{
+		final int sampleRate = this.synthesizer.getSampleRate();
+		final ByteBuffer header = ByteBuffer.allocate(WavRenderer.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		header.put(new byte[] { 'R', 'I', 'F', 'F' })
+				.putInt(WavRenderer.HEADER_SIZE - 8 + dataSize)
+				.put(new byte[] { 'W', 'A', 'V', 'E', 'f', 'm', 't', ' ' })
+				.putInt(16)					// Size of the format chunk
+				.putShort((short) 1)		// PCM
+				.putShort((short) 1)		// Mono
+				.putInt(sampleRate)
+				.putInt(sampleRate * 2)		// Byte rate
+				.putShort((short) 2)		// Block align
+				.putShort((short) 16)		// Bits per sample
+				.put(new byte[] { 'd', 'a', 't', 'a' })
+				.putInt(dataSize);
+		header.flip();
+		return header;
+	}
+
+	/**
+	 * Renders segments as they are encoded, and writes the samples through a direct buffer.
+	 * Errors cannot be thrown from the callbacks, so they are kept and rethrown by check().
+	 */
+	private class Output implements MorseStreamEncoder.SegmentListener, PcmSink
+	{
+		private final FileChannel channel;
+		private final ByteBuffer buffer;
+		private final ShortBuffer shorts;
+		private long samples = 0;
+		private IOException error = null;
+
+		Output(FileChannel channel)
+		{
+			this.channel = channel;
+			this.buffer = ByteBuffer.allocateDirect(WavRenderer.OUTPUT_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			// Samples are put through a view of the same memory, in the same byte order.
+			this.shorts = this.buffer.asShortBuffer();
+		}
+
+		@Override
+		public void onSegment(long duration, boolean on)
+		{
+			if (this.error == null)
+				WavRenderer.this.synthesizer.render(duration, on, this);
+		}
+
+		@Override
+		public boolean write(short[] samples, int offset, int length)
+		{
+			if (2 * (this.samples + length) > WavRenderer.MAX_DATA_SIZE)
+			{
+				this.error = new IOException("Message too long for a WAV file: over " + this.samples + " samples");
+				return false;
+			}
+			int count;
+			while (length > 0)
+			{
+				if (!this.shorts.hasRemaining() && !this.flush())
+					return false;
+				count = Math.min(length, this.shorts.remaining());
+				this.shorts.put(samples, offset, count);
+				this.samples += count;
+				offset += count;
+				length -= count;
+			}
+			return true;
+		}
+
+		/**
+		 * Writes out the buffered samples.
+		 * @return false if the channel failed.
+		 */
+		boolean flush()
+		{
+			try
+			{
+				this.buffer.limit(2 * this.shorts.position());
+				while (this.buffer.hasRemaining())
+					this.channel.write(this.buffer);
+				this.buffer.clear();
+				this.shorts.clear();
+				return true;
+			}
+			catch (IOException e)
+			{
+				this.error = e;
+				return false;
+			}
+		}
+
+		void check() throws IOException
+		{
+			if (this.error != null)
+				throw this.error;
+		}
+	}
+
+	private static final int HEADER_SIZE			= 44;
+	private static final long MAX_DATA_SIZE			= 0xFFFFFFFFL - WavRenderer.HEADER_SIZE;
+	private static final int TEXT_BUFFER_SIZE		= 1024;
+	private static final int OUTPUT_BUFFER_SIZE	= 64 * 1024;
+}